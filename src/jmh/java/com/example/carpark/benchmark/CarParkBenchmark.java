@@ -0,0 +1,151 @@
+package com.example.carpark.benchmark;
+
+import com.example.carpark.CarParkApplication;
+import com.example.carpark.exception.CarParkFullException;
+import com.example.carpark.exception.NoSuitableSpacesException;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.service.CarParkService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks the parking and exit hot paths of a car park started from the Spring context (so with the same wiring as
+ * the application), pre-filled to the given occupancy. Thread count is set with the JMH -t option, e.g.
+ * mvn -Pbenchmark verify -DskipTests -Djmh.args="CarParkBenchmark -t 8"
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Every visit is audited, so allow the audit trail room to grow over the run.
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarParkBenchmark {
+
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    // Proportion of the car park occupied before measuring.
+    @Param({"0.5", "0.9"})
+    public double occupancyRatio;
+
+    // Proportion of vehicles that are EVs (requiring a charging point).
+    @Param({"0.1", "0.5"})
+    public double evMix;
+
+    private ConfigurableApplicationContext applicationContext;
+
+    private CarParkService carParkService;
+
+    @Setup(Level.Trial)
+    public void startCarPark() throws Exception {
+        // Command line arguments take precedence over application.yml. Per vehicle logging would swamp the measurement.
+        applicationContext = new SpringApplicationBuilder(CarParkApplication.class)
+                .logStartupInfo(false)
+                .run("--carPark.capacity=" + capacity, "--carPark.clock=monotonic",
+                        "--logging.level.com.example.carpark=WARN");
+        carParkService = applicationContext.getBean(CarParkService.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        int numToPark = (int) (capacity * occupancyRatio);
+        for (int i = 0; i < numToPark; i++) {
+            try {
+                carParkService.parkVehicle(randomVehicle(random, "FILL" + i, evMix));
+            } catch (NoSuitableSpacesException e) {
+                // All bays of the category are taken - the occupancy is made up with the other category.
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCarPark() {
+        applicationContext.close();
+    }
+
+    /**
+     * An endless supply of vehicles (with registrations unique to the benchmark thread) arriving at the car park.
+     */
+    @State(Scope.Thread)
+    public static class Arrivals {
+
+        private static final AtomicInteger NEXT_THREAD = new AtomicInteger();
+
+        private final Vehicle[] vehicles = new Vehicle[1024];
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void createVehicles(CarParkBenchmark benchmark) {
+            int thread = NEXT_THREAD.getAndIncrement();
+            SplittableRandom random = new SplittableRandom(thread);
+            for (int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = randomVehicle(random, "T" + thread + "V" + i, benchmark.evMix);
+            }
+        }
+
+        Vehicle next() {
+            Vehicle vehicle = vehicles[next];
+            next = (next + 1) & (vehicles.length - 1);
+            return vehicle;
+        }
+    }
+
+    // A full visit: parkVehicle followed by leaveCarPark (which includes billing and auditing), so occupancy holds steady.
+    @Benchmark
+    public double parkAndLeave(Arrivals arrivals) throws Exception {
+        Vehicle vehicle = arrivals.next();
+        try {
+            carParkService.parkVehicle(vehicle);
+        } catch (CarParkFullException | NoSuitableSpacesException e) {
+            return 0;
+        }
+        return carParkService.leaveCarPark(vehicle);
+    }
+
+    // As parkAndLeave, but with the exception free API - the difference is the cost of rejecting with exceptions.
+    @Benchmark
+    public Object tryParkAndLeave(Arrivals arrivals) {
+        Vehicle vehicle = arrivals.next();
+        ParkingResult parkingResult = carParkService.tryParkVehicle(vehicle, 0);
+        if (parkingResult instanceof ParkingResult.Rejected) {
+            return parkingResult;
+        }
+        return carParkService.tryLeaveCarPark(vehicle);
+    }
+
+    @Benchmark
+    public boolean isSuitableParkingAvailable(Arrivals arrivals) {
+        return carParkService.isSuitableParkingAvailable(arrivals.next());
+    }
+
+    @Benchmark
+    public Vehicle getRandomlyParkedVehicle() {
+        return carParkService.getRandomlyParkedVehicle();
+    }
+
+    private static Vehicle randomVehicle(SplittableRandom random, String vrm, double evMix) {
+        if (random.nextDouble() < evMix) {
+            return new Vehicle(vrm, VehicleType.EV);
+        }
+        return new Vehicle(vrm, random.nextBoolean() ? VehicleType.CAR : VehicleType.MOTORBIKE);
+    }
+}
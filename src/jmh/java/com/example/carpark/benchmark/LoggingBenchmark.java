@@ -0,0 +1,87 @@
+package com.example.carpark.benchmark;
+
+import com.example.carpark.CarParkApplication;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.service.CarParkService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks what logging costs the park and leave hot paths, with the car park's logging switched off (OFF, WARN) and
+ * on (INFO, DEBUG). Events are formatted and queued for the async appender as usual, then discarded (see the benchmark
+ * profile in logback-spring.xml), so the console doesn't flood the results. Compare gc.alloc.rate.norm (bytes allocated
+ * per operation) across the levels, e.g.
+ * mvn -Pbenchmark verify -DskipTests -Djmh.args="LoggingBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    @Param({"OFF", "WARN", "INFO", "DEBUG"})
+    public String logLevel;
+
+    private ConfigurableApplicationContext applicationContext;
+
+    private CarParkService carParkService;
+
+    private final Vehicle[] vehicles = new Vehicle[1024];
+
+    private int next;
+
+    // Parked for the whole run, so parking it again is turned away (as a double parked vehicle is).
+    private final Vehicle parkedVehicle = new Vehicle("PARKED", VehicleType.CAR);
+
+    @Setup(Level.Trial)
+    public void startCarPark() {
+        applicationContext = new SpringApplicationBuilder(CarParkApplication.class)
+                .logStartupInfo(false)
+                .run("--spring.profiles.active=benchmark", "--carPark.capacity=1000", "--carPark.clock=monotonic",
+                        "--logging.level.com.example.carpark=" + logLevel);
+        carParkService = applicationContext.getBean(CarParkService.class);
+        for (int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = new Vehicle("LOG" + i, i % 2 == 0 ? VehicleType.CAR : VehicleType.MOTORBIKE);
+        }
+        carParkService.tryParkVehicle(parkedVehicle, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopCarPark() {
+        applicationContext.close();
+    }
+
+    // A full visit - logs the vehicle parking and leaving at INFO.
+    @Benchmark
+    public Object parkAndLeave() {
+        Vehicle vehicle = vehicles[next];
+        next = (next + 1) & (vehicles.length - 1);
+        carParkService.tryParkVehicle(vehicle, 0);
+        return carParkService.tryLeaveCarPark(vehicle);
+    }
+
+    // A vehicle turned away - logs a warning.
+    @Benchmark
+    public ParkingResult parkRejected() {
+        return carParkService.tryParkVehicle(parkedVehicle, 0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.carpark.benchmark;
+
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.service.ParkingAuditService;
+import com.example.carpark.service.ParkingAuditServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the ParkingAuditService range queries over a month long audit trail, querying a week of it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ParkingAuditBenchmark {
+
+    private static final LocalDateTime AUDIT_START = LocalDateTime.of(2023, 4, 1, 0, 0);
+
+    private static final LocalDateTime QUERY_START = AUDIT_START.plusDays(10);
+
+    private static final LocalDateTime QUERY_END = QUERY_START.plusDays(7);
+
+    @Param({"100000", "1000000"})
+    public int numVisits;
+
+    @Param({"EXACT", "ROLLUP"})
+    public AuditQueryMode mode;
+
+    private ParkingAuditService parkingAuditService;
+
+    @Setup(Level.Trial)
+    public void recordVisits() {
+        parkingAuditService = new ParkingAuditServiceImpl();
+        SplittableRandom random = new SplittableRandom(42);
+        // Around ten visits per vehicle, of up to eight hours, spread over 30 days.
+        int numVehicles = Math.max(1, numVisits / 10);
+        for (int i = 0; i < numVisits; i++) {
+            LocalDateTime arrived = AUDIT_START.plusSeconds(random.nextLong(30L * 24 * 60 * 60));
+            LocalDateTime left = arrived.plusSeconds(1 + random.nextLong(8 * 60 * 60));
+            parkingAuditService.recordParkingVisit(new ParkingAudit(random.nextInt(1000) + 1,
+                    "VRM" + random.nextInt(numVehicles), arrived, left, 2.0 * (1 + random.nextInt(8))));
+        }
+    }
+
+    @Benchmark
+    public double getTotalFundsCollectedForDateRange() {
+        return parkingAuditService.getTotalFundsCollectedForDateRange(QUERY_START, QUERY_END, mode);
+    }
+
+    @Benchmark
+    public int getDistinctNumberOfVehiclesVisitedForDateRange() {
+        return parkingAuditService.getDistinctNumberOfVehiclesVisitedForDateRange(QUERY_START, QUERY_END, mode);
+    }
+
+    // Always exact (the individual visits are returned), so only varies with the size of the audit trail.
+    @Benchmark
+    public List<ParkingAudit> getParkingAuditsForDateRange() {
+        return parkingAuditService.getParkingAuditsForDateRange(QUERY_START, QUERY_END);
+    }
+}
@@ -1,19 +1,23 @@
 package com.example.carpark;
 
+import com.example.carpark.model.ParkingSpaceCategory;
 import com.example.carpark.model.Vehicle;
+import com.example.carpark.queue.MultiClassParkingQueue;
 import com.example.carpark.service.CarParkService;
 import com.example.carpark.service.CarParkServiceImpl;
+import com.example.carpark.simulation.CarParkSimulation;
 import com.example.carpark.thread.AddToParkingQueue;
 import com.example.carpark.thread.ExitCarPark;
+import com.example.carpark.thread.GateWorkers;
 import com.example.carpark.thread.ParkFromQueue;
 import com.example.carpark.util.CarParkDataGenerator;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
 
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
 
 @SpringBootApplication
 public class CarParkApplication {
@@ -27,17 +31,34 @@ public class CarParkApplication {
 	// Initialised to a synchronized list for thread safety (we have multiple threads retrieving/removing/adding vehicles).
 	private static List<Vehicle> allVehicles;
 
-	/* Initialised to a LinkedBlockingQueue for a thread safe parking queue (we may want to spawn multiple
-	 * "ParkFromQueue" threads in future to clear a backlog). */
-	private static BlockingQueue<Vehicle> parkingQueue;
+	/* Initialised to a (thread safe) queue for each category of parking space, so a vehicle waiting for a full category
+	 * of space doesn't block the vehicles behind it that could park. */
+	private static MultiClassParkingQueue parkingQueue;
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException {
 		// Wire necessary beans/properties in this static context.
 		ApplicationContext applicationContext = SpringApplication.run(CarParkApplication.class, args);
+
+		// In simulation mode, vehicles are modelled at full speed on a virtual clock rather than by the threads below.
+		if ("simulation".equals(applicationContext.getEnvironment().getProperty("run.mode"))) {
+			applicationContext.getBean(CarParkSimulation.class).run();
+			return;
+		}
+
+		// In gates mode, each entry gate and exit barrier has its own worker (and queue) rather than the threads below.
+		if ("gates".equals(applicationContext.getEnvironment().getProperty("run.mode"))) {
+			applicationContext.getBean(GateWorkers.class).run();
+			return;
+		}
+
 		carParkService = applicationContext.getBean(CarParkServiceImpl.class);
 		carParkDataGenerator = applicationContext.getBean(CarParkDataGenerator.class);
 		numVehiclesToModel = Integer.parseInt(applicationContext.getEnvironment().getProperty("run.numVehiclesToModel"));
-		parkingQueue = new LinkedBlockingQueue<>();
+		Environment environment = applicationContext.getEnvironment();
+		parkingQueue = new MultiClassParkingQueue(
+				Map.of(ParkingSpaceCategory.STANDARD, environment.getProperty("run.queue.standardWeight", Integer.class, 1),
+						ParkingSpaceCategory.EV_CHARGING, environment.getProperty("run.queue.evChargingWeight", Integer.class, 1)),
+				environment.getProperty("run.queue.ageingMillis", Long.class, 0L));
 
 		// Instantiate 120 random vehicles to populate the 100 space car park.
 		allVehicles = carParkDataGenerator.generateRandomVehicles(numVehiclesToModel);
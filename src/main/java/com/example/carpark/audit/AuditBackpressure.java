@@ -0,0 +1,11 @@
+package com.example.carpark.audit;
+
+public enum AuditBackpressure {
+    // Wait for the audit writer to make room. Nothing is lost, but a backed up audit store slows exits down.
+    BLOCK,
+    // Record the visit on the exit thread, straight into the audit store. Nothing is lost, but (only while the buffer is
+    // full) exits wait for the audit store as if the pipeline wasn't there.
+    CALLER_RUNS,
+    // Drop the visit (and count it). Exits never wait, but the audit trail (and takings) will be incomplete.
+    DROP
+}
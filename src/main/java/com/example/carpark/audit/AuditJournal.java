@@ -0,0 +1,556 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.vrm.VehicleRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append only journal of parking audits, written as fixed width binary records to a directory of memory mapped
+ * segment files on the local filesystem.
+ * Appends only copy the record into the mapped segment. A background flusher thread then forces (fsyncs) the segment,
+ * covering every record appended since its last flush in one go (group commit), so exits aren't each held up by their
+ * own fsync. When opened, the journal replays every record in order and truncates a torn record left at the tail by a
+ * crash mid write. The records can be read back at any time (see forEach), straight from the segment files - each full
+ * segment is mapped once and kept mapped, along with the earliest and latest times its visits left, so reading back
+ * the visits that left in a range of times skips the segments with none in it (visits are journalled as they end).
+ * <p>
+ * If a segment can't be mapped or flushed, the journal fails: the batch being appended is refused whole (any new
+ * segments it needs are mapped before its first record is written), appenders waiting for a flush are woken with an
+ * IllegalStateException, and every later append is refused.
+ */
+@Log4j2
+public class AuditJournal implements Closeable {
+
+    static final int RECORD_SIZE = 64;
+
+    static final int MAX_VRM_BYTES = 23;
+
+    private static final String SEGMENT_PREFIX = "audit-";
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /* Record layout (all fields big endian):
+     *  0 - CRC32 of bytes 4 - 63
+     *  4 - parking space designation
+     *  8 - arrived epoch second (UTC), 16 - arrived nanos
+     * 20 - left epoch second (UTC),    28 - left nanos
+     * 32 - parking charge (pence)
+     * 40 - VRM length, 41 - 63 VRM (UTF-8, zero padded) */
+    private static final int DESIGNATION_OFFSET = 4;
+
+    private static final int ARRIVED_OFFSET = 8;
+
+    private static final int LEFT_OFFSET = 20;
+
+    private static final int PARKING_CHARGE_OFFSET = 32;
+
+    private static final int VRM_LENGTH_OFFSET = 40;
+
+    private static final int VRM_OFFSET = 41;
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    private final boolean syncOnWrite;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Signalled when there are appended records waiting to be flushed.
+    private final Condition recordsAppended = lock.newCondition();
+
+    // Signalled whenever the flushed sequence moves on.
+    private final Condition recordsFlushed = lock.newCondition();
+
+    private final Thread flusherThread;
+
+    // Checksums the records appended, under the lock.
+    private final CRC32 appendChecksum = new CRC32();
+
+    private MappedByteBuffer currentSegment;
+
+    // Full segments rolled away from since the last flush, which the flusher forces along with the current segment.
+    private final List<MappedByteBuffer> unflushedSegments = new ArrayList<>();
+
+    // Every full segment, oldest first, for reading back.
+    private final List<Segment> sealedSegments = new ArrayList<>();
+
+    // The earliest and latest times the visits in the current segment left, or null while it is empty.
+    private LocalDateTime currentEarliestLeft;
+
+    private LocalDateTime currentLatestLeft;
+
+    private int firstSegmentNumber;
+
+    private int currentSegmentNumber;
+
+    private int nextRecordInSegment;
+
+    // Total records appended / known to be flushed to disk, since the journal was opened.
+    private long appendedSequence;
+
+    private long flushedSequence;
+
+    private boolean closed;
+
+    // Why the journal failed (a segment couldn't be flushed), or null if it hasn't.
+    private RuntimeException failure;
+
+    private AuditJournal(Path directory, int recordsPerSegment, boolean syncOnWrite) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.syncOnWrite = syncOnWrite;
+        this.flusherThread = new Thread(this::flushUntilClosed, "audit-journal-flusher");
+        this.flusherThread.setDaemon(true);
+    }
+
+    /**
+     * Opens (or creates) the journal in the supplied directory, replaying every record already in it.
+     * @param directory the local directory holding the journal segments.
+     * @param recordsPerSegment the number of records each segment file holds.
+     * @param syncOnWrite true if append should wait until the record has been flushed to disk.
+     * @param replayConsumer receives each parking audit already in the journal, in the order they were appended.
+     * @return the opened journal, ready to be appended to.
+     * @throws IOException if the journal could not be read or created.
+     */
+    public static AuditJournal open(Path directory, int recordsPerSegment, boolean syncOnWrite,
+                                    Consumer<ParkingAudit> replayConsumer) throws IOException {
+        AuditJournal auditJournal = new AuditJournal(directory, recordsPerSegment, syncOnWrite);
+        auditJournal.replay(replayConsumer);
+        auditJournal.flusherThread.start();
+        return auditJournal;
+    }
+
+    /**
+     * Appends a parking audit to the journal. If the journal syncs on write, this waits until the record is on disk.
+     * @param parkingAudit the parking audit to be appended.
+     */
+    public void append(ParkingAudit parkingAudit) {
+        appendAll(List.of(parkingAudit));
+    }
+
+    /**
+     * Appends a batch of parking audits to the journal, taking the lock (and, if the journal syncs on write, waiting for
+     * the disk) once for the whole batch.
+     * @param parkingAudits the parking audits to be appended, in order.
+     * @throws UncheckedIOException if a new segment couldn't be mapped (none of the batch is appended).
+     * @throws IllegalStateException if the journal is closed, or has failed to flush to disk.
+     */
+    public void appendAll(List<ParkingAudit> parkingAudits) {
+        byte[][] vrms = new byte[parkingAudits.size()][];
+        for (int i = 0; i < vrms.length; i++) {
+            ParkingAudit parkingAudit = parkingAudits.get(i);
+            vrms[i] = parkingAudit.getVehicleVrm().getBytes(StandardCharsets.UTF_8);
+            if (vrms[i].length > MAX_VRM_BYTES) {
+                throw new IllegalArgumentException("VRM " + parkingAudit.getVehicleVrm() + " is too long to be journalled");
+            }
+        }
+
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Audit journal is closed");
+            }
+            checkNotFailed();
+            List<MappedByteBuffer> newSegments = mapSegmentsFor(vrms.length);
+            int nextNewSegment = 0;
+            for (int i = 0; i < vrms.length; i++) {
+                if (nextRecordInSegment == recordsPerSegment) {
+                    rollSegment(newSegments.get(nextNewSegment++));
+                }
+                writeRecord(currentSegment, nextRecordInSegment++ * RECORD_SIZE, parkingAudits.get(i), vrms[i], appendChecksum);
+                recordLeft(parkingAudits.get(i).getLeft());
+                appendedSequence++;
+            }
+            sequence = appendedSequence;
+            recordsAppended.signal();
+
+            while (syncOnWrite && flushedSequence < sequence) {
+                checkNotFailed();
+                recordsFlushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes every record appended before this call to the supplied consumer, in the order they were appended. The
+     * records are read from the segment files (through the page cache), so reading the whole journal holds no more than
+     * one record on the heap at a time. Appends carry on while the journal is being read.
+     * @param consumer receives each parking audit.
+     * @throws IllegalStateException if a segment is corrupt.
+     */
+    public void forEach(Consumer<ParkingAudit> consumer) {
+        forEachLeftBetween(LocalDateTime.MIN, LocalDateTime.MAX, consumer);
+    }
+
+    /**
+     * Passes every record appended before this call where the vehicle left between the start and end (inclusive) to the
+     * supplied consumer, in the order they were appended. Segments with no visits that left in the range aren't read,
+     * and only the records in the range are decoded. Appends carry on while the journal is being read.
+     * @param start the earliest time a visit passed left.
+     * @param end the latest time a visit passed left.
+     * @param consumer receives each parking audit.
+     * @throws IllegalStateException if a segment is corrupt.
+     */
+    public void forEachLeftBetween(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        List<Segment> segments;
+        lock.lock();
+        try {
+            segments = new ArrayList<>(sealedSegments.size() + 1);
+            segments.addAll(sealedSegments);
+            segments.add(new Segment(currentSegment, nextRecordInSegment, currentEarliestLeft, currentLatestLeft));
+        } finally {
+            lock.unlock();
+        }
+
+        LeftRange leftRange = new LeftRange(start, end);
+        RecordReader recordReader = new RecordReader();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.numRecords() == 0 || segment.latestLeft().isBefore(start) || segment.earliestLeft().isAfter(end)) {
+                continue;
+            }
+            for (int record = 0; record < segment.numRecords(); record++) {
+                int offset = record * RECORD_SIZE;
+                if (!leftRange.contains(segment.mapping(), offset)) {
+                    continue;
+                }
+                ParkingAudit parkingAudit = recordReader.read(segment.mapping(), offset);
+                if (parkingAudit == null) {
+                    throw new IllegalStateException("Audit journal segment " + (firstSegmentNumber + i) + " is corrupt at record " + record);
+                }
+                consumer.accept(parkingAudit);
+            }
+        }
+    }
+
+    /**
+     * Flushes any outstanding records, then stops the flusher thread. The journal can't be appended to once closed.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            recordsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushUntilClosed() {
+        List<MappedByteBuffer> segmentsToFlush = new ArrayList<>();
+        while (true) {
+            long sequenceToFlush;
+            boolean closing;
+
+            lock.lock();
+            try {
+                while (!closed && flushedSequence == appendedSequence) {
+                    recordsAppended.awaitUninterruptibly();
+                }
+                segmentsToFlush.addAll(unflushedSegments);
+                unflushedSegments.clear();
+                segmentsToFlush.add(currentSegment);
+                sequenceToFlush = appendedSequence;
+                closing = closed;
+            } finally {
+                lock.unlock();
+            }
+
+            // Forced outside the lock, so exits keep appending (and join the next flush) while the disk catches up.
+            try {
+                for (MappedByteBuffer segment : segmentsToFlush) {
+                    segment.force();
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            segmentsToFlush.clear();
+
+            lock.lock();
+            try {
+                flushedSequence = Math.max(flushedSequence, sequenceToFlush);
+                recordsFlushed.signalAll();
+                if (closing && flushedSequence == appendedSequence) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held. Once failed, the journal stays failed - appending and waiting both refuse.
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new IllegalStateException("Audit journal failed to flush to disk", failure);
+        }
+    }
+
+    // Marks the journal failed and wakes every appender waiting for a flush, so none of them waits forever.
+    private void fail(RuntimeException e) {
+        log.error("Failed to flush the audit journal in " + directory + " - no more audits can be journalled", e);
+        lock.lock();
+        try {
+            failure = e;
+            recordsFlushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Called with the lock held. Maps every new segment that appending the supplied number of records will roll onto,
+     * before any of them is appended - so a segment that can't be mapped fails the whole batch rather than leaving it
+     * part appended. */
+    private List<MappedByteBuffer> mapSegmentsFor(int numRecords) {
+        int numRecordsAfterCurrentSegment = numRecords - (recordsPerSegment - nextRecordInSegment);
+        if (numRecordsAfterCurrentSegment <= 0) {
+            return List.of();
+        }
+        int numNewSegments = (numRecordsAfterCurrentSegment + recordsPerSegment - 1) / recordsPerSegment;
+        List<MappedByteBuffer> newSegments = new ArrayList<>(numNewSegments);
+        try {
+            for (int i = 1; i <= numNewSegments; i++) {
+                newSegments.add(mapSegment(currentSegmentNumber + i));
+            }
+        } catch (IOException e) {
+            // Remove the (empty) segments already created, so replay doesn't find a gap after the current segment.
+            for (int i = 1; i <= newSegments.size(); i++) {
+                try {
+                    Files.deleteIfExists(segmentPath(currentSegmentNumber + i));
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new UncheckedIOException(e);
+        }
+        return newSegments;
+    }
+
+    /* Called with the lock held once the current segment is full. The flusher forces the old segment on its next flush,
+     * and it stays mapped for reading back. */
+    private void rollSegment(MappedByteBuffer newSegment) {
+        unflushedSegments.add(currentSegment);
+        sealedSegments.add(new Segment(currentSegment, recordsPerSegment, currentEarliestLeft, currentLatestLeft));
+        currentSegment = newSegment;
+        currentSegmentNumber++;
+        nextRecordInSegment = 0;
+        currentEarliestLeft = null;
+        currentLatestLeft = null;
+    }
+
+    // Called with the lock held (or while replaying), for each record added to the current segment.
+    private void recordLeft(LocalDateTime left) {
+        if (currentEarliestLeft == null || left.isBefore(currentEarliestLeft)) {
+            currentEarliestLeft = left;
+        }
+        if (currentLatestLeft == null || left.isAfter(currentLatestLeft)) {
+            currentLatestLeft = left;
+        }
+    }
+
+    private void replay(Consumer<ParkingAudit> replayConsumer) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segmentPaths;
+        try (Stream<Path> paths = Files.list(directory)) {
+            segmentPaths = new ArrayList<>(paths
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+
+        if (segmentPaths.isEmpty()) {
+            currentSegment = mapSegment(0);
+            return;
+        }
+
+        firstSegmentNumber = segmentNumber(segmentPaths.get(0));
+        RecordReader recordReader = new RecordReader();
+        int numReplayed = 0;
+        for (int i = 0; i < segmentPaths.size(); i++) {
+            boolean lastSegment = i == segmentPaths.size() - 1;
+            if (Files.size(segmentPaths.get(i)) != (long) recordsPerSegment * RECORD_SIZE) {
+                throw new IllegalStateException("Audit journal segment " + segmentPaths.get(i) +
+                        " was not written with " + recordsPerSegment + " records per segment");
+            }
+            currentSegmentNumber = segmentNumber(segmentPaths.get(i));
+            // Only the last segment is appended to - the others are full, so are mapped read only.
+            currentSegment = lastSegment ? mapSegment(currentSegmentNumber) : mapSealedSegment(segmentPaths.get(i));
+            nextRecordInSegment = 0;
+            currentEarliestLeft = null;
+            currentLatestLeft = null;
+
+            while (nextRecordInSegment < recordsPerSegment) {
+                ParkingAudit parkingAudit = recordReader.read(currentSegment, nextRecordInSegment * RECORD_SIZE);
+                if (parkingAudit == null) {
+                    break;
+                }
+                replayConsumer.accept(parkingAudit);
+                recordLeft(parkingAudit.getLeft());
+                nextRecordInSegment++;
+                numReplayed++;
+            }
+
+            if (nextRecordInSegment < recordsPerSegment) {
+                if (!lastSegment) {
+                    throw new IllegalStateException("Audit journal segment " + segmentPaths.get(i) +
+                            " is corrupt at record " + nextRecordInSegment);
+                }
+                truncateTail();
+            }
+            if (!lastSegment) {
+                sealedSegments.add(new Segment(currentSegment, recordsPerSegment, currentEarliestLeft, currentLatestLeft));
+            }
+        }
+        log.info("Replayed " + numReplayed + " parking audit(s) from the audit journal in " + directory);
+    }
+
+    // Zeroes everything from the first invalid record to the end of the (last) segment, so it can be appended to.
+    private void truncateTail() {
+        int tailOffset = nextRecordInSegment * RECORD_SIZE;
+        if (!isZeroed(currentSegment, tailOffset)) {
+            log.warn("Truncating torn record " + nextRecordInSegment + " at the tail of the audit journal");
+            for (int offset = tailOffset; offset < currentSegment.capacity(); offset++) {
+                currentSegment.put(offset, (byte) 0);
+            }
+            currentSegment.force();
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int segmentNumber) throws IOException {
+        // The mapping stays valid after the channel is closed.
+        try (FileChannel fileChannel = FileChannel.open(segmentPath(segmentNumber),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private MappedByteBuffer mapSealedSegment(Path segmentPath) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private Path segmentPath(int segmentNumber) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentNumber(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+        return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Writes the record straight into the segment, checksumming it where it lies.
+    private static void writeRecord(MappedByteBuffer segment, int offset, ParkingAudit parkingAudit, byte[] vrm,
+                                    CRC32 crc32) {
+        segment.putInt(offset + DESIGNATION_OFFSET, parkingAudit.getParkingSpaceDesignation());
+        putDateTime(segment, offset + ARRIVED_OFFSET, parkingAudit.getArrived());
+        putDateTime(segment, offset + LEFT_OFFSET, parkingAudit.getLeft());
+        segment.putLong(offset + PARKING_CHARGE_OFFSET, parkingAudit.getParkingChargePence());
+        segment.put(offset + VRM_LENGTH_OFFSET, (byte) vrm.length);
+        segment.put(offset + VRM_OFFSET, vrm);
+        for (int vrmOffset = VRM_OFFSET + vrm.length; vrmOffset < RECORD_SIZE; vrmOffset++) {
+            segment.put(offset + vrmOffset, (byte) 0);
+        }
+        segment.putInt(offset, checksum(crc32, segment, offset));
+    }
+
+    private static int checksum(CRC32 crc32, ByteBuffer segment, int offset) {
+        crc32.reset();
+        crc32.update(segment.slice(offset + DESIGNATION_OFFSET, RECORD_SIZE - DESIGNATION_OFFSET));
+        return (int) crc32.getValue();
+    }
+
+    private static boolean isZeroed(MappedByteBuffer segment, int fromOffset) {
+        for (int offset = fromOffset; offset < segment.capacity(); offset++) {
+            if (segment.get(offset) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putDateTime(ByteBuffer buffer, int offset, LocalDateTime dateTime) {
+        buffer.putLong(offset, dateTime.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(offset + Long.BYTES, dateTime.getNano());
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer buffer, int offset) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(offset), buffer.getInt(offset + Long.BYTES), ZoneOffset.UTC);
+    }
+
+    /* A mapped segment and the number of records in it, with the earliest and latest times the visits in it left (null
+     * if it has no records). */
+    private record Segment(MappedByteBuffer mapping, int numRecords, LocalDateTime earliestLeft,
+                           LocalDateTime latestLeft) {
+    }
+
+    // The range of times visits left in, compared against a record's left time without decoding the record.
+    private record LeftRange(long startSecond, int startNano, long endSecond, int endNano) {
+
+        private LeftRange(LocalDateTime start, LocalDateTime end) {
+            this(start.toEpochSecond(ZoneOffset.UTC), start.getNano(), end.toEpochSecond(ZoneOffset.UTC), end.getNano());
+        }
+
+        private boolean contains(ByteBuffer segment, int offset) {
+            long leftSecond = segment.getLong(offset + LEFT_OFFSET);
+            int leftNano = segment.getInt(offset + LEFT_OFFSET + Long.BYTES);
+            return (leftSecond > startSecond || leftSecond == startSecond && leftNano >= startNano)
+                    && (leftSecond < endSecond || leftSecond == endSecond && leftNano <= endNano);
+        }
+    }
+
+    // Reads records back, reusing its checksum and VRM buffer for every record it reads. One per reading thread.
+    private static final class RecordReader {
+
+        private final CRC32 crc32 = new CRC32();
+
+        private final byte[] vrm = new byte[MAX_VRM_BYTES];
+
+        // Returns null if the slot doesn't hold a complete record (never written, or torn by a crash).
+        private ParkingAudit read(MappedByteBuffer segment, int offset) {
+            if (segment.getInt(offset) != checksum(crc32, segment, offset)) {
+                return null;
+            }
+
+            int vrmLength = segment.get(offset + VRM_LENGTH_OFFSET);
+            segment.get(offset + VRM_OFFSET, vrm, 0, vrmLength);
+            return new ParkingAudit(segment.getInt(offset + DESIGNATION_OFFSET),
+                    VehicleRegistry.idOf(new String(vrm, 0, vrmLength, StandardCharsets.UTF_8)),
+                    getDateTime(segment, offset + ARRIVED_OFFSET),
+                    getDateTime(segment, offset + LEFT_OFFSET),
+                    segment.getLong(offset + PARKING_CHARGE_OFFSET));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.carpark.audit;
+
+/* Both modes count the visits that left within the range, rounded out to the whole minutes it starts and ends in, so
+ * they agree on revenue and visits - only distinct vehicle counts differ (ROLLUP estimates them). */
+public enum AuditQueryMode {
+    // Calculated from the raw parking audits. Use for reconciliation.
+    EXACT,
+    // Combined from the pre-aggregated rollups, so distinct vehicle counts are estimates. Use for dashboards and
+    // reports over long ranges.
+    ROLLUP
+}
@@ -0,0 +1,127 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer of parking audits with any number of producers (the exit threads) and a single consumer (the
+ * thread writing audits to the audit store). Producers claim a sequence number with a CAS, so offering never takes a
+ * lock; the consumer drains in batches without any CAS at all.
+ * <p>
+ * Closing the buffer sets a flag in the producer sequence with the same CAS, so once close returns no producer can
+ * claim another slot - a final drain after closing is guaranteed to see every audit that was ever added.
+ */
+public class AuditRingBuffer {
+
+    private final AtomicReferenceArray<ParkingAudit> slots;
+
+    private final int mask;
+
+    // Set in the producer sequence once the buffer is closed.
+    private static final long CLOSED = 1L << 62;
+
+    // The next sequence number to be claimed by a producer (with CLOSED set once the buffer is closed).
+    private final AtomicLong producerSequence = new AtomicLong();
+
+    // The next sequence number to be consumed. Only ever written by the consumer.
+    private final AtomicLong consumerSequence = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of audits held (rounded up to a power of two).
+     */
+    public AuditRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Audit ring buffer capacity must be between 1 and 2^30");
+        }
+        int powerOfTwoCapacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicReferenceArray<>(powerOfTwoCapacity);
+        this.mask = powerOfTwoCapacity - 1;
+    }
+
+    /**
+     * Adds a parking audit to the buffer, unless it is full or closed. Safe to call from any number of threads.
+     * @param parkingAudit the parking audit to be added.
+     * @return true if the audit was added, false if the buffer is full or closed (see isClosed).
+     */
+    public boolean offer(ParkingAudit parkingAudit) {
+        long sequence;
+        do {
+            sequence = producerSequence.get();
+            if ((sequence & CLOSED) != 0 || sequence - consumerSequence.get() > mask) {
+                return false;
+            }
+        } while (!producerSequence.compareAndSet(sequence, sequence + 1));
+        // Publishing the audit is what makes it visible to the consumer, so this can follow the claim.
+        slots.lazySet((int) sequence & mask, parkingAudit);
+        return true;
+    }
+
+    /**
+     * Moves up to the supplied number of parking audits from the buffer to the supplied list, in the order they were
+     * claimed. Must only be called from the single consumer thread.
+     * @param batch receives the drained parking audits.
+     * @param maxBatchSize the most audits to drain.
+     * @return the number of audits drained.
+     */
+    public int drainTo(List<ParkingAudit> batch, int maxBatchSize) {
+        long sequence = consumerSequence.get();
+        long claimed = producerSequence.get() & ~CLOSED;
+        int numDrained = 0;
+        while (numDrained < maxBatchSize && sequence < claimed) {
+            int slot = (int) sequence & mask;
+            ParkingAudit parkingAudit = slots.get(slot);
+            if (parkingAudit == null) {
+                // Claimed by a producer that hasn't published it yet - it will be along in a moment.
+                Thread.onSpinWait();
+                continue;
+            }
+            slots.lazySet(slot, null);
+            batch.add(parkingAudit);
+            numDrained++;
+            consumerSequence.lazySet(++sequence);
+        }
+        return numDrained;
+    }
+
+    /**
+     * Closes the buffer to producers. Audits already added (including any still being published) can still be drained.
+     */
+    public void close() {
+        producerSequence.getAndUpdate(sequence -> sequence | CLOSED);
+    }
+
+    public boolean isClosed() {
+        return (producerSequence.get() & CLOSED) != 0;
+    }
+
+    /**
+     * Returns the number of parking audits waiting in the buffer (including any being published).
+     * @return the number of audits waiting to be consumed.
+     */
+    public int size() {
+        return (int) Math.max(0, getProducerSequence() - consumerSequence.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of parking audits ever added to the buffer.
+     * @return the sequence number of the next audit to be added.
+     */
+    public long getProducerSequence() {
+        return producerSequence.get() & ~CLOSED;
+    }
+
+    /**
+     * Returns the number of parking audits ever drained from the buffer.
+     * @return the sequence number of the next audit to be consumed.
+     */
+    public long getConsumerSequence() {
+        return consumerSequence.get();
+    }
+}
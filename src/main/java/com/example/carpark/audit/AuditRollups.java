@@ -0,0 +1,175 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.util.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Per minute, per hour and per day totals of revenue and visits (plus a distinct vehicle sketch), maintained as each
+ * parking visit is recorded. Visits are bucketed by the date time the vehicle left (i.e. when the charge was collected).
+ * A date range query is answered from whole days where possible, then whole hours, then minutes at the edges of the
+ * range, so only a handful of buckets are combined however long the range is.
+ */
+public class AuditRollups {
+
+    // Gives a standard error of ~1.6% on distinct vehicle counts.
+    private static final int SKETCH_PRECISION = 12;
+
+    private static final long SECONDS_PER_MINUTE = 60;
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private static final long SECONDS_PER_DAY = 86400;
+
+    // Bucket size (in seconds) for each granularity, finest first.
+    private static final long[] BUCKET_SECONDS = {SECONDS_PER_MINUTE, SECONDS_PER_HOUR, SECONDS_PER_DAY};
+
+    // Buckets keyed by bucket number (epoch second / bucket size) for each granularity, in the same order as above.
+    private final List<NavigableMap<Long, RollupBucket>> bucketsByGranularity = new ArrayList<>(BUCKET_SECONDS.length);
+
+    public AuditRollups() {
+        for (int granularity = 0; granularity < BUCKET_SECONDS.length; granularity++) {
+            bucketsByGranularity.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Adds a parking visit to the rollups.
+     * @param parkingAudit the parking audit of the visit.
+     */
+    public void record(ParkingAudit parkingAudit) {
+        long leftEpochSecond = toEpochSecond(parkingAudit.getLeft());
+        long parkingChargePence = parkingAudit.getParkingChargePence();
+        long vehicleHash = HyperLogLog.hash(parkingAudit.getVehicleId());
+
+        for (int granularity = 0; granularity < BUCKET_SECONDS.length; granularity++) {
+            bucketsByGranularity.get(granularity)
+                    .computeIfAbsent(Math.floorDiv(leftEpochSecond, BUCKET_SECONDS[granularity]), bucket -> new RollupBucket())
+                    .record(parkingChargePence, vehicleHash);
+        }
+    }
+
+    /**
+     * Returns the total parking charges collected from vehicles that left between the start and end minutes (inclusive).
+     * @param start the date time to begin capturing collected funds from (truncated to the minute).
+     * @param end the date time to end capturing collected funds from (the whole of this minute is included).
+     * @return the total amount (in pence) collected.
+     */
+    public long getRevenuePenceForRange(LocalDateTime start, LocalDateTime end) {
+        LongAdder revenuePence = new LongAdder();
+        forEachBucketInRange(start, end, bucket -> revenuePence.add(bucket.revenuePence.sum()));
+        return revenuePence.sum();
+    }
+
+    /**
+     * Returns the number of visits that ended between the start and end minutes (inclusive).
+     * @param start the date time to begin counting visits from (truncated to the minute).
+     * @param end the date time to end counting visits from (the whole of this minute is included).
+     * @return the number of visits.
+     */
+    public long getVisitsForRange(LocalDateTime start, LocalDateTime end) {
+        LongAdder visits = new LongAdder();
+        forEachBucketInRange(start, end, bucket -> visits.add(bucket.visits.sum()));
+        return visits.sum();
+    }
+
+    /**
+     * Estimates the number of distinct vehicles whose visits ended between the start and end minutes (inclusive).
+     * @param start the date time to begin counting vehicles from (truncated to the minute).
+     * @param end the date time to end counting vehicles from (the whole of this minute is included).
+     * @return the estimated number of distinct vehicles.
+     */
+    public long estimateDistinctVehiclesForRange(LocalDateTime start, LocalDateTime end) {
+        HyperLogLog distinctVehicles = new HyperLogLog(SKETCH_PRECISION);
+        forEachBucketInRange(start, end, bucket -> bucket.mergeInto(distinctVehicles));
+        return distinctVehicles.estimate();
+    }
+
+    /**
+     * Returns the start of the minute a range starts in. Rollups cover whole minutes, so ranges are rounded out to
+     * them - an EXACT query rounds its range out the same way, to count the same visits.
+     * @param start the date time a range starts.
+     * @return the start of its minute.
+     */
+    public static LocalDateTime startOfMinute(LocalDateTime start) {
+        return start.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /**
+     * Returns the end of the minute a range ends in (see startOfMinute).
+     * @param end the date time a range ends.
+     * @return the last nanosecond of its minute.
+     */
+    public static LocalDateTime endOfMinute(LocalDateTime end) {
+        return end.withSecond(59).withNano(999_999_999);
+    }
+
+    private void forEachBucketInRange(LocalDateTime start, LocalDateTime end, Consumer<RollupBucket> consumer) {
+        long fromSecond = Math.floorDiv(toEpochSecond(start), SECONDS_PER_MINUTE) * SECONDS_PER_MINUTE;
+        long toSecondExclusive = (Math.floorDiv(toEpochSecond(end), SECONDS_PER_MINUTE) + 1) * SECONDS_PER_MINUTE;
+        if (fromSecond < toSecondExclusive) {
+            forEachBucketInRange(fromSecond, toSecondExclusive, BUCKET_SECONDS.length - 1, consumer);
+        }
+    }
+
+    /* Visits the buckets of this granularity wholly inside the (minute aligned) range, then covers the partial buckets
+     * either side of them with the next finest granularity. */
+    private void forEachBucketInRange(long fromSecond, long toSecondExclusive, int granularity, Consumer<RollupBucket> consumer) {
+        if (fromSecond >= toSecondExclusive) {
+            return;
+        }
+        long bucketSeconds = BUCKET_SECONDS[granularity];
+        if (granularity == 0) {
+            bucketsByGranularity.get(0).subMap(fromSecond / bucketSeconds, toSecondExclusive / bucketSeconds).values()
+                    .forEach(consumer);
+            return;
+        }
+
+        long firstWholeBucket = -Math.floorDiv(-fromSecond, bucketSeconds);
+        long endWholeBucket = Math.floorDiv(toSecondExclusive, bucketSeconds);
+        if (firstWholeBucket >= endWholeBucket) {
+            forEachBucketInRange(fromSecond, toSecondExclusive, granularity - 1, consumer);
+            return;
+        }
+        forEachBucketInRange(fromSecond, firstWholeBucket * bucketSeconds, granularity - 1, consumer);
+        bucketsByGranularity.get(granularity).subMap(firstWholeBucket, endWholeBucket).values().forEach(consumer);
+        forEachBucketInRange(endWholeBucket * bucketSeconds, toSecondExclusive, granularity - 1, consumer);
+    }
+
+    // Audit date times have no time zone, so they are bucketed as if they were UTC.
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static class RollupBucket {
+
+        private final LongAdder revenuePence = new LongAdder();
+
+        private final LongAdder visits = new LongAdder();
+
+        private final HyperLogLog distinctVehicles = new HyperLogLog(SKETCH_PRECISION);
+
+        private void record(long parkingChargePence, long vehicleHash) {
+            revenuePence.add(parkingChargePence);
+            visits.increment();
+            synchronized (distinctVehicles) {
+                distinctVehicles.addHash(vehicleHash);
+            }
+        }
+
+        private void mergeInto(HyperLogLog sketch) {
+            synchronized (distinctVehicles) {
+                sketch.merge(distinctVehicles);
+            }
+        }
+    }
+}
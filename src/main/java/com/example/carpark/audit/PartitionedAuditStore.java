@@ -0,0 +1,122 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Stores parking audits partitioned by the day the vehicle arrived, with each partition ordered by arrival date time.
+ * Date range queries only visit the partitions (and the part of each partition) that overlap the requested range,
+ * rather than the entire audit trail. The audits are also partitioned by the day the vehicle left, for queries on when
+ * visits ended. Safe to record into and query from any number of threads.
+ */
+public class PartitionedAuditStore {
+
+    private final NavigableMap<LocalDate, NavigableMap<LocalDateTime, Queue<ParkingAudit>>> partitionsByArrivalDay =
+            new ConcurrentSkipListMap<>();
+
+    private final NavigableMap<LocalDate, Queue<ParkingAudit>> partitionsByLeftDay = new ConcurrentSkipListMap<>();
+
+    // Every audit in the order it was recorded, for returning the full audit trail.
+    private final Queue<ParkingAudit> allAudits = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Adds a parking audit to the store.
+     * @param parkingAudit the parking audit to be stored.
+     */
+    public void add(ParkingAudit parkingAudit) {
+        LocalDateTime arrived = parkingAudit.getArrived();
+        partitionsByArrivalDay.computeIfAbsent(arrived.toLocalDate(), day -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(arrived, arrival -> new ConcurrentLinkedQueue<>())
+                .add(parkingAudit);
+        leftDayPartition(parkingAudit).add(parkingAudit);
+        allAudits.add(parkingAudit);
+    }
+
+    /**
+     * Adds a batch of parking audits to the store. Consecutive audits that arrived at the same time (e.g. a group of
+     * vehicles that entered together) share a single partition lookup.
+     * @param parkingAudits the parking audits to be stored.
+     */
+    public void addAll(List<ParkingAudit> parkingAudits) {
+        Queue<ParkingAudit> arrivalAudits = null;
+        LocalDateTime arrival = null;
+        for (ParkingAudit parkingAudit : parkingAudits) {
+            LocalDateTime arrived = parkingAudit.getArrived();
+            if (!arrived.equals(arrival)) {
+                arrival = arrived;
+                arrivalAudits = partitionsByArrivalDay.computeIfAbsent(arrived.toLocalDate(), day -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(arrived, key -> new ConcurrentLinkedQueue<>());
+            }
+            arrivalAudits.add(parkingAudit);
+            leftDayPartition(parkingAudit).add(parkingAudit);
+        }
+        allAudits.addAll(parkingAudits);
+    }
+
+    /**
+     * Returns every parking audit in the store.
+     * @return a list of all parking audits, in the order they were recorded.
+     */
+    public List<ParkingAudit> getAll() {
+        return new ArrayList<>(allAudits);
+    }
+
+    /**
+     * Passes every parking audit where the vehicle arrived and left between the start and end date times (inclusive)
+     * to the supplied consumer, in order of arrival.
+     * @param start the date time to begin capturing car park audits from (inclusive).
+     * @param end the date time to end capturing car park audits from (inclusive).
+     * @param consumer the consumer to receive each matching parking audit.
+     */
+    public void forEachInRange(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        if (end.isBefore(start)) {
+            return;
+        }
+        // A vehicle that left by the end of the range must also have arrived by then, so only partitions (and arrivals)
+        // between the start and end can contain a match.
+        for (NavigableMap<LocalDateTime, Queue<ParkingAudit>> partition :
+                partitionsByArrivalDay.subMap(start.toLocalDate(), true, end.toLocalDate(), true).values()) {
+            for (Queue<ParkingAudit> parkingAudits : partition.subMap(start, true, end, true).values()) {
+                for (ParkingAudit parkingAudit : parkingAudits) {
+                    if (!parkingAudit.getLeft().isAfter(end)) {
+                        consumer.accept(parkingAudit);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes every parking audit where the vehicle left between the start and end date times (inclusive) to the
+     * supplied consumer, whenever it arrived.
+     * @param start the date time to begin capturing car park audits from (inclusive).
+     * @param end the date time to end capturing car park audits from (inclusive).
+     * @param consumer the consumer to receive each matching parking audit.
+     */
+    public void forEachLeftInRange(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        if (end.isBefore(start)) {
+            return;
+        }
+        for (Queue<ParkingAudit> partition :
+                partitionsByLeftDay.subMap(start.toLocalDate(), true, end.toLocalDate(), true).values()) {
+            for (ParkingAudit parkingAudit : partition) {
+                if (!parkingAudit.getLeft().isBefore(start) && !parkingAudit.getLeft().isAfter(end)) {
+                    consumer.accept(parkingAudit);
+                }
+            }
+        }
+    }
+
+    private Queue<ParkingAudit> leftDayPartition(ParkingAudit parkingAudit) {
+        return partitionsByLeftDay.computeIfAbsent(parkingAudit.getLeft().toLocalDate(), day -> new ConcurrentLinkedQueue<>());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.carpark.availability;
+
+/**
+ * An area of the car park that free spaces are counted for: the whole car park, a level, or a zone of a level.
+ * @param level the level (numbered from 0, the ground floor), or ALL_LEVELS for the whole car park.
+ * @param zone the zone within the level, or null for the whole level (or car park).
+ */
+public record AvailabilityArea(int level, String zone) {
+
+    public static final int ALL_LEVELS = -1;
+
+    public static final AvailabilityArea CAR_PARK = new AvailabilityArea(ALL_LEVELS, null);
+
+    public static AvailabilityArea level(int level) {
+        return new AvailabilityArea(level, null);
+    }
+
+    public static AvailabilityArea zone(int level, String zone) {
+        return new AvailabilityArea(level, zone);
+    }
+}
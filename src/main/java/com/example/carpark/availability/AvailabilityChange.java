@@ -0,0 +1,13 @@
+package com.example.carpark.availability;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+
+/**
+ * Pushed to availability subscribers when the number of free spaces of a category in an area crosses one of the
+ * configured thresholds.
+ * @param area the area of the car park.
+ * @param category the category of parking space.
+ * @param freeSpaces the number of free spaces now.
+ */
+public record AvailabilityChange(AvailabilityArea area, ParkingSpaceCategory category, int freeSpaces) {
+}
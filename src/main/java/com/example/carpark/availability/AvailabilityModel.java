@@ -0,0 +1,402 @@
+package com.example.carpark.availability;
+
+import com.example.carpark.bay.BayStore;
+import com.example.carpark.model.ParkingSpaceCategory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * Free spaces of each category for the whole car park, each level and each zone, for entrance signs and apps to read.
+ * The car park updates the counts as each bay is occupied and cleared, so reading them never touches the free space
+ * pools that vehicles are parking from - any number of pollers can read availability without slowing parking down.
+ * Only the level and zone counts are written; the car park's count is the sum of its levels', so there is no counter
+ * that every vehicle parking or leaving has to update.
+ * <p>
+ * Subscribers are told when a count crosses one of the configured thresholds (carPark.availability.thresholds), rather
+ * than on every vehicle parking or leaving. Changes are delivered on a notifier thread (started by the first
+ * subscription, and parked until a count crosses a threshold), and coalesced - a count that crosses a threshold and
+ * back before it is delivered is not delivered.
+ */
+@Log4j2
+@Component
+public class AvailabilityModel {
+
+    private static final ParkingSpaceCategory[] CATEGORIES = ParkingSpaceCategory.values();
+
+    // Spaces between counters (in ints), so counters written by different threads don't share a cache line.
+    private static final int PAD = 16;
+
+    // Queued for the notifier when the counts are replaced, so it stops waiting on the old counts.
+    private static final int COUNTS_REPLACED = -1;
+
+    // Until the car park is initialised, it has no free spaces.
+    private static final Counts NO_COUNTS = new Counts(null, List.of(AvailabilityArea.CAR_PARK),
+            Map.of(AvailabilityArea.CAR_PARK, 0), 0, new int[0], new int[0]);
+
+    /* The number of free spaces of a category in an area is in a band - the number of thresholds it is above. A change
+     * is pushed to subscribers when a count moves into a different band. */
+    @Value("${carPark.availability.thresholds:0,10,50}")
+    private int[] thresholds = {0, 10, 50};
+
+    private volatile Counts counts = NO_COUNTS;
+
+    private final List<Consumer<AvailabilityChange>> subscribers = new CopyOnWriteArrayList<>();
+
+    // Set (before the published bands are taken) once there is a subscriber, so until then counts are all that's kept.
+    private volatile boolean notifying;
+
+    private Thread notifierThread;
+
+    /**
+     * Counts the free spaces in the car park, replacing any previous counts.
+     * @param bayStore the bays of the car park, in their current state.
+     */
+    public synchronized void initialise(BayStore bayStore) {
+        int[] sortedThresholds = Arrays.stream(thresholds).distinct().sorted().toArray();
+        int levels = 0;
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            levels = Math.max(levels, bayStore.getLevel(slot) + 1);
+        }
+        // Areas are numbered: the car park, then each level, then each zone (as the zones are first seen).
+        List<AvailabilityArea> areas = new ArrayList<>();
+        Map<AvailabilityArea, Integer> areaIndexes = new HashMap<>();
+        areas.add(AvailabilityArea.CAR_PARK);
+        for (int level = 0; level < levels; level++) {
+            areas.add(AvailabilityArea.level(level));
+        }
+        int[] zoneAreaOfSlot = new int[bayStore.size()];
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            AvailabilityArea zone = AvailabilityArea.zone(bayStore.getLevel(slot), bayStore.getZone(slot));
+            Integer areaIndex = areaIndexes.get(zone);
+            if (areaIndex == null) {
+                areaIndex = areas.size();
+                areaIndexes.put(zone, areaIndex);
+                areas.add(zone);
+            }
+            zoneAreaOfSlot[slot] = areaIndex;
+        }
+        for (int i = 0; i <= levels; i++) {
+            areaIndexes.put(areas.get(i), i);
+        }
+
+        Counts newCounts = new Counts(bayStore, areas, areaIndexes, levels, zoneAreaOfSlot, sortedThresholds);
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            if (bayStore.getOccupyingVehicle(slot) == null) {
+                newCounts.add(slot, 1, false);
+            }
+        }
+        if (notifying) {
+            newCounts.takePublishedBands();
+        }
+        Counts oldCounts = this.counts;
+        this.counts = newCounts;
+        oldCounts.changedKeys.offer(COUNTS_REPLACED);
+    }
+
+    /**
+     * Records that a bay has been occupied.
+     * @param slot the slot of the bay (see BayStore).
+     */
+    public void recordOccupied(int slot) {
+        record(slot, -1);
+    }
+
+    /**
+     * Records that a bay has been cleared.
+     * @param slot the slot of the bay (see BayStore).
+     */
+    public void recordVacated(int slot) {
+        record(slot, 1);
+    }
+
+    public int getFreeSpaces(ParkingSpaceCategory category) {
+        return counts.get(0, category);
+    }
+
+    public int getFreeSpaces(int level, ParkingSpaceCategory category) {
+        Counts current = counts;
+        if (level < 0 || level >= current.levels) {
+            throw new IllegalArgumentException("The car park has no level " + level);
+        }
+        return current.get(1 + level, category);
+    }
+
+    public int getFreeSpaces(int level, String zone, ParkingSpaceCategory category) {
+        return getFreeSpaces(AvailabilityArea.zone(level, zone), category);
+    }
+
+    /**
+     * Returns the number of free spaces of a category in an area of the car park.
+     * @param area the car park, a level or a zone (see getAreas).
+     * @param category the category of parking space.
+     * @return the number of free spaces.
+     * @throws IllegalArgumentException if the car park has no such area.
+     */
+    public int getFreeSpaces(AvailabilityArea area, ParkingSpaceCategory category) {
+        Counts current = counts;
+        Integer areaIndex = current.areaIndexes.get(area);
+        if (areaIndex == null) {
+            throw new IllegalArgumentException("The car park has no area " + area);
+        }
+        return current.get(areaIndex, category);
+    }
+
+    /**
+     * Returns the areas free spaces are counted for.
+     * @return the car park, then each level, then each zone.
+     */
+    public List<AvailabilityArea> getAreas() {
+        return counts.areas;
+    }
+
+    /**
+     * Subscribes to changes in availability. The subscriber is called on the notifier thread (so should return
+     * quickly) whenever the number of free spaces of a category in an area crosses a threshold. Read the current
+     * counts with getFreeSpaces, e.g. to show them when subscribing.
+     * @param subscriber the subscriber.
+     */
+    public synchronized void subscribe(Consumer<AvailabilityChange> subscriber) {
+        subscribers.add(subscriber);
+        if (notifierThread == null) {
+            notifying = true;
+            counts.takePublishedBands();
+            notifierThread = new Thread(this::notifyUntilStopped, "availability-notifier");
+            notifierThread.setDaemon(true);
+            notifierThread.start();
+        }
+    }
+
+    public void unsubscribe(Consumer<AvailabilityChange> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (notifierThread != null) {
+            notifierThread.interrupt();
+            try {
+                notifierThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void record(int slot, int delta) {
+        counts.add(slot, delta, notifying);
+    }
+
+    private void notifyUntilStopped() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Counts current = counts;
+                // Parked until a key is queued (or the counts are replaced, when it moves on to the new counts).
+                int key = current.changedKeys.take();
+                if (key != COUNTS_REPLACED) {
+                    AvailabilityChange change = current.takeChange(key);
+                    if (change != null) {
+                        publish(change);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped.
+        }
+    }
+
+    private void publish(AvailabilityChange change) {
+        for (Consumer<AvailabilityChange> subscriber : subscribers) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                log.error("Availability subscriber failed to handle {}", change, e);
+            }
+        }
+    }
+
+    /* The free space counters for a car park, one for each level or zone and category (a key), each on its own cache
+     * line. A key whose count has crossed a threshold is queued for the notifier once, until the notifier takes it.
+     *
+     * The car park's counts (area 0) are summed from the levels', so nothing tells a vehicle parking that the car
+     * park's count has crossed a threshold. Instead, the room left before the car park's count next crosses a threshold
+     * is shared out between the levels as a window around each level's count. While every level stays in its window,
+     * the car park can't have crossed a threshold - a level that leaves its window queues the car park's key, and the
+     * notifier sums the levels and shares out the room again. */
+    private static final class Counts {
+
+        private final BayStore bayStore;
+
+        private final List<AvailabilityArea> areas;
+
+        private final Map<AvailabilityArea, Integer> areaIndexes;
+
+        private final int levels;
+
+        private final int[] zoneAreaOfSlot;
+
+        private final int[] thresholds;
+
+        private final AtomicIntegerArray freeSpaces;
+
+        private final AtomicIntegerArray changed;
+
+        // The window each level's count (by level and category, as keyOf(level, category)) can move in, see above.
+        private final AtomicIntegerArray levelWindowLow;
+
+        private final AtomicIntegerArray levelWindowHigh;
+
+        private final BlockingQueue<Integer> changedKeys = new LinkedBlockingQueue<>();
+
+        // The band last pushed to subscribers for each key (only read and written by the notifier, once taken).
+        private final int[] publishedBands;
+
+        private Counts(BayStore bayStore, List<AvailabilityArea> areas, Map<AvailabilityArea, Integer> areaIndexes,
+                       int levels, int[] zoneAreaOfSlot, int[] thresholds) {
+            this.bayStore = bayStore;
+            this.areas = Collections.unmodifiableList(areas);
+            this.areaIndexes = areaIndexes;
+            this.levels = levels;
+            this.zoneAreaOfSlot = zoneAreaOfSlot;
+            this.thresholds = thresholds;
+            int numKeys = areas.size() * CATEGORIES.length;
+            this.freeSpaces = new AtomicIntegerArray(numKeys * PAD);
+            this.changed = new AtomicIntegerArray(numKeys);
+            this.publishedBands = new int[numKeys];
+            this.levelWindowLow = new AtomicIntegerArray(levels * CATEGORIES.length);
+            this.levelWindowHigh = new AtomicIntegerArray(levels * CATEGORIES.length);
+        }
+
+        private int get(int areaIndex, ParkingSpaceCategory category) {
+            int categoryIndex = category.ordinal();
+            return areaIndex == 0 ? sumLevels(categoryIndex) : freeSpaces.get(keyOf(areaIndex, categoryIndex) * PAD);
+        }
+
+        private int sumLevels(int category) {
+            int free = 0;
+            for (int level = 0; level < levels; level++) {
+                free += freeSpaces.get(keyOf(1 + level, category) * PAD);
+            }
+            return free;
+        }
+
+        // Adds to the free spaces of the slot's level and zone, queueing any key that has crossed a threshold.
+        private void add(int slot, int delta, boolean notifying) {
+            int category = bayStore.getCategory(slot).ordinal();
+            int level = bayStore.getLevel(slot);
+            int levelKey = keyOf(1 + level, category);
+            int zoneKey = keyOf(zoneAreaOfSlot[slot], category);
+            int levelFree = freeSpaces.addAndGet(levelKey * PAD, delta);
+            int zoneFree = freeSpaces.addAndGet(zoneKey * PAD, delta);
+            if (!notifying) {
+                return;
+            }
+            if (bandOf(levelFree - delta) != bandOf(levelFree)) {
+                markKeyChanged(levelKey);
+            }
+            if (bandOf(zoneFree - delta) != bandOf(zoneFree)) {
+                markKeyChanged(zoneKey);
+            }
+            int window = keyOf(level, category);
+            if (levelFree < levelWindowLow.get(window) || levelFree > levelWindowHigh.get(window)) {
+                markKeyChanged(keyOf(0, category));
+            }
+        }
+
+        // Queues a key for the notifier (a key already queued is left in place - the notifier reads the latest count).
+        private void markKeyChanged(int key) {
+            if (changed.compareAndSet(key, 0, 1)) {
+                changedKeys.offer(key);
+            }
+        }
+
+        private void takePublishedBands() {
+            for (int key = 0; key < publishedBands.length; key++) {
+                int areaIndex = key / CATEGORIES.length;
+                publishedBands[key] = bandOf(areaIndex == 0 ? shareOutCarParkRoom(key) : freeSpaces.get(key * PAD));
+            }
+        }
+
+        // Takes a queued key, returning its change if it is now in a different band to the one last published.
+        private AvailabilityChange takeChange(int key) {
+            // Cleared before reading the count, so a later crossing queues the key again.
+            changed.set(key, 0);
+            int areaIndex = key / CATEGORIES.length;
+            int free = areaIndex == 0 ? shareOutCarParkRoom(key) : freeSpaces.get(key * PAD);
+            int band = bandOf(free);
+            if (band == publishedBands[key]) {
+                return null;
+            }
+            publishedBands[key] = band;
+            return new AvailabilityChange(areas.get(areaIndex), CATEGORIES[key % CATEGORIES.length], free);
+        }
+
+        /* Sums the car park's count of a category (its key) from the levels, and shares out the room before it next
+         * crosses a threshold between the levels' windows. Returns the car park's count. */
+        private int shareOutCarParkRoom(int carParkKey) {
+            int category = carParkKey % CATEGORIES.length;
+            int[] levelFree = new int[levels];
+            int free = 0;
+            for (int level = 0; level < levels; level++) {
+                levelFree[level] = freeSpaces.get(keyOf(1 + level, category) * PAD);
+                free += levelFree[level];
+            }
+            if (levels == 0) {
+                // Not initialised yet - there are no levels to share the room between.
+                return free;
+            }
+            // The count can fall to one above the highest threshold below it, and rise to the lowest at or above it.
+            long roomBelow = Integer.MAX_VALUE;
+            long roomAbove = Integer.MAX_VALUE;
+            for (int threshold : thresholds) {
+                if (threshold < free) {
+                    roomBelow = free - threshold - 1;
+                } else {
+                    roomAbove = threshold - free;
+                    break;
+                }
+            }
+            for (int level = 0; level < levels; level++) {
+                int window = keyOf(level, category);
+                levelWindowLow.set(window, (int) Math.max(levelFree[level] - roomBelow / levels, Integer.MIN_VALUE));
+                levelWindowHigh.set(window, (int) Math.min(levelFree[level] + roomAbove / levels, Integer.MAX_VALUE));
+            }
+            // A level that left its new window before it was set wouldn't have queued the key - look again.
+            boolean leftWindow = false;
+            for (int level = 0; level < levels; level++) {
+                int window = keyOf(level, category);
+                int nowFree = freeSpaces.get(keyOf(1 + level, category) * PAD);
+                leftWindow |= nowFree < levelWindowLow.get(window) || nowFree > levelWindowHigh.get(window);
+            }
+            if (leftWindow) {
+                markKeyChanged(carParkKey);
+            }
+            return free;
+        }
+
+        private int bandOf(int free) {
+            int band = 0;
+            while (band < thresholds.length && free > thresholds[band]) {
+                band++;
+            }
+            return band;
+        }
+
+        private static int keyOf(int areaIndex, int category) {
+            return areaIndex * CATEGORIES.length + category;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.carpark.bay;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+
+/**
+ * Holds the state of every bay (parking space) in the car park, addressed by slot - the position of the bay in
+ * designation order. Occupying and clearing a bay are atomic, so two threads can never claim the same bay and a reader
+ * never sees a vehicle paired with the arrival time of a different visit.
+ */
+public interface BayStore {
+
+    /**
+     * Returns the number of bays in the car park.
+     * @return the number of bays (slots are numbered from 0 to one less than this).
+     */
+    int size();
+
+    /**
+     * Finds the slot of the bay with the supplied designation.
+     * @param designation the designation of the bay.
+     * @return the slot of the bay, or a negative number if there is no bay with the designation.
+     */
+    int slotOf(int designation);
+
+    int getDesignation(int slot);
+
+    int getLevel(int slot);
+
+    String getZone(int slot);
+
+    ParkingSpaceCategory getCategory(int slot);
+
+    /**
+     * Atomically occupies a bay, provided it is currently free.
+     * @param slot the slot of the bay.
+     * @param vehicle the vehicle occupying the bay.
+     * @param arrivalEpochMillis when the vehicle arrived in the bay (epoch milliseconds).
+     * @return true if the bay was free and is now occupied by the vehicle, otherwise false.
+     */
+    boolean tryOccupy(int slot, Vehicle vehicle, long arrivalEpochMillis);
+
+    /**
+     * Atomically clears a bay, provided it is currently occupied by the supplied vehicle.
+     * @param slot the slot of the bay.
+     * @param vehicle the vehicle leaving the bay.
+     * @return the occupancy that has ended (the vehicle and its arrival), or null if it was not occupying the bay.
+     */
+    ParkingSpace.Occupancy tryClear(int slot, Vehicle vehicle);
+
+    /**
+     * Returns the current occupancy of a bay (the occupying vehicle together with its arrival).
+     * @param slot the slot of the bay.
+     * @return the current occupancy, or null if the bay is free.
+     */
+    ParkingSpace.Occupancy getOccupancy(int slot);
+
+    Vehicle getOccupyingVehicle(int slot);
+
+    /**
+     * Returns the bay as a parking space, e.g. to hand to a vehicle that has just parked in it.
+     * @param slot the slot of the bay.
+     * @return the parking space - either the bay itself, or a copy of its current state (see the implementation).
+     */
+    ParkingSpace getParkingSpace(int slot);
+}
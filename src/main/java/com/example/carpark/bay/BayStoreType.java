@@ -0,0 +1,21 @@
+package com.example.carpark.bay;
+
+import com.example.carpark.model.ParkingSpace;
+
+import java.util.List;
+
+public enum BayStoreType {
+    // A ParkingSpace object per bay. Parking spaces handed out are the live bays.
+    OBJECTS,
+    // Primitive arrays with a column per field, for sites with millions of bays. Parking spaces handed out are copies.
+    COLUMNAR;
+
+    /**
+     * Creates a bay store of this type holding the supplied parking spaces.
+     * @param parkingSpaces the parking spaces of the car park, ordered by designation.
+     * @return the bay store.
+     */
+    public BayStore create(List<ParkingSpace> parkingSpaces) {
+        return this == COLUMNAR ? new ColumnarBayStore(parkingSpaces) : new ObjectBayStore(parkingSpaces);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.carpark.bay;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.vrm.VehicleRegistry;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the bays in primitive arrays, one per field (34 bytes a bay), rather than an object graph per bay - so a
+ * site with millions of bays costs a few arrays the garbage collector never has to trace. Occupants are held as vehicle
+ * ids (see VehicleRegistry) rather than Vehicles, and Vehicles and ParkingSpaces are only created when asked for.
+ * <p>
+ * The parking spaces returned are copies of the bays as they were at the time, so they don't change as vehicles come
+ * and go.
+ */
+public class ColumnarBayStore implements BayStore {
+
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+    private static final long FREE = 0;
+
+    // A bay being occupied (its occupant's columns are being written).
+    private static final long CLAIMING = 1;
+
+    private static final long OCCUPIED = 2;
+
+    private static final long STATE_MASK = 3;
+
+    private static final long VISIT = 4;
+
+    private final int[] designations;
+
+    private final boolean[] evChargingPoints;
+
+    private final short[] levels;
+
+    // Each bay's zone as an index into zones (there are only a handful of zones, however many bays).
+    private final short[] zoneIndexes;
+
+    private final String[] zones;
+
+    /* The occupancy of each bay: its state (FREE, CLAIMING or OCCUPIED) in the low 2 bits, and the number of visits to
+     * the bay above them. Occupying and clearing a bay is a CAS on this alone. As every visit changes it, a reader can
+     * check the occupant's columns it read all belong to the same visit by reading it again. */
+    private final AtomicLongArray occupancies;
+
+    // The occupant's columns. Only written while a bay is being claimed, and published by the occupancy.
+    private final long[] vehicleIds;
+
+    private final byte[] vehicleTypes;
+
+    private final long[] arrivalEpochMillis;
+
+    /**
+     * @param parkingSpaces the parking spaces of the car park, ordered by designation. Only copied from, so they can be
+     * discarded once the store is built.
+     */
+    public ColumnarBayStore(List<ParkingSpace> parkingSpaces) {
+        int numBays = parkingSpaces.size();
+        this.designations = new int[numBays];
+        this.evChargingPoints = new boolean[numBays];
+        this.levels = new short[numBays];
+        this.zoneIndexes = new short[numBays];
+        this.occupancies = new AtomicLongArray(numBays);
+        this.vehicleIds = new long[numBays];
+        this.vehicleTypes = new byte[numBays];
+        this.arrivalEpochMillis = new long[numBays];
+
+        List<String> zoneList = new ArrayList<>();
+        Map<String, Short> zoneIndexesByZone = new HashMap<>();
+        for (int slot = 0; slot < numBays; slot++) {
+            ParkingSpace parkingSpace = parkingSpaces.get(slot);
+            if (parkingSpace.getLevel() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Parking space " + parkingSpace.getDesignation() + " is on level " +
+                        parkingSpace.getLevel() + " - levels above " + Short.MAX_VALUE + " are not supported");
+            }
+            designations[slot] = parkingSpace.getDesignation();
+            evChargingPoints[slot] = parkingSpace.isEvChargingPoint();
+            levels[slot] = (short) parkingSpace.getLevel();
+            zoneIndexes[slot] = zoneIndexesByZone.computeIfAbsent(parkingSpace.getZone(), zone -> {
+                zoneList.add(zone);
+                return (short) (zoneList.size() - 1);
+            });
+            ParkingSpace.Occupancy occupancy = parkingSpace.getOccupancy();
+            if (occupancy != null) {
+                tryOccupy(slot, occupancy.vehicle(), occupancy.arrivalEpochMillis());
+            }
+        }
+        this.zones = zoneList.toArray(new String[0]);
+    }
+
+    @Override
+    public int size() {
+        return designations.length;
+    }
+
+    @Override
+    public int slotOf(int designation) {
+        return Arrays.binarySearch(designations, designation);
+    }
+
+    @Override
+    public int getDesignation(int slot) {
+        return designations[slot];
+    }
+
+    @Override
+    public int getLevel(int slot) {
+        return levels[slot];
+    }
+
+    @Override
+    public String getZone(int slot) {
+        return zones[zoneIndexes[slot]];
+    }
+
+    @Override
+    public ParkingSpaceCategory getCategory(int slot) {
+        return evChargingPoints[slot] ? ParkingSpaceCategory.EV_CHARGING : ParkingSpaceCategory.STANDARD;
+    }
+
+    @Override
+    public boolean tryOccupy(int slot, Vehicle vehicle, long arrivalEpochMillis) {
+        long occupancy = occupancies.get(slot);
+        if ((occupancy & STATE_MASK) != FREE) {
+            return false;
+        }
+        // Claim the bay first, so no other thread can be writing its occupant's columns at the same time.
+        long visit = (occupancy & ~STATE_MASK) + VISIT;
+        if (!occupancies.compareAndSet(slot, occupancy, visit | CLAIMING)) {
+            return false;
+        }
+        vehicleIds[slot] = vehicle.getVehicleId();
+        vehicleTypes[slot] = (byte) vehicle.getVehicleType().ordinal();
+        this.arrivalEpochMillis[slot] = arrivalEpochMillis;
+        occupancies.set(slot, visit | OCCUPIED);
+        return true;
+    }
+
+    @Override
+    public ParkingSpace.Occupancy tryClear(int slot, Vehicle vehicle) {
+        long vehicleId = vehicle.findVehicleId();
+        long occupancy;
+        long arrival;
+        do {
+            occupancy = occupancies.get(slot);
+            if ((occupancy & STATE_MASK) != OCCUPIED || vehicleIds[slot] != vehicleId
+                    || vehicleTypes[slot] != vehicle.getVehicleType().ordinal()) {
+                return null;
+            }
+            // The bay can't be occupied by another visit until this CAS clears it, so this is the arrival of this visit.
+            arrival = arrivalEpochMillis[slot];
+        } while (!occupancies.compareAndSet(slot, occupancy, (occupancy & ~STATE_MASK) | FREE));
+        return new ParkingSpace.Occupancy(vehicle, arrival);
+    }
+
+    @Override
+    public ParkingSpace.Occupancy getOccupancy(int slot) {
+        while (true) {
+            long occupancy = occupancies.get(slot);
+            if ((occupancy & STATE_MASK) != OCCUPIED) {
+                return null;
+            }
+            long vehicleId = vehicleIds[slot];
+            VehicleType vehicleType = VEHICLE_TYPES[vehicleTypes[slot]];
+            long arrival = arrivalEpochMillis[slot];
+            // Read the occupancy again (after the reads above) - if it is unchanged, they were all from the same visit.
+            VarHandle.acquireFence();
+            if (occupancies.get(slot) == occupancy) {
+                return new ParkingSpace.Occupancy(new Vehicle(VehicleRegistry.vrmOf(vehicleId), vehicleType), arrival);
+            }
+        }
+    }
+
+    @Override
+    public Vehicle getOccupyingVehicle(int slot) {
+        ParkingSpace.Occupancy occupancy = getOccupancy(slot);
+        return occupancy == null ? null : occupancy.vehicle();
+    }
+
+    @Override
+    public ParkingSpace getParkingSpace(int slot) {
+        ParkingSpace parkingSpace = new ParkingSpace(designations[slot], evChargingPoints[slot], levels[slot],
+                zones[zoneIndexes[slot]]);
+        ParkingSpace.Occupancy occupancy = getOccupancy(slot);
+        if (occupancy != null) {
+            parkingSpace.tryOccupy(occupancy.vehicle(), occupancy.arrivalEpochMillis());
+        }
+        return parkingSpace;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.carpark.bay;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Holds each bay as a ParkingSpace object, which claims and releases its occupancy with a CAS. The parking spaces
+ * returned are the bays themselves, so they always show the current occupancy.
+ */
+public class ObjectBayStore implements BayStore {
+
+    private static final Comparator<ParkingSpace> BY_DESIGNATION = Comparator.comparingInt(ParkingSpace::getDesignation);
+
+    private final List<ParkingSpace> parkingSpaces;
+
+    /**
+     * @param parkingSpaces the parking spaces of the car park, ordered by designation (the list must not be changed).
+     */
+    public ObjectBayStore(List<ParkingSpace> parkingSpaces) {
+        this.parkingSpaces = parkingSpaces;
+    }
+
+    @Override
+    public int size() {
+        return parkingSpaces.size();
+    }
+
+    @Override
+    public int slotOf(int designation) {
+        return Collections.binarySearch(parkingSpaces, new ParkingSpace(designation, false), BY_DESIGNATION);
+    }
+
+    @Override
+    public int getDesignation(int slot) {
+        return parkingSpaces.get(slot).getDesignation();
+    }
+
+    @Override
+    public int getLevel(int slot) {
+        return parkingSpaces.get(slot).getLevel();
+    }
+
+    @Override
+    public String getZone(int slot) {
+        return parkingSpaces.get(slot).getZone();
+    }
+
+    @Override
+    public ParkingSpaceCategory getCategory(int slot) {
+        return ParkingSpaceCategory.of(parkingSpaces.get(slot));
+    }
+
+    @Override
+    public boolean tryOccupy(int slot, Vehicle vehicle, long arrivalEpochMillis) {
+        return parkingSpaces.get(slot).tryOccupy(vehicle, arrivalEpochMillis);
+    }
+
+    @Override
+    public ParkingSpace.Occupancy tryClear(int slot, Vehicle vehicle) {
+        return parkingSpaces.get(slot).tryClear(vehicle);
+    }
+
+    @Override
+    public ParkingSpace.Occupancy getOccupancy(int slot) {
+        return parkingSpaces.get(slot).getOccupancy();
+    }
+
+    @Override
+    public Vehicle getOccupyingVehicle(int slot) {
+        return parkingSpaces.get(slot).getOccupyingVehicle();
+    }
+
+    @Override
+    public ParkingSpace getParkingSpace(int slot) {
+        return parkingSpaces.get(slot);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.carpark.index;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps track of the free parking spaces in the car park, split by parking space category, so that a suitable space
+ * can be found without scanning every space in the car park.
+ * Spaces are referred to by their slot (their position in the car park once ordered by designation), meaning the
+ * lowest free slot is always the free space with the lowest designation.
+ */
+public class FreeParkingSpaceIndex {
+
+    public static final int NO_FREE_SLOT = -1;
+
+    /* A bitset of free slots for each category (indexed by ordinal), rather than a set of boxed Integers - a slot is
+     * claimed by clearing its bit with a CAS, and the lowest free slot is the lowest set bit. */
+    private final FreeSlots[] freeSlotsByCategory = new FreeSlots[ParkingSpaceCategory.values().length];
+
+    /**
+     * @param numSlots the number of slots in the car park (slots are numbered from 0 to one less than this).
+     */
+    public FreeParkingSpaceIndex(int numSlots) {
+        this(0, numSlots);
+    }
+
+    /**
+     * Creates an index of a range of slots (e.g. one level's), with bits for only those slots.
+     * @param firstSlot the lowest slot that can be marked free.
+     * @param numSlots the number of slots in the range (from firstSlot to firstSlot + numSlots - 1).
+     */
+    public FreeParkingSpaceIndex(int firstSlot, int numSlots) {
+        for (int i = 0; i < freeSlotsByCategory.length; i++) {
+            freeSlotsByCategory[i] = new FreeSlots(firstSlot, numSlots);
+        }
+    }
+
+    /**
+     * Marks the parking space in the supplied slot as free.
+     * @param category the category of the parking space.
+     * @param slot the slot of the parking space.
+     */
+    public void markFree(ParkingSpaceCategory category, int slot) {
+        freeSlotsByCategory[category.ordinal()].markFree(slot);
+    }
+
+    /**
+     * Atomically claims the lowest free slot for the supplied category. Once claimed, the slot will not be handed to
+     * any other caller until it is marked as free again.
+     * @param category the category of parking space required.
+     * @return the claimed slot, or NO_FREE_SLOT if there are no free spaces of this category.
+     */
+    public int claimLowestFreeSlot(ParkingSpaceCategory category) {
+        return freeSlotsByCategory[category.ordinal()].claimLowest();
+    }
+
+    /**
+     * Atomically claims up to the requested number of the lowest free slots for the supplied category, in one pass.
+     * @param category the category of parking space required.
+     * @param slots receives the claimed slots, lowest first, from index offset.
+     * @param offset the index in slots to store the first claimed slot.
+     * @param numSlots the number of slots to claim.
+     * @return the number of slots claimed - fewer than requested if there are not enough free spaces of this category.
+     */
+    public int claimLowestFreeSlots(ParkingSpaceCategory category, int[] slots, int offset, int numSlots) {
+        FreeSlots freeSlots = freeSlotsByCategory[category.ordinal()];
+        int numClaimed = 0;
+        int slot;
+        while (numClaimed < numSlots && (slot = freeSlots.claimLowest()) != NO_FREE_SLOT) {
+            slots[offset + numClaimed++] = slot;
+        }
+        return numClaimed;
+    }
+
+    /**
+     * Returns true if at least one parking space of the supplied category is free.
+     * @param category the category of parking space required.
+     * @return true if a free space of this category exists, otherwise false.
+     */
+    public boolean hasFreeSlot(ParkingSpaceCategory category) {
+        return freeSlotsByCategory[category.ordinal()].hasFree();
+    }
+
+    /* One bit per slot of the range (bit 0 is firstSlot), 64 to a word. The words below lowestWord are all empty, so searches start there rather than at
+     * the first word - it is lowered after a bit is set, and raised by a search that found the words below empty. A
+     * search that raises it checks those words again afterwards, lowering it back if a slot was freed there meanwhile,
+     * so a free slot is never hidden below it. */
+    private static final class FreeSlots {
+
+        private final int firstSlot;
+
+        private final AtomicLongArray words;
+
+        private final AtomicInteger lowestWord;
+
+        private FreeSlots(int firstSlot, int numSlots) {
+            this.firstSlot = firstSlot;
+            this.words = new AtomicLongArray((numSlots + 63) >>> 6);
+            this.lowestWord = new AtomicInteger(words.length());
+        }
+
+        private void markFree(int slot) {
+            int index = slot - firstSlot;
+            int word = index >>> 6;
+            long bit = 1L << index;
+            long bits;
+            do {
+                bits = words.get(word);
+            } while (!words.compareAndSet(word, bits, bits | bit));
+            lowestWord.accumulateAndGet(word, Math::min);
+        }
+
+        private int claimLowest() {
+            int from = lowestWord.get();
+            for (int word = from; word < words.length(); word++) {
+                long bits = words.get(word);
+                while (bits != 0) {
+                    long lowestBit = bits & -bits;
+                    if (words.compareAndSet(word, bits, bits & ~lowestBit)) {
+                        skipEmptyWords(from, word);
+                        return firstSlot + (word << 6) + Long.numberOfTrailingZeros(lowestBit);
+                    }
+                    bits = words.get(word);
+                }
+            }
+            skipEmptyWords(from, words.length());
+            return NO_FREE_SLOT;
+        }
+
+        private boolean hasFree() {
+            for (int word = lowestWord.get(); word < words.length(); word++) {
+                if (words.get(word) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Raises lowestWord past words found empty, then checks them again in case a slot was freed in one meanwhile.
+        private void skipEmptyWords(int from, int to) {
+            if (to == from || !lowestWord.compareAndSet(from, to)) {
+                return;
+            }
+            for (int word = from; word < to; word++) {
+                if (words.get(word) != 0) {
+                    lowestWord.accumulateAndGet(word, Math::min);
+                    return;
+                }
+            }
+        }
+    }
+}
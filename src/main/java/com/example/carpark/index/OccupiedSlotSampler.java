@@ -0,0 +1,229 @@
+package com.example.carpark.index;
+
+import com.example.carpark.util.LongHashSet;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.random.RandomGenerator;
+
+/**
+ * Keeps the occupied slots of the car park in dense arrays, so a slot can be picked uniformly at random in constant
+ * time without scanning (or copying) every parking space. A slot is removed by moving the last occupied slot into its
+ * place, so adding and removing are constant time too.
+ * <p>
+ * The slots are striped (slot modulo the number of stripes) over a number of dense arrays, each with its own lock.
+ * Vehicles park in the lowest free slots, so threads parking and leaving at the same time are almost always in
+ * different stripes - there is no lock that every vehicle parking or leaving has to take.
+ */
+public class OccupiedSlotSampler {
+
+    public static final int NO_OCCUPIED_SLOT = -1;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    private final int stripeBits;
+
+    public OccupiedSlotSampler(int numSlots) {
+        // Enough stripes that parking threads rarely share one, but no more stripes than slots.
+        this(numSlots, Math.min(Runtime.getRuntime().availableProcessors() * 4, Math.max(numSlots, 1)));
+    }
+
+    /**
+     * @param numSlots the number of slots (slots are numbered from 0 to one less than this).
+     * @param numStripes the number of stripes to spread the slots over (rounded down to a power of two).
+     */
+    public OccupiedSlotSampler(int numSlots, int numStripes) {
+        int powerOfTwoStripes = Integer.highestOneBit(Math.max(numStripes, 1));
+        this.stripeMask = powerOfTwoStripes - 1;
+        this.stripeBits = Integer.numberOfTrailingZeros(powerOfTwoStripes);
+        this.stripes = new Stripe[powerOfTwoStripes];
+        int slotsPerStripe = (numSlots + stripeMask) >> stripeBits;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(slotsPerStripe, stripeBits);
+        }
+    }
+
+    /**
+     * Records that the parking space in the supplied slot is occupied.
+     * @param slot the slot of the parking space.
+     */
+    public void add(int slot) {
+        stripes[slot & stripeMask].add(slot);
+    }
+
+    /**
+     * Records that the parking space in the supplied slot is no longer occupied.
+     * @param slot the slot of the parking space.
+     */
+    public void remove(int slot) {
+        stripes[slot & stripeMask].remove(slot);
+    }
+
+    /**
+     * Picks an occupied slot uniformly at random (exactly uniformly when no vehicle parks or leaves while picking).
+     * @param random the source of randomness.
+     * @return an occupied slot, or NO_OCCUPIED_SLOT if no slots are occupied.
+     */
+    public int sample(RandomGenerator random) {
+        while (true) {
+            int total = size();
+            if (total == 0) {
+                return NO_OCCUPIED_SLOT;
+            }
+            // Pick a position among all the occupied slots, then find the stripe holding it.
+            int position = random.nextInt(total);
+            for (Stripe stripe : stripes) {
+                int stripeSize = stripe.size;
+                if (position < stripeSize) {
+                    int slot = stripe.get(position);
+                    if (slot != NO_OCCUPIED_SLOT) {
+                        return slot;
+                    }
+                    // The stripe shrank while picking - pick again.
+                    break;
+                }
+                position -= stripeSize;
+            }
+        }
+    }
+
+    /**
+     * Picks distinct occupied slots uniformly at random. Vehicles can't park or leave while the slots are picked, so
+     * this is for occasional bulk picks (e.g. simulating many vehicles leaving at once), not for every vehicle.
+     * @param numSlots the number of slots to pick.
+     * @param random the source of randomness.
+     * @return the picked slots - fewer than requested if fewer slots are occupied.
+     * @throws IllegalArgumentException if numSlots is negative.
+     */
+    public int[] sample(int numSlots, RandomGenerator random) {
+        if (numSlots < 0) {
+            throw new IllegalArgumentException("Can't sample a negative number of slots: " + numSlots);
+        }
+        // Writers only ever take one stripe's lock, so taking every read lock in stripe order can't deadlock.
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].lock.readLock();
+        }
+        try {
+            int n = 0;
+            for (Stripe stripe : stripes) {
+                n += stripe.size;
+            }
+            int k = Math.min(numSlots, n);
+            // Floyd's algorithm picks k distinct positions of n with exactly k random numbers.
+            LongHashSet positions = new LongHashSet(k);
+            int[] slots = new int[k];
+            int picked = 0;
+            for (int j = n - k; j < n; j++) {
+                int position = random.nextInt(j + 1);
+                if (!positions.add(position)) {
+                    positions.add(j);
+                    position = j;
+                }
+                slots[picked++] = slotAt(position);
+            }
+            return slots;
+        } finally {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].lock.unlockRead(stamps[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of occupied slots. Each stripe is read without a lock, so this may be momentarily out of date
+     * while vehicles are parking and leaving.
+     * @return the number of occupied slots.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    // Called holding every stripe's read lock.
+    private int slotAt(int position) {
+        for (Stripe stripe : stripes) {
+            if (position < stripe.size) {
+                return stripe.occupiedSlots[position];
+            }
+            position -= stripe.size;
+        }
+        throw new IllegalStateException("Position " + position + " is past the occupied slots");
+    }
+
+    private static final class Stripe {
+
+        // The first size entries are the occupied slots of this stripe, in no particular order.
+        private final int[] occupiedSlots;
+
+        // The position in occupiedSlots of each slot of this stripe (by slot >> stripeBits), or -1 if not occupied.
+        private final int[] positionOfSlot;
+
+        private final int stripeBits;
+
+        private volatile int size;
+
+        /* Adding and removing only hold the lock for a few array writes. Sampling is an optimistic read, so picking
+         * vehicles to leave never blocks vehicles parking or leaving. */
+        private final StampedLock lock = new StampedLock();
+
+        private Stripe(int numSlots, int stripeBits) {
+            this.stripeBits = stripeBits;
+            this.occupiedSlots = new int[numSlots];
+            this.positionOfSlot = new int[numSlots];
+            Arrays.fill(positionOfSlot, -1);
+        }
+
+        private void add(int slot) {
+            long stamp = lock.writeLock();
+            try {
+                if (positionOfSlot[slot >> stripeBits] < 0) {
+                    int n = size;
+                    positionOfSlot[slot >> stripeBits] = n;
+                    occupiedSlots[n] = slot;
+                    size = n + 1;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void remove(int slot) {
+            long stamp = lock.writeLock();
+            try {
+                int position = positionOfSlot[slot >> stripeBits];
+                if (position >= 0) {
+                    int n = size - 1;
+                    int lastSlot = occupiedSlots[n];
+                    occupiedSlots[position] = lastSlot;
+                    positionOfSlot[lastSlot >> stripeBits] = position;
+                    positionOfSlot[slot >> stripeBits] = -1;
+                    size = n;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Returns the occupied slot at the position, or NO_OCCUPIED_SLOT if the stripe has shrunk below it.
+        private int get(int position) {
+            long stamp = lock.tryOptimisticRead();
+            int slot = position < size ? occupiedSlots[position] : NO_OCCUPIED_SLOT;
+            if (!lock.validate(stamp)) {
+                // A vehicle parked or left in this stripe while reading - read again, this time holding the lock.
+                stamp = lock.readLock();
+                try {
+                    slot = position < size ? occupiedSlots[position] : NO_OCCUPIED_SLOT;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return slot;
+        }
+    }
+}
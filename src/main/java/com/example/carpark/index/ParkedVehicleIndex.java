@@ -0,0 +1,225 @@
+package com.example.carpark.index;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps the id of each parked vehicle (see VehicleRegistry) to the slot it is parked in, held in primitive arrays rather
+ * than boxed map entries. Vehicles are spread over stripes (by hash of their id), each an open addressing table with its
+ * own lock - so parking and leaving only contend on the same stripe, and a lookup is an optimistic read that doesn't
+ * block them at all.
+ */
+public class ParkedVehicleIndex {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int STRIPE_BITS = 6;
+
+    private static final long EMPTY = 0;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    /**
+     * @param expectedVehicles the number of vehicles expected to be parked at once (e.g. the capacity of the car park).
+     */
+    public ParkedVehicleIndex(int expectedVehicles) {
+        // Size each stripe so it stays at most half full when the vehicles are spread evenly.
+        int stripeCapacity = Integer.highestOneBit(Math.max(expectedVehicles * 2 / stripes.length, 8) * 2);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * Returns the slot a vehicle is parked in.
+     * @param vehicleId the id of the vehicle.
+     * @return the slot, or NO_SLOT if the vehicle isn't parked.
+     */
+    public int get(long vehicleId) {
+        if (vehicleId == EMPTY) {
+            // An id never handed out (see VehicleRegistry.findIdOf) - that vehicle can't be parked.
+            return NO_SLOT;
+        }
+        long hash = mix(vehicleId);
+        return stripeOf(hash).get(vehicleId, hash);
+    }
+
+    public boolean containsKey(long vehicleId) {
+        return get(vehicleId) != NO_SLOT;
+    }
+
+    /**
+     * Records the slot a vehicle is parked in, unless the vehicle is already recorded in a slot.
+     * @param vehicleId the id of the vehicle.
+     * @param slot the slot the vehicle is parked in.
+     * @return the slot already recorded for the vehicle, or NO_SLOT if the supplied slot was recorded.
+     */
+    public int putIfAbsent(long vehicleId, int slot) {
+        long hash = mix(vehicleId);
+        return stripeOf(hash).putIfAbsent(vehicleId, hash, slot);
+    }
+
+    /**
+     * Removes a vehicle, provided it is recorded in the supplied slot.
+     * @param vehicleId the id of the vehicle.
+     * @param slot the slot the vehicle is parked in.
+     * @return true if the vehicle was removed.
+     */
+    public boolean remove(long vehicleId, int slot) {
+        long hash = mix(vehicleId);
+        return stripeOf(hash).remove(vehicleId, hash, slot);
+    }
+
+    private Stripe stripeOf(long hash) {
+        return stripes[(int) hash & (stripes.length - 1)];
+    }
+
+    // Vehicle ids are packed registrations, so mix every bit of them into the hash (MurmurHash3 finaliser).
+    private static long mix(long vehicleId) {
+        long hash = vehicleId;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /* The table is kept at most half full, and a removal shifts later entries back rather than leaving a tombstone. The
+     * keys and slots are replaced together when the table grows, so an optimistic read always sees a matching pair. */
+    private static final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+
+        private Table table;
+
+        private int size;
+
+        Stripe(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        int get(long vehicleId, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            int slot = table.get(vehicleId, hash);
+            if (!lock.validate(stamp)) {
+                // A vehicle in this stripe parked or left while looking - look again, this time holding the lock.
+                stamp = lock.readLock();
+                try {
+                    slot = table.get(vehicleId, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return slot;
+        }
+
+        int putIfAbsent(long vehicleId, long hash, int slot) {
+            long stamp = lock.writeLock();
+            try {
+                int position = table.find(vehicleId, hash);
+                if (table.vehicleIds[position] != EMPTY) {
+                    return table.slots[position];
+                }
+                table.vehicleIds[position] = vehicleId;
+                table.slots[position] = slot;
+                if (++size * 2 > table.vehicleIds.length) {
+                    table = table.grow();
+                }
+                return NO_SLOT;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long vehicleId, long hash, int slot) {
+            long stamp = lock.writeLock();
+            try {
+                int position = table.find(vehicleId, hash);
+                if (table.vehicleIds[position] == EMPTY || table.slots[position] != slot) {
+                    return false;
+                }
+                table.removeAt(position);
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static final class Table {
+
+        private final long[] vehicleIds;
+
+        private final int[] slots;
+
+        private final int mask;
+
+        Table(int capacity) {
+            this.vehicleIds = new long[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        // Under an optimistic read the entries may be changing, so the probe is bounded by the length of the table.
+        int get(long vehicleId, long hash) {
+            int position = home(hash);
+            for (int probes = 0; probes <= mask; probes++) {
+                long id = vehicleIds[position];
+                if (id == vehicleId) {
+                    return slots[position];
+                }
+                if (id == EMPTY) {
+                    return NO_SLOT;
+                }
+                position = (position + 1) & mask;
+            }
+            return NO_SLOT;
+        }
+
+        // The position of the vehicle, or of the empty position it would be put in.
+        int find(long vehicleId, long hash) {
+            int position = home(hash);
+            while (vehicleIds[position] != EMPTY && vehicleIds[position] != vehicleId) {
+                position = (position + 1) & mask;
+            }
+            return position;
+        }
+
+        void removeAt(int position) {
+            // Shift back any later entries that would no longer be found by probing from their home position.
+            int next = position;
+            while (true) {
+                next = (next + 1) & mask;
+                long movedId = vehicleIds[next];
+                if (movedId == EMPTY) {
+                    break;
+                }
+                int home = home(mix(movedId));
+                if (((next - home) & mask) >= ((next - position) & mask)) {
+                    vehicleIds[position] = movedId;
+                    slots[position] = slots[next];
+                    position = next;
+                }
+            }
+            vehicleIds[position] = EMPTY;
+        }
+
+        Table grow() {
+            Table grown = new Table(vehicleIds.length * 2);
+            for (int position = 0; position < vehicleIds.length; position++) {
+                if (vehicleIds[position] != EMPTY) {
+                    int newPosition = grown.find(vehicleIds[position], mix(vehicleIds[position]));
+                    grown.vehicleIds[newPosition] = vehicleIds[position];
+                    grown.slots[newPosition] = slots[position];
+                }
+            }
+            return grown;
+        }
+
+        // The stripe was picked with the low bits of the hash, so the position within the stripe uses the high bits.
+        private int home(long hash) {
+            return (int) (hash >>> STRIPE_BITS) & mask;
+        }
+    }
+}
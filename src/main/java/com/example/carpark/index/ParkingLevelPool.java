@@ -0,0 +1,112 @@
+package com.example.carpark.index;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The free parking spaces and occupancy count for a single level of the car park. Each level has its own pool, so
+ * vehicles entering at different levels never contend with each other when allocating a space.
+ */
+public class ParkingLevelPool {
+
+    @Getter
+    private final int level;
+
+    private final FreeParkingSpaceIndex freeParkingSpaceIndex;
+
+    // Occupied spaces on this level of each category, indexed by ordinal.
+    private final LongAdder[] numOccupied = new LongAdder[ParkingSpaceCategory.values().length];
+
+    /**
+     * @param level the level number.
+     * @param firstSlot the level's lowest slot.
+     * @param numSlots the number of slots from firstSlot up to and including the level's highest slot.
+     */
+    public ParkingLevelPool(int level, int firstSlot, int numSlots) {
+        this.level = level;
+        this.freeParkingSpaceIndex = new FreeParkingSpaceIndex(firstSlot, numSlots);
+        for (int i = 0; i < numOccupied.length; i++) {
+            numOccupied[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adds a free slot on this level to the pool (used when initialising the car park or returning an unused claim).
+     * @param category the category of the parking space.
+     * @param slot the slot of the parking space.
+     */
+    public void addFreeSlot(ParkingSpaceCategory category, int slot) {
+        freeParkingSpaceIndex.markFree(category, slot);
+    }
+
+    /**
+     * Claims the lowest free slot of the supplied category on this level.
+     * @param category the category of parking space required.
+     * @return the claimed slot, or FreeParkingSpaceIndex.NO_FREE_SLOT if this level has no free spaces of this category.
+     */
+    public int claimLowestFreeSlot(ParkingSpaceCategory category) {
+        return freeParkingSpaceIndex.claimLowestFreeSlot(category);
+    }
+
+    /**
+     * Claims up to the requested number of the lowest free slots of the supplied category on this level.
+     * @param category the category of parking space required.
+     * @param slots receives the claimed slots, lowest first, from index offset.
+     * @param offset the index in slots to store the first claimed slot.
+     * @param numSlots the number of slots to claim.
+     * @return the number of slots claimed - fewer than requested if this level has too few free spaces of this category.
+     */
+    public int claimLowestFreeSlots(ParkingSpaceCategory category, int[] slots, int offset, int numSlots) {
+        return freeParkingSpaceIndex.claimLowestFreeSlots(category, slots, offset, numSlots);
+    }
+
+    /**
+     * Records that a slot on this level has been occupied by a vehicle.
+     * @param category the category of the parking space.
+     */
+    public void recordOccupied(ParkingSpaceCategory category) {
+        numOccupied[category.ordinal()].increment();
+    }
+
+    /**
+     * Records that a vehicle has left a slot on this level. The slot is not returned to the pool, as it may be handed
+     * straight to a waiting vehicle - otherwise it should be added back with addFreeSlot (after this call, so the count
+     * never exceeds the number of claimed spaces).
+     * @param category the category of the parking space.
+     */
+    public void recordVacated(ParkingSpaceCategory category) {
+        numOccupied[category.ordinal()].decrement();
+    }
+
+    /**
+     * Returns true if this level has at least one free parking space of the supplied category.
+     * @param category the category of parking space required.
+     * @return true if a free space of this category exists on this level, otherwise false.
+     */
+    public boolean hasFreeSlot(ParkingSpaceCategory category) {
+        return freeParkingSpaceIndex.hasFreeSlot(category);
+    }
+
+    /**
+     * Returns the number of vehicles currently parked on this level.
+     * @return the number of occupied parking spaces on this level.
+     */
+    public int getNumOccupied() {
+        int numOccupiedSpaces = 0;
+        for (LongAdder numOccupiedOfCategory : numOccupied) {
+            numOccupiedSpaces += numOccupiedOfCategory.intValue();
+        }
+        return numOccupiedSpaces;
+    }
+
+    /**
+     * Returns the number of vehicles currently parked on this level in spaces of the supplied category.
+     * @param category the category of parking space.
+     * @return the number of occupied parking spaces of this category on this level.
+     */
+    public int getNumOccupied(ParkingSpaceCategory category) {
+        return numOccupied[category.ordinal()].intValue();
+    }
+}
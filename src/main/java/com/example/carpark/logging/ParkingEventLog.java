@@ -0,0 +1,76 @@
+package com.example.carpark.logging;
+
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.Vehicle;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Logs what happens to vehicles parking and leaving as structured events - a fixed event name followed by key=value
+ * fields, so the log can be searched and parsed without regular expressions on free text.
+ * <p>
+ * These are logged on the park and leave hot paths, thousands of times a second. Every event checks its level before
+ * touching its arguments, so an event that is switched off allocates nothing. An event that is switched on fills this
+ * thread's reusable ParkingEventMessage rather than a parameterised template, so its numbers aren't boxed either.
+ */
+@Log4j2
+public final class ParkingEventLog {
+
+    private ParkingEventLog() {
+    }
+
+    public static void parked(Vehicle vehicle, int designation) {
+        if (log.isInfoEnabled()) {
+            log.info(ParkingEventMessage.of("parked", vehicle).bay(designation));
+        }
+    }
+
+    /**
+     * Logs a vehicle being turned away. A double parked vehicle is a warning (the same VRM arriving twice points to a
+     * cloned plate or a missed exit); a full car park is routine under load, so is only logged at debug.
+     * @param vehicle the vehicle turned away.
+     * @param reason why it was turned away.
+     */
+    public static void parkRejected(Vehicle vehicle, ParkingResult.Rejected reason) {
+        if (reason == ParkingResult.Rejected.DOUBLE_PARKED) {
+            if (log.isWarnEnabled()) {
+                log.warn(ParkingEventMessage.of("parkRejected", vehicle).reason(reason));
+            }
+        } else if (log.isDebugEnabled()) {
+            log.debug(ParkingEventMessage.of("parkRejected", vehicle).reason(reason));
+        }
+    }
+
+    public static void parkedTogether(int numParked, int numVehicles) {
+        // Once a batch rather than once a vehicle, so a parameterised template is cheap enough.
+        if (log.isInfoEnabled()) {
+            log.info("event=parkedTogether parked={} vehicles={}", numParked, numVehicles);
+        }
+    }
+
+    public static void waitingForSpace(Vehicle vehicle) {
+        if (log.isDebugEnabled()) {
+            log.debug(ParkingEventMessage.of("waitingForSpace", vehicle));
+        }
+    }
+
+    /**
+     * Logs a vehicle leaving, with what it was charged.
+     * @param vehicle the vehicle leaving.
+     * @param designation the parking space it was parked in.
+     * @param stayMillis how long it was parked for.
+     * @param chargePence what it was charged (in pence).
+     */
+    public static void left(Vehicle vehicle, int designation, long stayMillis, long chargePence) {
+        if (log.isInfoEnabled()) {
+            log.info(ParkingEventMessage.of("left", vehicle).bay(designation).stayMillis(stayMillis)
+                    .chargePence(chargePence));
+        }
+    }
+
+    public static void leaveRejected(Vehicle vehicle) {
+        if (log.isWarnEnabled()) {
+            log.warn(ParkingEventMessage.of("leaveRejected", vehicle).reason(LeaveResult.Rejected.VEHICLE_NOT_FOUND));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.carpark.logging;
+
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+
+/**
+ * A structured parking event (see ParkingEventLog), holding its numbers as primitives rather than as template
+ * parameters - logging a bay number, stay or charge boxes nothing. Each thread reuses its own message and buffer, so
+ * the only allocation left on the calling thread is the formatted text the logging framework hands to its appender.
+ * <p>
+ * A message is refilled by the next event logged on the same thread, so it must be formatted before the log call
+ * returns (as the SLF4J bridge does), or copied with memento() by anything that keeps it.
+ */
+final class ParkingEventMessage implements ReusableMessage {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private static final ThreadLocal<ParkingEventMessage> MESSAGES = ThreadLocal.withInitial(ParkingEventMessage::new);
+
+    private final StringBuilder buffer = new StringBuilder(128);
+
+    private String event;
+
+    private String vrm;
+
+    private VehicleType vehicleType;
+
+    private long bay;
+
+    private long stayMillis;
+
+    private long chargePence;
+
+    private Enum<?> reason;
+
+    private ParkingEventMessage() {
+    }
+
+    /**
+     * Returns this thread's message, emptied and filled with the event and vehicle. The other fields are only
+     * formatted once set.
+     * @param event the event name.
+     * @param vehicle the vehicle the event happened to.
+     * @return this thread's message.
+     */
+    static ParkingEventMessage of(String event, Vehicle vehicle) {
+        ParkingEventMessage message = MESSAGES.get();
+        message.event = event;
+        message.vrm = vehicle.getVrm();
+        message.vehicleType = vehicle.getVehicleType();
+        message.bay = NONE;
+        message.stayMillis = NONE;
+        message.chargePence = NONE;
+        message.reason = null;
+        return message;
+    }
+
+    ParkingEventMessage bay(int designation) {
+        this.bay = designation;
+        return this;
+    }
+
+    ParkingEventMessage stayMillis(long stayMillis) {
+        this.stayMillis = stayMillis;
+        return this;
+    }
+
+    ParkingEventMessage chargePence(long chargePence) {
+        this.chargePence = chargePence;
+        return this;
+    }
+
+    ParkingEventMessage reason(Enum<?> reason) {
+        this.reason = reason;
+        return this;
+    }
+
+    @Override
+    public void formatTo(StringBuilder buffer) {
+        buffer.append("event=").append(event)
+                .append(" vrm=\"").append(vrm)
+                .append("\" vehicleType=").append(vehicleType.name());
+        if (bay != NONE) {
+            buffer.append(" bay=").append(bay);
+        }
+        if (stayMillis != NONE) {
+            buffer.append(" stayMillis=").append(stayMillis);
+        }
+        if (chargePence != NONE) {
+            buffer.append(" chargePence=").append(chargePence);
+        }
+        if (reason != null) {
+            buffer.append(" reason=").append(reason.name());
+        }
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        buffer.setLength(0);
+        formatTo(buffer);
+        return buffer.toString();
+    }
+
+    @Override
+    public String getFormat() {
+        return event;
+    }
+
+    @Override
+    public Object[] getParameters() {
+        return null;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        return null;
+    }
+
+    @Override
+    public Object[] swapParameters(Object[] emptyReplacement) {
+        return emptyReplacement;
+    }
+
+    @Override
+    public short getParameterCount() {
+        return 0;
+    }
+
+    @Override
+    public Message memento() {
+        return new SimpleMessage(getFormattedMessage());
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.carpark.metrics;
+
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.service.AsyncParkingAuditService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Live occupancy and throughput of the car park: vehicles parked and leaving, rejections by reason, park, leave and audit
+ * latencies, charges taken and the depth of the audit queue. Every counter is a LongAdder (and latencies go into a
+ * LatencyHistogram), so the entry and exit threads record them without contending with each other.
+ * <p>
+ * Exported as an MBean when spring.jmx.enabled is set, so the metrics can be watched in JConsole or scraped by the
+ * Prometheus JMX exporter.
+ */
+@Component
+@ManagedResource(objectName = "com.example.carpark:type=CarParkMetrics", description = "Car park occupancy and throughput")
+public class CarParkMetrics {
+
+    private final LongAdder numParked = new LongAdder();
+
+    private final LongAdder numLeft = new LongAdder();
+
+    private final LongAdder[] numRejected = newAdders(ParkingResult.Rejected.values().length);
+
+    private final LongAdder numVehiclesNotFound = new LongAdder();
+
+    private final LongAdder numCharged = new LongAdder();
+
+    private final LongAdder penceCharged = new LongAdder();
+
+    private final LongAdder numVisitsAudited = new LongAdder();
+
+    private final LatencyHistogram parkLatency = new LatencyHistogram();
+
+    private final LatencyHistogram leaveLatency = new LatencyHistogram();
+
+    private final LatencyHistogram auditLatency = new LatencyHistogram();
+
+    // Occupancy is read from the car park when asked for, rather than counted twice (see bindOccupancy).
+    private volatile ToIntFunction<ParkingSpaceCategory> numOccupiedSpaces = category -> 0;
+
+    private volatile int[] numSpaces = new int[ParkingSpaceCategory.values().length];
+
+    // Only present when visits are audited asynchronously (carPark.audit.async.enabled).
+    @Autowired(required = false)
+    private AsyncParkingAuditService asyncParkingAuditService;
+
+    /**
+     * Supplies the car park's occupancy for the occupancy gauges.
+     * @param numOccupiedSpaces returns the number of occupied spaces of a category.
+     * @param numSpaces the number of spaces of each category, indexed by ordinal.
+     */
+    public void bindOccupancy(ToIntFunction<ParkingSpaceCategory> numOccupiedSpaces, int[] numSpaces) {
+        this.numSpaces = numSpaces.clone();
+        this.numOccupiedSpaces = numOccupiedSpaces;
+    }
+
+    public void recordParked() {
+        numParked.increment();
+    }
+
+    public void recordLeft() {
+        numLeft.increment();
+    }
+
+    /**
+     * Records the outcome of a vehicle trying to park. Vehicles that parked are counted by recordParked, so only
+     * rejections are counted here.
+     * @param parkingResult the outcome.
+     */
+    public void recordParkingResult(ParkingResult parkingResult) {
+        if (parkingResult instanceof ParkingResult.Rejected rejected) {
+            numRejected[rejected.ordinal()].increment();
+        }
+    }
+
+    public void recordParkingResult(ParkingResult parkingResult, long latencyNanos) {
+        recordParkingResult(parkingResult);
+        recordParkLatency(latencyNanos);
+    }
+
+    public void recordParkLatency(long latencyNanos) {
+        parkLatency.record(latencyNanos);
+    }
+
+    /**
+     * Records the outcome of a vehicle trying to leave. Vehicles that left are counted by recordLeft, so only vehicles
+     * that weren't found are counted here.
+     * @param leaveResult the outcome.
+     */
+    public void recordLeaveResult(LeaveResult leaveResult) {
+        if (leaveResult == LeaveResult.Rejected.VEHICLE_NOT_FOUND) {
+            numVehiclesNotFound.increment();
+        }
+    }
+
+    public void recordLeaveResult(LeaveResult leaveResult, long latencyNanos) {
+        recordLeaveResult(leaveResult);
+        leaveLatency.record(latencyNanos);
+    }
+
+    public void recordCharge(long pence) {
+        numCharged.increment();
+        penceCharged.add(pence);
+    }
+
+    /**
+     * Records visits handed to the audit service, and how long the leaving thread waited for it to take them.
+     * @param numVisits the number of visits.
+     * @param latencyNanos the time taken to record them.
+     */
+    public void recordAudited(int numVisits, long latencyNanos) {
+        numVisitsAudited.add(numVisits);
+        auditLatency.record(latencyNanos);
+    }
+
+    public int getNumOccupiedSpaces(ParkingSpaceCategory category) {
+        return numOccupiedSpaces.applyAsInt(category);
+    }
+
+    public int getNumFreeSpaces(ParkingSpaceCategory category) {
+        return Math.max(numSpaces[category.ordinal()] - getNumOccupiedSpaces(category), 0);
+    }
+
+    public long getNumRejected(ParkingResult.Rejected reason) {
+        return numRejected[reason.ordinal()].sum();
+    }
+
+    public LatencyHistogram getParkLatency() {
+        return parkLatency;
+    }
+
+    public LatencyHistogram getLeaveLatency() {
+        return leaveLatency;
+    }
+
+    public LatencyHistogram getAuditLatency() {
+        return auditLatency;
+    }
+
+    @ManagedAttribute(description = "Occupied standard spaces")
+    public int getOccupiedStandardSpaces() {
+        return getNumOccupiedSpaces(ParkingSpaceCategory.STANDARD);
+    }
+
+    @ManagedAttribute(description = "Occupied EV charging spaces")
+    public int getOccupiedEvChargingSpaces() {
+        return getNumOccupiedSpaces(ParkingSpaceCategory.EV_CHARGING);
+    }
+
+    @ManagedAttribute(description = "Free standard spaces")
+    public int getFreeStandardSpaces() {
+        return getNumFreeSpaces(ParkingSpaceCategory.STANDARD);
+    }
+
+    @ManagedAttribute(description = "Free EV charging spaces")
+    public int getFreeEvChargingSpaces() {
+        return getNumFreeSpaces(ParkingSpaceCategory.EV_CHARGING);
+    }
+
+    @ManagedAttribute(description = "Vehicles parked (entries)")
+    public long getNumParked() {
+        return numParked.sum();
+    }
+
+    @ManagedAttribute(description = "Vehicles left (exits)")
+    public long getNumLeft() {
+        return numLeft.sum();
+    }
+
+    @ManagedAttribute(description = "Vehicles turned away because the car park was full")
+    public long getNumRejectedCarParkFull() {
+        return getNumRejected(ParkingResult.Rejected.CAR_PARK_FULL);
+    }
+
+    @ManagedAttribute(description = "Vehicles turned away because no suitable space was free")
+    public long getNumRejectedNoSuitableSpace() {
+        return getNumRejected(ParkingResult.Rejected.NO_SUITABLE_SPACE);
+    }
+
+    @ManagedAttribute(description = "Vehicles turned away because they were already parked")
+    public long getNumRejectedDoubleParked() {
+        return getNumRejected(ParkingResult.Rejected.DOUBLE_PARKED);
+    }
+
+    @ManagedAttribute(description = "Vehicles trying to leave that weren't parked")
+    public long getNumVehiclesNotFound() {
+        return numVehiclesNotFound.sum();
+    }
+
+    @ManagedAttribute(description = "Parking charges taken")
+    public long getNumCharged() {
+        return numCharged.sum();
+    }
+
+    @ManagedAttribute(description = "Total of parking charges taken, in pounds")
+    public double getTotalCharged() {
+        return penceCharged.sum() / 100.0;
+    }
+
+    @ManagedAttribute(description = "Parks timed")
+    public long getParkCount() {
+        return parkLatency.getCount();
+    }
+
+    @ManagedAttribute(description = "Mean park latency in microseconds")
+    public long getParkLatencyMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(parkLatency.getMeanNanos());
+    }
+
+    @ManagedAttribute(description = "99th percentile park latency in microseconds")
+    public long getParkLatency99thPercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(parkLatency.getPercentileNanos(0.99));
+    }
+
+    @ManagedAttribute(description = "Maximum park latency in microseconds")
+    public long getParkLatencyMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(parkLatency.getMaxNanos());
+    }
+
+    @ManagedAttribute(description = "Leaves timed")
+    public long getLeaveCount() {
+        return leaveLatency.getCount();
+    }
+
+    @ManagedAttribute(description = "Mean leave latency in microseconds")
+    public long getLeaveLatencyMeanMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(leaveLatency.getMeanNanos());
+    }
+
+    @ManagedAttribute(description = "99th percentile leave latency in microseconds")
+    public long getLeaveLatency99thPercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(leaveLatency.getPercentileNanos(0.99));
+    }
+
+    @ManagedAttribute(description = "Maximum leave latency in microseconds")
+    public long getLeaveLatencyMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(leaveLatency.getMaxNanos());
+    }
+
+    @ManagedAttribute(description = "Visits handed to the audit service")
+    public long getNumVisitsAudited() {
+        return numVisitsAudited.sum();
+    }
+
+    @ManagedAttribute(description = "99th percentile time leaving vehicles wait for the audit service, in microseconds")
+    public long getAuditLatency99thPercentileMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(auditLatency.getPercentileNanos(0.99));
+    }
+
+    @ManagedAttribute(description = "Visits waiting to be written by the audit writer")
+    public int getAuditQueueDepth() {
+        return asyncParkingAuditService == null ? 0 : asyncParkingAuditService.getQueueDepth();
+    }
+
+    @ManagedAttribute(description = "Visits dropped because the audit queue was full")
+    public long getNumAuditsDropped() {
+        return asyncParkingAuditService == null ? 0 : asyncParkingAuditService.getNumDropped();
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.carpark.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, recorded from any number of threads without a lock. Each power of two range
+ * of latencies is split into four buckets, so a percentile is reported to within 25% - plenty to see park and leave
+ * latencies creeping up - from a fixed number of counters however many latencies are recorded.
+ * <p>
+ * Most latencies land in the same few buckets, so each bucket is a LongAdder - threads recording the same latency at
+ * the same time add to separate cells rather than all incrementing one shared counter.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE * SUB_BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            buckets[bucket] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     * @param nanos the latency in nanoseconds (a negative latency is recorded as zero).
+     */
+    public void record(long nanos) {
+        long latency = Math.max(nanos, 0);
+        buckets[bucketOf(latency)].increment();
+        count.increment();
+        totalNanos.add(latency);
+        maxNanos.accumulate(latency);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * Returns the latency the supplied fraction of recorded latencies are at or below (e.g. 0.99 for the 99th
+     * percentile). Latencies recorded while the percentile is being worked out may or may not be included.
+     * @param fraction the fraction of latencies, between 0 and 1.
+     * @return the upper bound of the bucket holding the percentile (no more than the maximum latency recorded), or 0 if
+     * no latencies have been recorded.
+     */
+    public long getPercentileNanos(double fraction) {
+        // Take each bucket's count once, so the percentile is worked out from one set of counts.
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            counts[bucket] = buckets[bucket].sum();
+            total += counts[bucket];
+        }
+        long rank = (long) Math.ceil(total * Math.min(Math.max(fraction, 0), 1));
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBoundOf(bucket), getMaxNanos());
+            }
+        }
+        return 0;
+    }
+
+    // Latencies below SUB_BUCKETS have a bucket each. Above that, the top bit picks the range and the next bits the bucket.
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int topBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int shift = topBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
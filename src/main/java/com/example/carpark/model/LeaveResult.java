@@ -0,0 +1,29 @@
+package com.example.carpark.model;
+
+/**
+ * The outcome of a vehicle trying to leave the car park: either Left (with the parking charge, in whole pence), or one
+ * of the Rejected constants. As with ParkingResult, a rejection is a preallocated constant rather than an exception.
+ */
+public sealed interface LeaveResult permits LeaveResult.Left, LeaveResult.Rejected {
+
+    record Left(long parkingCostPence) implements LeaveResult {
+
+        public double parkingCost() {
+            return parkingCostPence / 100.0;
+        }
+    }
+
+    enum Rejected implements LeaveResult {
+        VEHICLE_NOT_FOUND("Vehicle is not parked in this car park");
+
+        private final String message;
+
+        Rejected(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -1,24 +1,57 @@
 package com.example.carpark.model;
 
-import lombok.AllArgsConstructor;
+import com.example.carpark.vrm.VehicleRegistry;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.time.LocalDateTime;
 
 @Getter
-@AllArgsConstructor
 @EqualsAndHashCode
 public class ParkingAudit {
     private int parkingSpaceDesignation;
 
-    private String vehicleVrm;
+    // The canonical id of the vehicle's VRM (see VehicleRegistry), so audits don't each hold on to a String.
+    private long vehicleId;
 
     private LocalDateTime arrived;
 
     private LocalDateTime left;
 
-    private double parkingCharge;
+    // In whole pence, so charges total exactly.
+    private long parkingChargePence;
+
+    // Decoded from the vehicle id the first time it is asked for (e.g. to journal or report the audit).
+    @EqualsAndHashCode.Exclude
+    private String vehicleVrm;
+
+    public ParkingAudit(int parkingSpaceDesignation, long vehicleId, LocalDateTime arrived, LocalDateTime left,
+                        long parkingChargePence) {
+        this.parkingSpaceDesignation = parkingSpaceDesignation;
+        this.vehicleId = vehicleId;
+        this.arrived = arrived;
+        this.left = left;
+        this.parkingChargePence = parkingChargePence;
+    }
+
+    public ParkingAudit(int parkingSpaceDesignation, String vehicleVrm, LocalDateTime arrived, LocalDateTime left,
+                        double parkingCharge) {
+        this(parkingSpaceDesignation, VehicleRegistry.idOf(vehicleVrm), arrived, left, Math.round(parkingCharge * 100));
+    }
+
+    public double getParkingCharge() {
+        return parkingChargePence / 100.0;
+    }
+
+    public String getVehicleVrm() {
+        // Racing threads decode the same VRM, so whichever is kept doesn't matter.
+        String vrm = vehicleVrm;
+        if (vrm == null) {
+            vrm = VehicleRegistry.vrmOf(vehicleId);
+            vehicleVrm = vrm;
+        }
+        return vrm;
+    }
 
     /* TODO: Currently we only audit when a car leaves the car park (capturing their full duration, parking charge, etc).
      * Audit functionality could be reworked to have specific audit types (enter car park, leave car park, tried to
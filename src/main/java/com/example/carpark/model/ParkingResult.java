@@ -0,0 +1,28 @@
+package com.example.carpark.model;
+
+/**
+ * The outcome of trying to park a vehicle: either Parked (with the allocated space), or one of the Rejected constants.
+ * A rejection is a preallocated constant rather than an exception, so turning a vehicle away costs no allocation or
+ * stack walk however often it happens.
+ */
+public sealed interface ParkingResult permits ParkingResult.Parked, ParkingResult.Rejected {
+
+    record Parked(ParkingSpace parkingSpace) implements ParkingResult {
+    }
+
+    enum Rejected implements ParkingResult {
+        CAR_PARK_FULL("Car park is full, unable to park vehicle"),
+        DOUBLE_PARKED("Vehicle is already parked in this car park"),
+        NO_SUITABLE_SPACE("Car park does not contain a space suitable for your vehicle");
+
+        private final String message;
+
+        Rejected(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -1,24 +1,94 @@
 package com.example.carpark.model;
 
+import com.example.carpark.time.EpochMillis;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-@Getter
-@Setter
 public class ParkingSpace {
 
-    private int designation;
+    private static final AtomicReferenceFieldUpdater<ParkingSpace, Occupancy> OCCUPANCY =
+            AtomicReferenceFieldUpdater.newUpdater(ParkingSpace.class, Occupancy.class, "occupancy");
 
-    private boolean evChargingPoint;
+    @Getter
+    private final int designation;
 
-    private Vehicle occupyingVehicle;
+    @Getter
+    private final boolean evChargingPoint;
 
-    private LocalDateTime arrival;
+    // Levels are numbered upwards from 0 (the ground floor). Zones are lettered within each level.
+    @Getter
+    private final int level;
+
+    @Getter
+    private final String zone;
+
+    /* The occupying vehicle and its arrival are swapped in and out together with a CAS. This guarantees two threads can
+     * never claim the same space, and a reader never sees a vehicle paired with the arrival time of a different visit. */
+    private volatile Occupancy occupancy;
 
     public ParkingSpace(int designation, boolean evChargingPoint) {
+        this(designation, evChargingPoint, 0, "A");
+    }
+
+    public ParkingSpace(int designation, boolean evChargingPoint, int level, String zone) {
         this.designation = designation;
         this.evChargingPoint = evChargingPoint;
+        this.level = level;
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the current occupancy of this parking space (the occupying vehicle together with its arrival).
+     * @return the current occupancy, or null if the space is free.
+     */
+    public Occupancy getOccupancy() {
+        return occupancy;
+    }
+
+    public Vehicle getOccupyingVehicle() {
+        Occupancy currentOccupancy = occupancy;
+        return currentOccupancy == null ? null : currentOccupancy.vehicle();
+    }
+
+    public LocalDateTime getArrival() {
+        Occupancy currentOccupancy = occupancy;
+        return currentOccupancy == null ? null : currentOccupancy.arrival();
+    }
+
+    /**
+     * Atomically occupies this parking space, provided it is currently free.
+     * @param vehicle the vehicle occupying the parking space.
+     * @param arrivalEpochMillis when the vehicle arrived in the parking space (epoch milliseconds).
+     * @return true if the space was free and is now occupied by the vehicle, otherwise false.
+     */
+    public boolean tryOccupy(Vehicle vehicle, long arrivalEpochMillis) {
+        return OCCUPANCY.compareAndSet(this, null, new Occupancy(vehicle, arrivalEpochMillis));
+    }
+
+    /**
+     * Atomically clears this parking space, provided it is currently occupied by the supplied vehicle.
+     * @param vehicle the vehicle leaving the parking space.
+     * @return the occupancy that has ended (the vehicle and its arrival), or null if it was not occupying this space.
+     */
+    public Occupancy tryClear(Vehicle vehicle) {
+        Occupancy currentOccupancy;
+        do {
+            currentOccupancy = occupancy;
+            if (currentOccupancy == null || !currentOccupancy.vehicle().equals(vehicle)) {
+                return null;
+            }
+        } while (!OCCUPANCY.compareAndSet(this, currentOccupancy, null));
+        return currentOccupancy;
+    }
+
+    /* Arrival is held as epoch milliseconds (see EpochMillis) rather than a LocalDateTime, so occupying a space only
+     * allocates the occupancy itself. */
+    public record Occupancy(Vehicle vehicle, long arrivalEpochMillis) {
+
+        public LocalDateTime arrival() {
+            return EpochMillis.toLocalDateTime(arrivalEpochMillis);
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.example.carpark.model;
+
+public enum ParkingSpaceCategory {
+    STANDARD,
+    EV_CHARGING;
+
+    public static ParkingSpaceCategory of(ParkingSpace parkingSpace) {
+        return parkingSpace.isEvChargingPoint() ? EV_CHARGING : STANDARD;
+    }
+
+    // We are assuming an EV requires a charging point and a non-EV vehicle cannot use an EV charging point.
+    public static ParkingSpaceCategory requiredBy(Vehicle vehicle) {
+        return vehicle.getVehicleType() == VehicleType.EV ? EV_CHARGING : STANDARD;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.carpark.model;
 
+import com.example.carpark.vrm.VehicleRegistry;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
@@ -11,8 +12,41 @@ public class Vehicle {
 
     private VehicleType vehicleType;
 
+    // The id of the VRM once it has been worked out (NO_VEHICLE_ID until then), so it is only worked out once.
+    @EqualsAndHashCode.Exclude
+    private volatile long vehicleId = VehicleRegistry.NO_VEHICLE_ID;
+
     public Vehicle(String vrm, VehicleType vehicleType) {
         this.vrm = vrm;
         this.vehicleType = vehicleType;
     }
+
+    /**
+     * Returns the canonical id of this vehicle's VRM, for indexing and auditing the vehicle by a long (see
+     * VehicleRegistry). A non-standard VRM is given an id if it hasn't got one, so this is for vehicles being parked -
+     * use findVehicleId to look a vehicle up.
+     * @return the id of the vehicle's VRM.
+     */
+    public long getVehicleId() {
+        long id = vehicleId;
+        if (id == VehicleRegistry.NO_VEHICLE_ID) {
+            id = VehicleRegistry.idOf(vrm);
+            vehicleId = id;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the canonical id of this vehicle's VRM if it has one, without giving it one (see
+     * VehicleRegistry.findIdOf).
+     * @return the id of the vehicle's VRM, or NO_VEHICLE_ID if it is a non-standard VRM that has never been parked.
+     */
+    public long findVehicleId() {
+        long id = vehicleId;
+        if (id == VehicleRegistry.NO_VEHICLE_ID) {
+            id = VehicleRegistry.findIdOf(vrm);
+            vehicleId = id;
+        }
+        return id;
+    }
 }
@@ -0,0 +1,160 @@
+package com.example.carpark.queue;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A queue of vehicles waiting to park, with a sub-queue for each category of parking space. Vehicles are dispatched
+ * first in, first out within a category, but a vehicle waiting for a category of space that is full (e.g. an EV waiting
+ * for a charging point) does not hold up vehicles behind it that need another category.
+ * <p>
+ * When vehicles of more than one category can be parked, categories take turns in proportion to their weights. Ageing
+ * bounds how long that can hold a vehicle back: once the head of a category has waited for the ageing period, the
+ * longest waiting of those vehicles is dispatched first.
+ */
+public class MultiClassParkingQueue {
+
+    private static final ParkingSpaceCategory[] CATEGORIES = ParkingSpaceCategory.values();
+
+    private final Map<ParkingSpaceCategory, ArrayDeque<Waiting>> subQueues = new EnumMap<>(ParkingSpaceCategory.class);
+
+    private final int[] weights = new int[CATEGORIES.length];
+
+    // Turns left for each category in the current round, and the category whose turn it is.
+    private final int[] turnsLeft = new int[CATEGORIES.length];
+
+    private int currentCategory;
+
+    // Whether the first vehicle of each category can be parked, reused by each dispatch (only touched holding the lock).
+    private final boolean[] parkable = new boolean[CATEGORIES.length];
+
+    private final long ageingNanos;
+
+    private final LongSupplier nanoClock;
+
+    private int size;
+
+    /**
+     * @param weights the relative share of dispatches for each category when more than one can be parked (a category
+     * without a weight has a weight of 1).
+     * @param ageingMillis how long a vehicle can be held back by the weights before it is dispatched first (0 to never).
+     */
+    public MultiClassParkingQueue(Map<ParkingSpaceCategory, Integer> weights, long ageingMillis) {
+        this(weights, ageingMillis, System::nanoTime);
+    }
+
+    MultiClassParkingQueue(Map<ParkingSpaceCategory, Integer> weights, long ageingMillis, LongSupplier nanoClock) {
+        for (ParkingSpaceCategory category : CATEGORIES) {
+            int weight = weights.getOrDefault(category, 1);
+            if (weight < 1) {
+                throw new IllegalArgumentException("The weight of " + category + " must be at least 1");
+            }
+            this.weights[category.ordinal()] = weight;
+            this.subQueues.put(category, new ArrayDeque<>());
+        }
+        System.arraycopy(this.weights, 0, this.turnsLeft, 0, CATEGORIES.length);
+        this.ageingNanos = ageingMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ageingMillis) : Long.MAX_VALUE;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Adds a vehicle to the back of the queue for its category of parking space.
+     * @param vehicle the vehicle waiting to park.
+     */
+    public synchronized void offer(Vehicle vehicle) {
+        subQueues.get(ParkingSpaceCategory.requiredBy(vehicle)).addLast(new Waiting(vehicle, nanoClock.getAsLong()));
+        size++;
+    }
+
+    /**
+     * Removes and returns the next vehicle to park, skipping categories whose first vehicle can't be parked.
+     * @param canPark whether there is currently a space for a vehicle (tested on the first vehicle of each category).
+     * @return the next vehicle to park, or null if there is no vehicle that can be parked.
+     */
+    public synchronized Vehicle pollParkable(Predicate<Vehicle> canPark) {
+        if (size == 0) {
+            return null;
+        }
+        Arrays.fill(parkable, false);
+        boolean anyParkable = false;
+        ParkingSpaceCategory longestWaiting = null;
+        long longestWaitingSince = Long.MAX_VALUE;
+        long now = nanoClock.getAsLong();
+        for (ParkingSpaceCategory category : CATEGORIES) {
+            Waiting head = subQueues.get(category).peekFirst();
+            if (head != null && canPark.test(head.vehicle)) {
+                parkable[category.ordinal()] = true;
+                anyParkable = true;
+                if (now - head.sinceNanos >= ageingNanos && head.sinceNanos < longestWaitingSince) {
+                    longestWaiting = category;
+                    longestWaitingSince = head.sinceNanos;
+                }
+            }
+        }
+        if (!anyParkable) {
+            return null;
+        }
+        if (longestWaiting != null) {
+            return poll(longestWaiting);
+        }
+
+        // Weighted round robin - start a new round once every parkable category has used up its turns.
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < CATEGORIES.length; i++) {
+                int category = (currentCategory + i) % CATEGORIES.length;
+                if (parkable[category] && turnsLeft[category] > 0) {
+                    turnsLeft[category]--;
+                    currentCategory = turnsLeft[category] > 0 ? category : (category + 1) % CATEGORIES.length;
+                    return poll(CATEGORIES[category]);
+                }
+            }
+            System.arraycopy(weights, 0, turnsLeft, 0, CATEGORIES.length);
+        }
+        throw new IllegalStateException("No parkable category had a turn");
+    }
+
+    /**
+     * Removes and returns the first vehicle of each category, e.g. to wait for a space for each of them when none of
+     * them can be parked.
+     * @return the first vehicle of each category that has one, in category order.
+     */
+    public synchronized List<Vehicle> pollHeads() {
+        List<Vehicle> heads = new ArrayList<>(CATEGORIES.length);
+        for (ParkingSpaceCategory category : CATEGORIES) {
+            if (!subQueues.get(category).isEmpty()) {
+                heads.add(poll(category));
+            }
+        }
+        return heads;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int size(ParkingSpaceCategory category) {
+        return subQueues.get(category).size();
+    }
+
+    private Vehicle poll(ParkingSpaceCategory category) {
+        size--;
+        return subQueues.get(category).pollFirst().vehicle;
+    }
+
+    private record Waiting(Vehicle vehicle, long sinceNanos) {
+    }
+}
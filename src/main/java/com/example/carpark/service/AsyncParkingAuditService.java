@@ -0,0 +1,273 @@
+package com.example.carpark.service;
+
+import com.example.carpark.audit.AuditBackpressure;
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.audit.AuditRingBuffer;
+import com.example.carpark.model.ParkingAudit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ParkingAuditService that records parking visits asynchronously, so a vehicle leaving never waits for the audit
+ * store (e.g. a journal syncing to disk). Visits go into a bounded ring buffer, and a single audit writer thread drains
+ * them in batches into the audit store behind it. What happens when the buffer is full is configurable (see
+ * AuditBackpressure). Any visits still in the buffer are written when the application shuts down. A batch the audit
+ * store fails to write is logged and counted as dropped (it isn't retried, as the store may have written part of it).
+ * <p>
+ * Queries wait for the visits recorded before them to be written, so they see the same audit trail as if visits were
+ * recorded synchronously.
+ */
+@Log4j2
+@Primary
+@Service
+@ConditionalOnProperty(name = "carPark.audit.async.enabled", havingValue = "true")
+public class AsyncParkingAuditService implements ParkingAuditService {
+
+    private final ParkingAuditService auditStore;
+
+    @Value("${carPark.audit.async.bufferSize:65536}")
+    private int bufferSize = 65536;
+
+    @Value("${carPark.audit.async.batchSize:1024}")
+    private int batchSize = 1024;
+
+    @Value("${carPark.audit.async.backpressure:BLOCK}")
+    private AuditBackpressure backpressure = AuditBackpressure.BLOCK;
+
+    private AuditRingBuffer ringBuffer;
+
+    private Thread auditWriterThread;
+
+    private volatile boolean closed;
+
+    // Set while the audit writer is parked waiting for visits, so producers only pay for an unpark when it is needed.
+    private volatile boolean auditWriterIdle;
+
+    private final LongAdder numDropped = new LongAdder();
+
+    private final LongAdder numRecordedByCaller = new LongAdder();
+
+    /* Visits leave the ring buffer when they are drained, before they are written - so the audit writer publishes how
+     * far it has got once the audit store has returned, and flush waits on that rather than on the ring buffer. Only
+     * written by the audit writer (or by close, once the audit writer has stopped). */
+    private volatile long writtenSequence;
+
+    private volatile long numWritten;
+
+    @Autowired
+    public AsyncParkingAuditService(@Qualifier(ParkingAuditService.AUDIT_STORE) ParkingAuditService auditStore) {
+        this.auditStore = auditStore;
+    }
+
+    @PostConstruct
+    void startAuditWriter() {
+        ringBuffer = new AuditRingBuffer(bufferSize);
+        auditWriterThread = new Thread(this::writeUntilClosed, "audit-writer");
+        auditWriterThread.setDaemon(true);
+        auditWriterThread.start();
+    }
+
+    /**
+     * Stops accepting visits into the buffer, then waits for every visit already in it to be written. Visits recorded
+     * after this are written to the audit store directly.
+     */
+    @PreDestroy
+    void close() {
+        // Closing the ring buffer first means no visit can be offered after the final drain below.
+        ringBuffer.close();
+        closed = true;
+        LockSupport.unpark(auditWriterThread);
+        try {
+            auditWriterThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The audit writer has gone, so this thread is now the only consumer - pick up any visit offered as it finished
+        // (the ring buffer refuses any offered from now on).
+        List<ParkingAudit> batch = new ArrayList<>(batchSize);
+        while (drainAndWrite(batch) > 0) {
+            // Keep going until the buffer is empty.
+        }
+        log.info("Audit writer stopped with " + numWritten + " visit(s) written, " +
+                numRecordedByCaller.sum() + " recorded by the caller and " + numDropped.sum() + " dropped");
+    }
+
+    @Override
+    public void recordParkingVisit(int parkingSpaceDesignation, String vehicleVrm, LocalDateTime arrived,
+                                   LocalDateTime left, double parkingCost) {
+        recordParkingVisit(new ParkingAudit(parkingSpaceDesignation, vehicleVrm, arrived, left, parkingCost));
+    }
+
+    @Override
+    public void recordParkingVisit(ParkingAudit parkingAudit) {
+        while (!ringBuffer.offer(parkingAudit)) {
+            if (ringBuffer.isClosed()) {
+                auditStore.recordParkingVisit(parkingAudit);
+                return;
+            }
+            switch (backpressure) {
+                case DROP:
+                    numDropped.increment();
+                    return;
+                case CALLER_RUNS:
+                    numRecordedByCaller.increment();
+                    auditStore.recordParkingVisit(parkingAudit);
+                    return;
+                default:
+                    wakeAuditWriter();
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+        wakeAuditWriter();
+    }
+
+    @Override
+    public void recordParkingVisits(List<ParkingAudit> parkingAudits) {
+        for (ParkingAudit parkingAudit : parkingAudits) {
+            recordParkingVisit(parkingAudit);
+        }
+    }
+
+    @Override
+    public List<ParkingAudit> getAllParkingAudits() {
+        flush();
+        return auditStore.getAllParkingAudits();
+    }
+
+    @Override
+    public List<ParkingAudit> getParkingAuditsForDateRange(LocalDateTime start, LocalDateTime end) {
+        flush();
+        return auditStore.getParkingAuditsForDateRange(start, end);
+    }
+
+    @Override
+    public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end) {
+        flush();
+        return auditStore.getTotalFundsCollectedForDateRange(start, end);
+    }
+
+    @Override
+    public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        flush();
+        return auditStore.getTotalFundsCollectedForDateRange(start, end, mode);
+    }
+
+    @Override
+    public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end) {
+        flush();
+        return auditStore.getDistinctNumberOfVehiclesVisitedForDateRange(start, end);
+    }
+
+    @Override
+    public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        flush();
+        return auditStore.getDistinctNumberOfVehiclesVisitedForDateRange(start, end, mode);
+    }
+
+    @Override
+    public long getNumberOfVisitsForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        flush();
+        return auditStore.getNumberOfVisitsForDateRange(start, end, mode);
+    }
+
+    /**
+     * Waits until every visit recorded before this call has been written to the audit store.
+     */
+    public void flush() {
+        long target = ringBuffer.getProducerSequence();
+        while (writtenSequence < target && auditWriterThread.isAlive()) {
+            wakeAuditWriter();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Returns the number of visits waiting in the buffer to be written to the audit store.
+     * @return the queue depth.
+     */
+    public int getQueueDepth() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * Returns the number of visits dropped because the buffer was full (with DROP backpressure), or because the audit
+     * store failed to write them.
+     * @return the number of dropped visits.
+     */
+    public long getNumDropped() {
+        return numDropped.sum();
+    }
+
+    /**
+     * Returns the number of visits the exit thread had to write itself because the buffer was full (with CALLER_RUNS
+     * backpressure).
+     * @return the number of visits recorded by the caller.
+     */
+    public long getNumRecordedByCaller() {
+        return numRecordedByCaller.sum();
+    }
+
+    /**
+     * Returns the number of visits the audit writer has written to the audit store.
+     * @return the number of visits written.
+     */
+    public long getNumWritten() {
+        return numWritten;
+    }
+
+    private void wakeAuditWriter() {
+        if (auditWriterIdle) {
+            LockSupport.unpark(auditWriterThread);
+        }
+    }
+
+    private void writeUntilClosed() {
+        List<ParkingAudit> batch = new ArrayList<>(batchSize);
+        while (true) {
+            if (drainAndWrite(batch) > 0) {
+                continue;
+            }
+            if (closed) {
+                // Everything offered before close has been written (drainAndWrite found nothing left).
+                return;
+            }
+            auditWriterIdle = true;
+            // Check again after saying we're idle, so a visit offered in between isn't left waiting.
+            if (ringBuffer.size() == 0 && !closed) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            auditWriterIdle = false;
+        }
+    }
+
+    // Drains one batch from the buffer and writes it to the audit store.
+    private int drainAndWrite(List<ParkingAudit> batch) {
+        int numDrained = ringBuffer.drainTo(batch, batchSize);
+        if (numDrained > 0) {
+            try {
+                auditStore.recordParkingVisits(batch);
+                numWritten += numDrained;
+            } catch (RuntimeException e) {
+                numDropped.add(numDrained);
+                log.error("Failed to write " + numDrained + " parking visit(s) to the audit store", e);
+            }
+            batch.clear();
+            writtenSequence += numDrained;
+        }
+        return numDrained;
+    }
+}
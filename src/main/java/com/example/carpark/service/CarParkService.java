@@ -4,9 +4,16 @@ import com.example.carpark.exception.CarParkFullException;
 import com.example.carpark.exception.DoubleParkedException;
 import com.example.carpark.exception.NoSuitableSpacesException;
 import com.example.carpark.exception.VehicleNotFoundException;
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
 import com.example.carpark.model.ParkingSpace;
 import com.example.carpark.model.Vehicle;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 public interface CarParkService {
 
     /**
@@ -20,6 +27,59 @@ public interface CarParkService {
      */
     ParkingSpace parkVehicle(Vehicle vehicle) throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException;
 
+    /**
+     * Attempts to park a supplied vehicle, preferring a space on the level it entered the car park. If that level has no
+     * suitable space, the vehicle spills over to the next level up (wrapping round to the ground floor).
+     * @param vehicle the vehicle to be parked.
+     * @param entryLevel the level (numbered from 0, the ground floor) the vehicle entered the car park.
+     * @return the allocated parking space if parking was successful.
+     * @throws DoubleParkedException if the supplied vehicle is already parked in the car park.
+     * @throws CarParkFullException if the car park has reached its maximum capacity.
+     * @throws NoSuitableSpacesException if no level of the car park has a space suitable for the supplied vehicle.
+     */
+    ParkingSpace parkVehicle(Vehicle vehicle, int entryLevel) throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException;
+
+    /**
+     * Attempts to park a supplied vehicle, as parkVehicle does, but reports a rejection as a result rather than throwing
+     * an exception - so a caller turned away over and over (e.g. while the car park is full) pays no exception cost.
+     * @param vehicle the vehicle to be parked.
+     * @param entryLevel the level (numbered from 0, the ground floor) the vehicle entered the car park.
+     * @return Parked with the allocated parking space, or CAR_PARK_FULL, DOUBLE_PARKED or NO_SUITABLE_SPACE.
+     */
+    ParkingResult tryParkVehicle(Vehicle vehicle, int entryLevel);
+
+    /**
+     * Attempts to park a batch of vehicles arriving together (e.g. a coach party), entering on the ground floor. The
+     * batch is allocated in one pass: capacity is checked once, and the spaces for each category are claimed together.
+     * @param vehicles the vehicles to be parked, in order of arrival (earlier vehicles are allocated spaces first).
+     * @return the result for each vehicle, in the same order - Parked with the allocated parking space, or
+     * CAR_PARK_FULL, DOUBLE_PARKED or NO_SUITABLE_SPACE.
+     */
+    List<ParkingResult> parkVehicles(List<Vehicle> vehicles);
+
+    /**
+     * Parks a supplied vehicle as soon as a suitable space is available. If there isn't one, the vehicle waits (behind
+     * any vehicles already waiting for the same kind of space) and is handed the next suitable space to be freed - the
+     * caller does not need to retry.
+     * @param vehicle the vehicle to be parked.
+     * @return a future completed with the allocated parking space, or exceptionally with a DoubleParkedException if the
+     * vehicle is already parked. Cancelling the future gives up waiting.
+     */
+    CompletableFuture<ParkingSpace> parkVehicleWhenSpaceAvailable(Vehicle vehicle);
+
+    /**
+     * Parks a supplied vehicle, waiting up to the supplied time for a suitable space if there isn't one (as with
+     * parkVehicleWhenSpaceAvailable).
+     * @param vehicle the vehicle to be parked.
+     * @param timeout the maximum time to wait for a space.
+     * @param unit the time unit of the timeout.
+     * @return the allocated parking space.
+     * @throws DoubleParkedException if the supplied vehicle is already parked in the car park.
+     * @throws InterruptedException if interrupted while waiting (the vehicle is not parked).
+     * @throws TimeoutException if no suitable space became available in time (the vehicle is not parked).
+     */
+    ParkingSpace parkVehicle(Vehicle vehicle, long timeout, TimeUnit unit) throws DoubleParkedException, InterruptedException, TimeoutException;
+
     /**
      * Removes a parked vehicle from the car park, thus freeing up the parking space it was using.
      * @param vehicle the parked vehicle leaving the car park.
@@ -29,6 +89,23 @@ public interface CarParkService {
      */
     double leaveCarPark(Vehicle vehicle) throws VehicleNotFoundException;
 
+    /**
+     * Removes a parked vehicle from the car park, as leaveCarPark does, but reports a vehicle that isn't parked as a
+     * result rather than throwing an exception.
+     * @param vehicle the parked vehicle leaving the car park.
+     * @return Left with the parking charge amount, or VEHICLE_NOT_FOUND.
+     */
+    LeaveResult tryLeaveCarPark(Vehicle vehicle);
+
+    /**
+     * Removes a batch of parked vehicles leaving together (e.g. at the end of an event) from the car park. The batch is
+     * charged at the same leaving time and audited as one batch.
+     * @param vehicles the parked vehicles leaving the car park.
+     * @return the result for each vehicle, in the same order - Left with the parking charge amount, or
+     * VEHICLE_NOT_FOUND.
+     */
+    List<LeaveResult> leaveCarPark(List<Vehicle> vehicles);
+
     /**
      * Checks whether suitable parking is available in the car park for the supplied vehicle.
      * @param vehicle the vehicle enquiring about parking.
@@ -54,4 +131,12 @@ public interface CarParkService {
      * @return a vehicle at random from the collection of vehicle currently parked in the car park.
      */
     Vehicle getRandomlyParkedVehicle();
+
+    /**
+     * Returns distinct vehicles at random from the selection of vehicles currently residing in the car park (e.g. to
+     * have a batch of vehicles leave together).
+     * @param numVehicles the number of vehicles to return.
+     * @return up to numVehicles distinct vehicles currently parked in the car park, fewer if fewer are parked.
+     */
+    List<Vehicle> getRandomlyParkedVehicles(int numVehicles);
 }
\ No newline at end of file
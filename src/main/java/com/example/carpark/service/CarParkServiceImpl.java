@@ -1,12 +1,26 @@
 package com.example.carpark.service;
 
+import com.example.carpark.availability.AvailabilityModel;
+import com.example.carpark.bay.BayStore;
+import com.example.carpark.bay.BayStoreType;
 import com.example.carpark.exception.CarParkFullException;
 import com.example.carpark.exception.NoSuitableSpacesException;
+import com.example.carpark.index.FreeParkingSpaceIndex;
+import com.example.carpark.index.OccupiedSlotSampler;
+import com.example.carpark.index.ParkedVehicleIndex;
+import com.example.carpark.index.ParkingLevelPool;
+import com.example.carpark.logging.ParkingEventLog;
+import com.example.carpark.metrics.CarParkMetrics;
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.model.ParkingResult;
 import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
 import com.example.carpark.model.Vehicle;
-import com.example.carpark.model.VehicleType;
 import com.example.carpark.exception.DoubleParkedException;
 import com.example.carpark.exception.VehicleNotFoundException;
+import com.example.carpark.time.EpochMillis;
+import com.example.carpark.time.TimeSource;
 import com.example.carpark.util.CarParkDataGenerator;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
@@ -14,12 +28,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Log4j2
 @Service
@@ -31,165 +54,633 @@ public class CarParkServiceImpl implements CarParkService {
 
     private PaymentService paymentService;
 
-    /* This is initialised to a synchronized list for thread safety. Alternatively, we could have added the synchronized
-     * keyword to the parkVehicle method, but we don't want to unnecessarily block threads unless they are accessing
-     * the same ParkingSpaces in the list - i.e. it is a perfectly acceptable scenario for two cars to park in
-     * different spaces simultaneously. */
-    private List<ParkingSpace> parkingSpaces;
+    private OccupancySnapshotService occupancySnapshotService;
+
+    private TimeSource timeSource;
+
+    // Replaced by the application's metrics when the service is a Spring bean.
+    @Autowired
+    private CarParkMetrics carParkMetrics = new CarParkMetrics();
+
+    /* Free spaces by category, level and zone for signs and apps, kept up to date as each space is occupied and cleared
+     * (so reading availability never touches the level pools). Replaced by the application's model when the service is a
+     * Spring bean. */
+    @Autowired
+    private AvailabilityModel availabilityModel = new AvailabilityModel();
+
+    /* The bays are fixed once initialised. Occupancy of each bay is claimed and released with a CAS (see BayStore), and
+     * free slots are handed out by a concurrent index, so any number of entry and exit threads can park and leave at the
+     * same time without a global lock - two threads can only ever contend for the same space. */
+    private BayStore bayStore;
+
+    /* Free spaces are indexed by slot (position in the bay store, which is kept in designation order) and
+     * category, so finding a suitable space is a search for the lowest set bit of a bitset (see FreeParkingSpaceIndex)
+     * rather than a scan of the whole car park. Each level has its own
+     * pool of free spaces and occupancy count (indexed by level number), so vehicles entering at different levels only
+     * contend with other vehicles on the same level. */
+    private ParkingLevelPool[] levelPools;
+
+    /* Slot of each parked vehicle keyed by vehicle id, so the double park check and finding a leaving vehicle's space
+     * are constant time lookups on a long (rather than hashing and comparing VRM strings). Kept up to date alongside the
+     * parking space whenever it is occupied or cleared. */
+    private ParkedVehicleIndex parkedVehicleSlots;
+
+    // The occupied slots, so a randomly parked vehicle can be picked without scanning every parking space.
+    private OccupiedSlotSampler occupiedSlotSampler;
+
+    /* Vehicles waiting for a space (see parkVehicleWhenSpaceAvailable) for each category of space, in order of arrival.
+     * A freed space is handed straight to the longest waiting vehicle that needs it rather than going back to the free
+     * pool, and vehicles parking straight away offer the spaces they claim to waiting vehicles first, so a waiting vehicle
+     * is never overtaken and never has to poll. */
+    private Map<ParkingSpaceCategory, Queue<SpaceWaiter>> spaceWaiters;
 
     @Value("${carPark.capacity}")
     private int capacity;
 
-    private int numCarsParked;
+    @Value("${carPark.levels:1}")
+    private int levels = 1;
+
+    @Value("${carPark.zonesPerLevel:1}")
+    private int zonesPerLevel = 1;
+
+    @Value("${carPark.bayStore:OBJECTS}")
+    private BayStoreType bayStoreType = BayStoreType.OBJECTS;
 
     @Autowired
-    public CarParkServiceImpl(CarParkDataGenerator carParkDataGenerator, ParkingAuditService parkingAuditService, PaymentService paymentService) {
+    public CarParkServiceImpl(CarParkDataGenerator carParkDataGenerator, ParkingAuditService parkingAuditService,
+                              PaymentService paymentService, OccupancySnapshotService occupancySnapshotService,
+                              TimeSource timeSource) {
         this.carParkDataGenerator = carParkDataGenerator;
         this.parkingAuditService = parkingAuditService;
         this.paymentService = paymentService;
+        this.occupancySnapshotService = occupancySnapshotService;
+        this.timeSource = timeSource;
     }
 
     @PostConstruct
     void initialiseCarPark() {
-        log.info("Initialising car park with " + capacity + " spaces.");
-        this.parkingSpaces = carParkDataGenerator.generateParkingSpaces(capacity);
-        this.numCarsParked = 0;
+        log.info("Initialising car park with {} spaces over {} level(s).", capacity, levels);
+        List<ParkingSpace> parkingSpaces = carParkDataGenerator.generateParkingSpaces(capacity, levels, zonesPerLevel);
+        parkingSpaces.sort(Comparator.comparingInt(ParkingSpace::getDesignation));
+        this.bayStore = bayStoreType.create(parkingSpaces);
+        // Bring back any vehicles that were parked before a restart (before the free space pools are built from it).
+        occupancySnapshotService.restoreAndSnapshotPeriodically(bayStore);
+        this.parkedVehicleSlots = new ParkedVehicleIndex(bayStore.size());
+        this.occupiedSlotSampler = new OccupiedSlotSampler(bayStore.size());
+        this.spaceWaiters = new EnumMap<>(ParkingSpaceCategory.class);
+        for (ParkingSpaceCategory category : ParkingSpaceCategory.values()) {
+            spaceWaiters.put(category, new ConcurrentLinkedQueue<>());
+        }
+        // Each level's free index only covers the level's own slots (designations run upwards level by level, so the
+        // range is the level's slots and nothing else).
+        int[] firstSlotOfLevel = new int[levels];
+        int[] lastSlotOfLevel = new int[levels];
+        Arrays.fill(firstSlotOfLevel, Integer.MAX_VALUE);
+        Arrays.fill(lastSlotOfLevel, -1);
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            int level = bayStore.getLevel(slot);
+            firstSlotOfLevel[level] = Math.min(firstSlotOfLevel[level], slot);
+            lastSlotOfLevel[level] = slot;
+        }
+        this.levelPools = new ParkingLevelPool[levels];
+        for (int level = 0; level < levels; level++) {
+            int firstSlot = Math.min(firstSlotOfLevel[level], lastSlotOfLevel[level] + 1);
+            levelPools[level] = new ParkingLevelPool(level, firstSlot, lastSlotOfLevel[level] + 1 - firstSlot);
+        }
+        int[] numSpaces = new int[ParkingSpaceCategory.values().length];
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            ParkingLevelPool levelPool = levelPools[bayStore.getLevel(slot)];
+            ParkingSpaceCategory category = bayStore.getCategory(slot);
+            numSpaces[category.ordinal()]++;
+            Vehicle occupyingVehicle = bayStore.getOccupyingVehicle(slot);
+            if (occupyingVehicle == null) {
+                levelPool.addFreeSlot(category, slot);
+            } else {
+                parkedVehicleSlots.putIfAbsent(occupyingVehicle.getVehicleId(), slot);
+                occupiedSlotSampler.add(slot);
+                levelPool.recordOccupied(category);
+            }
+        }
+        carParkMetrics.bindOccupancy(this::getNumOccupiedSpaces, numSpaces);
+        availabilityModel.initialise(bayStore);
     }
 
     @Override
     public ParkingSpace parkVehicle(Vehicle vehicle) throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
-        ParkingSpace parkingSpace;
+        // Without a specific entrance, fill the car park from the ground floor up.
+        return parkVehicle(vehicle, 0);
+    }
+
+    @Override
+    public ParkingSpace parkVehicle(Vehicle vehicle, int entryLevel) throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
+        ParkingResult parkingResult = tryParkVehicle(vehicle, entryLevel);
+        if (parkingResult instanceof ParkingResult.Parked parked) {
+            return parked.parkingSpace();
+        }
+        ParkingResult.Rejected rejected = (ParkingResult.Rejected) parkingResult;
+        switch (rejected) {
+            case CAR_PARK_FULL:
+                throw new CarParkFullException(rejected.getMessage());
+            case DOUBLE_PARKED:
+                throw new DoubleParkedException(rejected.getMessage());
+            default:
+                throw new NoSuitableSpacesException(rejected.getMessage());
+        }
+    }
+
+    @Override
+    public ParkingResult tryParkVehicle(Vehicle vehicle, int entryLevel) {
+        if (entryLevel < 0 || entryLevel >= levelPools.length) {
+            throw new IllegalArgumentException("Car park does not have a level " + entryLevel);
+        }
+        long startNanos = System.nanoTime();
+        ParkingResult parkingResult = allocateParkingSpace(vehicle, entryLevel);
+        carParkMetrics.recordParkingResult(parkingResult, System.nanoTime() - startNanos);
+        if (parkingResult instanceof ParkingResult.Rejected rejected) {
+            ParkingEventLog.parkRejected(vehicle, rejected);
+        }
+        return parkingResult;
+    }
 
+    // Parks the vehicle on the entry level (or the next with a suitable space), or reports why it couldn't be parked.
+    private ParkingResult allocateParkingSpace(Vehicle vehicle, int entryLevel) {
         // Check to see if the car park is full.
         if (isCarParkFull()) {
-            log.debug("parkVehicle invoked for " + vehicle.getVehicleType() + " " + vehicle.getVrm() +
-                    " but the car park is full");
-            throw new CarParkFullException("Car park is full, unable to park vehicle");
+            return ParkingResult.Rejected.CAR_PARK_FULL;
         }
 
-        // Check we are not double parking.
-        if (findParkedVehiclesSpace(vehicle).isPresent()) {
-            log.warn("parkVehicle invoked for " + vehicle.getVehicleType() + " " + vehicle.getVrm() +
-                    " but vehicle is already in the car park");
-            throw new DoubleParkedException("Vehicle is already parked in this car park");
+        // Check we are not double parking (a VRM can only be parked in one space at a time).
+        if (parkedVehicleSlots.containsKey(vehicle.findVehicleId())) {
+            return ParkingResult.Rejected.DOUBLE_PARKED;
         }
 
-        // Check to see if the car park has a suitable space (we are assuming an EV requires a charging point).
-        Optional<ParkingSpace> parkingSpaceToOccupyOpt = findSuitableAvailableParkingSpace(vehicle);
-        if (!parkingSpaceToOccupyOpt.isPresent()) {
-            log.debug("parkVehicle invoked for " + vehicle.getVehicleType() + " " + vehicle.getVrm() +
-                    " but a suitable parking space couldn't be found");
-            throw new NoSuitableSpacesException("Car park does not contain a space suitable for your vehicle");
-        } else {
-            log.info(vehicle.getVehicleType() + " " + vehicle.getVrm() + " is being allocated a space");
-            parkingSpace = parkingSpaceToOccupyOpt.get();
+        // Claim a suitable space (we are assuming an EV requires a charging point). Claiming removes the space from the
+        // free index, so no other thread can be allocated it.
+        int slotToOccupy = claimSlotNotNeededByWaiters(ParkingSpaceCategory.requiredBy(vehicle), entryLevel);
+        if (slotToOccupy == FreeParkingSpaceIndex.NO_FREE_SLOT) {
+            return ParkingResult.Rejected.NO_SUITABLE_SPACE;
+        }
 
-            // A suitable free space has been located - lets occupy it.
-            occupyParkingSpace(parkingSpace, vehicle);
-            numCarsParked++;
+        // A suitable free space has been claimed - lets occupy it. This fails if the same vehicle has been parked by
+        // another thread since the double park check above.
+        if (!occupyParkingSpace(slotToOccupy, vehicle)) {
+            returnFreeSlot(slotToOccupy);
+            return ParkingResult.Rejected.DOUBLE_PARKED;
         }
 
-        return parkingSpace;
+        ParkingEventLog.parked(vehicle, bayStore.getDesignation(slotToOccupy));
+        return new ParkingResult.Parked(bayStore.getParkingSpace(slotToOccupy));
     }
 
     @Override
-    public double leaveCarPark(Vehicle vehicle) throws VehicleNotFoundException {
-        double parkingCost;
-        Optional<ParkingSpace> vehiclesParkingSpaceOpt = findParkedVehiclesSpace(vehicle);
+    public List<ParkingResult> parkVehicles(List<Vehicle> vehicles) {
+        long startNanos = System.nanoTime();
+        ParkingSpaceCategory[] categories = ParkingSpaceCategory.values();
+        ParkingResult[] parkingResults = new ParkingResult[vehicles.size()];
+
+        // Count the spaces needed of each category (leaving out vehicles that are already parked), then claim them
+        // together - capacity is checked (summing every level's count) once for the whole batch.
+        int spacesLeft = capacity - getNumCarsParked();
+        int[] numSpacesNeeded = new int[categories.length];
+        for (Vehicle vehicle : vehicles) {
+            if (!parkedVehicleSlots.containsKey(vehicle.findVehicleId())) {
+                numSpacesNeeded[ParkingSpaceCategory.requiredBy(vehicle).ordinal()]++;
+            }
+        }
+        int[][] claimedSlots = new int[categories.length][];
+        int[] numClaimed = new int[categories.length];
+        for (ParkingSpaceCategory category : categories) {
+            int numSlots = Math.min(numSpacesNeeded[category.ordinal()], Math.max(spacesLeft, 0));
+            // Vehicles already waiting for this category of space are served first - while any are still waiting, there
+            // are no spaces of the category left for the batch.
+            Queue<SpaceWaiter> waiters = spaceWaiters.get(category);
+            if (numSlots > 0 && !waiters.isEmpty()) {
+                handOverFreeSlotsToWaiters(category);
+                if (!waiters.isEmpty()) {
+                    numSlots = 0;
+                }
+            }
+            int[] slots = new int[numSlots];
+            for (int level = 0; level < levelPools.length && numClaimed[category.ordinal()] < numSlots; level++) {
+                numClaimed[category.ordinal()] += levelPools[level].claimLowestFreeSlots(category, slots,
+                        numClaimed[category.ordinal()], numSlots - numClaimed[category.ordinal()]);
+            }
+            claimedSlots[category.ordinal()] = slots;
+        }
 
-        if (vehiclesParkingSpaceOpt.isPresent()) {
-            log.info(vehicle.getVehicleType() + " " + vehicle.getVrm() + " is leaving the car park");
-            ParkingSpace parkingSpace = vehiclesParkingSpaceOpt.get();
+        // Hand out the claimed spaces in order of arrival, with the same outcome as parking the vehicles one at a time.
+        int[] numUsed = new int[categories.length];
+        for (int i = 0; i < vehicles.size(); i++) {
+            Vehicle vehicle = vehicles.get(i);
+            int category = ParkingSpaceCategory.requiredBy(vehicle).ordinal();
+            if (spacesLeft <= 0) {
+                parkingResults[i] = ParkingResult.Rejected.CAR_PARK_FULL;
+            } else if (parkedVehicleSlots.containsKey(vehicle.findVehicleId())) {
+                parkingResults[i] = ParkingResult.Rejected.DOUBLE_PARKED;
+            } else if (numUsed[category] == numClaimed[category]) {
+                parkingResults[i] = ParkingResult.Rejected.NO_SUITABLE_SPACE;
+            } else {
+                int slot = claimedSlots[category][numUsed[category]];
+                if (occupyParkingSpace(slot, vehicle)) {
+                    numUsed[category]++;
+                    spacesLeft--;
+                    ParkingEventLog.parked(vehicle, bayStore.getDesignation(slot));
+                    parkingResults[i] = new ParkingResult.Parked(bayStore.getParkingSpace(slot));
+                } else {
+                    // Parked by another thread since the check above - the slot goes to the next vehicle.
+                    parkingResults[i] = ParkingResult.Rejected.DOUBLE_PARKED;
+                }
+            }
+        }
 
-            // Vehicle has been found in the car park - calculate the parking cost...
-            LocalDateTime leavingDateTime = LocalDateTime.now();
-            parkingCost = paymentService.calculateParkingCost(parkingSpace.getArrival(), leavingDateTime);
+        // Give back any spaces claimed but not used (e.g. the car park filled up part way through the batch).
+        for (ParkingSpaceCategory category : categories) {
+            for (int j = numUsed[category.ordinal()]; j < numClaimed[category.ordinal()]; j++) {
+                returnFreeSlot(claimedSlots[category.ordinal()][j]);
+            }
+        }
+        for (int i = 0; i < parkingResults.length; i++) {
+            carParkMetrics.recordParkingResult(parkingResults[i]);
+            if (parkingResults[i] instanceof ParkingResult.Rejected rejected) {
+                ParkingEventLog.parkRejected(vehicles.get(i), rejected);
+            }
+        }
+        // The batch parks together, so its latency is recorded once for the whole batch.
+        carParkMetrics.recordParkLatency(System.nanoTime() - startNanos);
+
+        ParkingEventLog.parkedTogether(Arrays.stream(numUsed).sum(), vehicles.size());
+        return Arrays.asList(parkingResults);
+    }
+
+    @Override
+    public CompletableFuture<ParkingSpace> parkVehicleWhenSpaceAvailable(Vehicle vehicle) {
+        long startNanos = System.nanoTime();
+        SpaceWaiter waiter = waitForParkingSpace(vehicle);
+        // Only the time taken to park (or join the queue) is recorded, not the time spent waiting for a space.
+        carParkMetrics.recordParkLatency(System.nanoTime() - startNanos);
+        return waiter.parkingSpace;
+    }
 
-            // ...and log the visit to the AuditService...
-            parkingAuditService.recordParkingVisit(parkingSpace.getDesignation(), vehicle.getVrm(),
-                    parkingSpace.getArrival(), leavingDateTime, parkingCost);
+    @Override
+    public ParkingSpace parkVehicle(Vehicle vehicle, long timeout, TimeUnit unit) throws DoubleParkedException, InterruptedException, TimeoutException {
+        long startNanos = System.nanoTime();
+        SpaceWaiter waiter = waitForParkingSpace(vehicle);
+        carParkMetrics.recordParkLatency(System.nanoTime() - startNanos);
+        try {
+            return waiter.parkingSpace.get(timeout, unit);
+        } catch (TimeoutException | InterruptedException e) {
+            // Give up waiting - unless a space is being handed over right now, in which case the vehicle is parked.
+            if (waiter.claimed.compareAndSet(false, true)) {
+                // Leave the queue now, rather than holding on to the vehicle until a space of its category is freed.
+                spaceWaiters.get(ParkingSpaceCategory.requiredBy(vehicle)).remove(waiter);
+                throw e;
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return handedOverParkingSpace(waiter);
+        } catch (ExecutionException e) {
+            return handedOverParkingSpace(waiter);
+        }
+    }
 
-            log.debug(vehicle.getVehicleType() + " " + vehicle.getVrm() + " was parked for: " +
-                    paymentService.calculateParkingDurationSecondsRounded(parkingSpace.getArrival(), leavingDateTime)
-                    + " second(s). Parking cost (rounded to nearest hour): £" + parkingCost);
+    @Override
+    public double leaveCarPark(Vehicle vehicle) throws VehicleNotFoundException {
+        LeaveResult leaveResult = tryLeaveCarPark(vehicle);
+        if (leaveResult instanceof LeaveResult.Left left) {
+            return left.parkingCost();
+        }
+        throw new VehicleNotFoundException(((LeaveResult.Rejected) leaveResult).getMessage());
+    }
 
-            // ...free up the space for a new vehicle to use...
-            clearParkingSpace(parkingSpace);
-            numCarsParked--;
-        } else {
-            log.warn("leaveCarPark invoked for " + vehicle.getVehicleType() + " " + vehicle.getVrm() +
-                    " but vehicle not found in car park");
-            throw new VehicleNotFoundException("Vehicle is not parked in this car park");
+    @Override
+    public LeaveResult tryLeaveCarPark(Vehicle vehicle) {
+        long startNanos = System.nanoTime();
+        ParkingAudit parkingAudit = endVisit(vehicle, timeSource.currentEpochMillis());
+        if (parkingAudit == null) {
+            carParkMetrics.recordLeaveResult(LeaveResult.Rejected.VEHICLE_NOT_FOUND, System.nanoTime() - startNanos);
+            return LeaveResult.Rejected.VEHICLE_NOT_FOUND;
         }
+        long auditStartNanos = System.nanoTime();
+        parkingAuditService.recordParkingVisit(parkingAudit);
+        long endNanos = System.nanoTime();
+        carParkMetrics.recordAudited(1, endNanos - auditStartNanos);
+
+        LeaveResult leaveResult = new LeaveResult.Left(parkingAudit.getParkingChargePence());
+        carParkMetrics.recordLeaveResult(leaveResult, endNanos - startNanos);
+        return leaveResult;
+    }
 
-        return parkingCost;
+    @Override
+    public List<LeaveResult> leaveCarPark(List<Vehicle> vehicles) {
+        List<LeaveResult> leaveResults = new ArrayList<>(vehicles.size());
+        List<ParkingAudit> parkingAudits = new ArrayList<>(vehicles.size());
+
+        // The batch leaves together, so every vehicle is charged at the same time and the visits are audited together.
+        long leftEpochMillis = timeSource.currentEpochMillis();
+        for (Vehicle vehicle : vehicles) {
+            ParkingAudit parkingAudit = endVisit(vehicle, leftEpochMillis);
+            if (parkingAudit == null) {
+                carParkMetrics.recordLeaveResult(LeaveResult.Rejected.VEHICLE_NOT_FOUND);
+                leaveResults.add(LeaveResult.Rejected.VEHICLE_NOT_FOUND);
+            } else {
+                parkingAudits.add(parkingAudit);
+                leaveResults.add(new LeaveResult.Left(parkingAudit.getParkingChargePence()));
+            }
+        }
+        if (!parkingAudits.isEmpty()) {
+            long auditStartNanos = System.nanoTime();
+            parkingAuditService.recordParkingVisits(parkingAudits);
+            carParkMetrics.recordAudited(parkingAudits.size(), System.nanoTime() - auditStartNanos);
+        }
+        return leaveResults;
     }
 
     @Override
     public boolean isSuitableParkingAvailable(Vehicle vehicle) {
-        Optional<ParkingSpace> freeSpaceOpt = findSuitableAvailableParkingSpace(vehicle);
-        if (freeSpaceOpt.isPresent()) {
-            return true;
+        ParkingSpaceCategory category = ParkingSpaceCategory.requiredBy(vehicle);
+        for (ParkingLevelPool levelPool : levelPools) {
+            if (levelPool.hasFreeSlot(category)) {
+                return true;
+            }
         }
         return false;
     }
 
     @Override
     public boolean isCarParkFull() {
-        return getNumCarsParked() == capacity;
+        return getNumCarsParked() >= capacity;
     }
 
     @Override
     public int getNumCarsParked() {
+        // Each level keeps its own count, so summing them doesn't block any thread parking or leaving.
+        int numCarsParked = 0;
+        for (ParkingLevelPool levelPool : levelPools) {
+            numCarsParked += levelPool.getNumOccupied();
+        }
         return numCarsParked;
     }
 
+    private int getNumOccupiedSpaces(ParkingSpaceCategory category) {
+        int numOccupiedSpaces = 0;
+        for (ParkingLevelPool levelPool : levelPools) {
+            numOccupiedSpaces += levelPool.getNumOccupied(category);
+        }
+        return numOccupiedSpaces;
+    }
+
     @Override
     public Vehicle getRandomlyParkedVehicle() {
-        Vehicle randomVehicle = null;
+        while (true) {
+            int slot = occupiedSlotSampler.sample(ThreadLocalRandom.current());
+            if (slot == OccupiedSlotSampler.NO_OCCUPIED_SLOT) {
+                return null;
+            }
+            // The vehicle may have left since its slot was picked - if so, pick again.
+            Vehicle randomVehicle = bayStore.getOccupyingVehicle(slot);
+            if (randomVehicle != null) {
+                return randomVehicle;
+            }
+        }
+    }
+
+    @Override
+    public List<Vehicle> getRandomlyParkedVehicles(int numVehicles) {
+        int[] slots = occupiedSlotSampler.sample(numVehicles, ThreadLocalRandom.current());
+        List<Vehicle> randomVehicles = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            Vehicle randomVehicle = bayStore.getOccupyingVehicle(slot);
+            // Skip any vehicle that has left since its slot was picked.
+            if (randomVehicle != null) {
+                randomVehicles.add(randomVehicle);
+            }
+        }
+        return randomVehicles;
+    }
+
+    /* Claims the free slot with the lowest designation suitable for the vehicle on the entry level. If the entry level has
+     * no suitable space, spill over to the next level up (wrapping round to the ground floor). Returns NO_FREE_SLOT if
+     * there are no suitable spaces on any level. */
+    private int claimSuitableAvailableSlot(ParkingSpaceCategory category, int entryLevel) {
+        for (int i = 0; i < levelPools.length; i++) {
+            int slot = levelPools[(entryLevel + i) % levelPools.length].claimLowestFreeSlot(category);
+            if (slot != FreeParkingSpaceIndex.NO_FREE_SLOT) {
+                return slot;
+            }
+        }
+        return FreeParkingSpaceIndex.NO_FREE_SLOT;
+    }
+
+    /* Claims a free slot (as claimSuitableAvailableSlot) for a vehicle parking straight away, first handing claimed slots
+     * to any vehicles already waiting for the category - they arrived first. */
+    private int claimSlotNotNeededByWaiters(ParkingSpaceCategory category, int entryLevel) {
+        Queue<SpaceWaiter> waiters = spaceWaiters.get(category);
+        while (true) {
+            int slot = claimSuitableAvailableSlot(category, entryLevel);
+            if (slot == FreeParkingSpaceIndex.NO_FREE_SLOT || waiters.isEmpty() || !handOverToWaiter(slot, category)) {
+                return slot;
+            }
+        }
+    }
+
+    /* Claims a space for a vehicle that is prepared to wait. If there is a free space (and no vehicle is already waiting
+     * for one), the vehicle is parked straight away. Otherwise it joins the queue of vehicles waiting for its category of
+     * space, to be handed the next one freed. */
+    private SpaceWaiter waitForParkingSpace(Vehicle vehicle) {
+        SpaceWaiter waiter = new SpaceWaiter(vehicle);
+        if (parkedVehicleSlots.containsKey(vehicle.findVehicleId())) {
+            waiter.parkingSpace.completeExceptionally(new DoubleParkedException("Vehicle is already parked in this car park"));
+            return waiter;
+        }
+
+        ParkingSpaceCategory category = ParkingSpaceCategory.requiredBy(vehicle);
+        Queue<SpaceWaiter> waiters = spaceWaiters.get(category);
+        if (waiters.isEmpty()) {
+            int slot = claimSuitableAvailableSlot(category, 0);
+            if (slot != FreeParkingSpaceIndex.NO_FREE_SLOT) {
+                waiter.claimed.set(true);
+                if (occupyParkingSpace(slot, vehicle)) {
+                    ParkingEventLog.parked(vehicle, bayStore.getDesignation(slot));
+                    waiter.parkingSpace.complete(bayStore.getParkingSpace(slot));
+                } else {
+                    returnFreeSlot(slot);
+                    waiter.parkingSpace.completeExceptionally(new DoubleParkedException("Vehicle is already parked in this car park"));
+                }
+                return waiter;
+            }
+        }
 
-        // Find all occupied parking spaces and map to (occupying) Vehicle.
-        List<Vehicle> parkedVehicles = parkingSpaces.stream()
-                .map(ParkingSpace::getOccupyingVehicle)
-                .filter(occupyingVehicle -> occupyingVehicle != null)
-                .collect(Collectors.toList());
+        ParkingEventLog.waitingForSpace(vehicle);
+        waiters.add(waiter);
+        // A vehicle that gives up by cancelling leaves the queue straight away (vehicles handed a space are already out).
+        waiter.parkingSpace.whenComplete((parkingSpace, failure) -> {
+            if (waiter.parkingSpace.isCancelled()) {
+                waiters.remove(waiter);
+            }
+        });
+        // A space may have been freed after the check above but before this vehicle joined the queue - don't miss it.
+        handOverFreeSlotsToWaiters(category);
+        return waiter;
+    }
+
+    // Hands free slots of the category to waiting vehicles, until there are no more free slots or waiting vehicles.
+    private void handOverFreeSlotsToWaiters(ParkingSpaceCategory category) {
+        Queue<SpaceWaiter> waiters = spaceWaiters.get(category);
+        while (!waiters.isEmpty()) {
+            int slot = claimSuitableAvailableSlot(category, 0);
+            if (slot == FreeParkingSpaceIndex.NO_FREE_SLOT) {
+                return;
+            }
+            if (!handOverToWaiter(slot, category)) {
+                // The waiting vehicles had all given up - the slot goes back in the pool.
+                levelPools[bayStore.getLevel(slot)].addFreeSlot(category, slot);
+            }
+        }
+    }
+
+    // Parks the longest waiting vehicle (that hasn't given up) in a claimed slot, returning false if there are none.
+    private boolean handOverToWaiter(int slot, ParkingSpaceCategory category) {
+        Queue<SpaceWaiter> waiters = spaceWaiters.get(category);
+        SpaceWaiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (!waiter.claimed.compareAndSet(false, true) || waiter.parkingSpace.isDone()) {
+                // Gave up waiting (timed out or cancelled).
+                continue;
+            }
+            // The arrival is only logged once the waiter has taken the space - it may yet be taken back out.
+            long arrivalEpochMillis = timeSource.currentEpochMillis();
+            if (!occupyParkingSpace(slot, waiter.vehicle, arrivalEpochMillis)) {
+                waiter.parkingSpace.completeExceptionally(new DoubleParkedException("Vehicle is already parked in this car park"));
+                continue;
+            }
+            if (waiter.parkingSpace.complete(bayStore.getParkingSpace(slot))) {
+                occupancySnapshotService.recordArrival(bayStore.getDesignation(slot), waiter.vehicle, arrivalEpochMillis);
+                ParkingEventLog.parked(waiter.vehicle, bayStore.getDesignation(slot));
+                return true;
+            }
+            // Cancelled in the meantime - take the vehicle back out of the space and offer it to the next in the queue.
+            vacateParkingSpace(slot, waiter.vehicle);
+        }
+        return false;
+    }
+
+    // Returns a claimed but unoccupied slot to its level's pool, first offering it to any vehicle waiting for one.
+    private void returnFreeSlot(int slot) {
+        ParkingSpaceCategory category = bayStore.getCategory(slot);
+        levelPools[bayStore.getLevel(slot)].addFreeSlot(category, slot);
+        handOverFreeSlotsToWaiters(category);
+    }
+
+    private static ParkingSpace handedOverParkingSpace(SpaceWaiter waiter) throws DoubleParkedException {
+        try {
+            // The space is handed over (or the vehicle found to be double parked) without blocking, so this is quick.
+            return waiter.parkingSpace.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DoubleParkedException doubleParkedException) {
+                throw doubleParkedException;
+            }
+            throw e;
+        }
+    }
 
-        // Shuffle the parked vehicles and return the first.
-        if (!parkedVehicles.isEmpty()) {
-            Collections.shuffle(parkedVehicles);
-            randomVehicle = parkedVehicles.get(0);
+    /* Frees up the vehicle's space for a new vehicle to use and calculates the parking cost of the visit, returning the
+     * visit's audit for the caller to record (or null if the vehicle is not parked). */
+    private ParkingAudit endVisit(Vehicle vehicle, long leftEpochMillis) {
+        // Looked up without giving the VRM an id, so vehicles that were never parked don't grow the VRM table.
+        long vehicleId = vehicle.findVehicleId();
+        int slot = parkedVehicleSlots.get(vehicleId);
+
+        // Only one thread can clear a given visit, so a vehicle is never charged or audited twice.
+        ParkingSpace.Occupancy endedOccupancy = slot == ParkedVehicleIndex.NO_SLOT ? null : clearParkingSpace(slot, vehicle);
+        if (endedOccupancy == null) {
+            ParkingEventLog.leaveRejected(vehicle);
+            return null;
         }
 
-        return randomVehicle;
+        // Vehicle has been found in the car park - calculate the parking cost with the current tariff. Billing works on
+        // epoch milliseconds and whole pence, so the charge itself allocates nothing.
+        long arrivedEpochMillis = endedOccupancy.arrivalEpochMillis();
+        long parkingCostPence = paymentService.calculateParkingCostPence(vehicle.getVehicleType(), arrivedEpochMillis,
+                leftEpochMillis);
+        // Counted here, where the visit is charged, rather than wherever a price is worked out (e.g. quoting a stay).
+        carParkMetrics.recordCharge(parkingCostPence);
+        int designation = bayStore.getDesignation(slot);
+
+        ParkingEventLog.left(vehicle, designation, leftEpochMillis - arrivedEpochMillis, parkingCostPence);
+        return new ParkingAudit(designation, vehicleId, EpochMillis.toLocalDateTime(arrivedEpochMillis),
+                EpochMillis.toLocalDateTime(leftEpochMillis), parkingCostPence);
     }
 
-    private Optional<ParkingSpace> findParkedVehiclesSpace(Vehicle vehicle) {
-        return parkingSpaces.stream()
-                .filter(parkingSpace -> parkingSpace.getOccupyingVehicle() != null
-                        && parkingSpace.getOccupyingVehicle().equals(vehicle))
-                .findAny();
+    // Occupies a claimed slot and logs the arrival, or returns false if the vehicle is already parked (the caller keeps the slot).
+    private boolean occupyParkingSpace(int slot, Vehicle vehicle) {
+        long arrivalEpochMillis = timeSource.currentEpochMillis();
+        if (!occupyParkingSpace(slot, vehicle, arrivalEpochMillis)) {
+            return false;
+        }
+        // Logged once the space is occupied, so an arrival logged before a snapshot starts is always in the snapshot.
+        occupancySnapshotService.recordArrival(bayStore.getDesignation(slot), vehicle, arrivalEpochMillis);
+        return true;
     }
 
-    private Optional<ParkingSpace> findSuitableAvailableParkingSpace(Vehicle vehicle) {
-        Stream<ParkingSpace> parkingSpaceStream = parkingSpaces.stream()
-                .filter(parkingSpace -> parkingSpace.getOccupyingVehicle() == null);
+    // Occupies a claimed slot without logging the arrival, returning false if the vehicle is already parked.
+    private boolean occupyParkingSpace(int slot, Vehicle vehicle, long arrivalEpochMillis) {
+        ParkingLevelPool levelPool = levelPools[bayStore.getLevel(slot)];
 
-        if (vehicle.getVehicleType() == VehicleType.EV) {
-            parkingSpaceStream = parkingSpaceStream.filter(ParkingSpace::isEvChargingPoint);
-        } else {
-            parkingSpaceStream = parkingSpaceStream.filter(parkingSpace -> !parkingSpace.isEvChargingPoint());
+        // Registering the vehicle first makes the double park check atomic across threads parking the same vehicle.
+        if (parkedVehicleSlots.putIfAbsent(vehicle.getVehicleId(), slot) != ParkedVehicleIndex.NO_SLOT) {
+            return false;
         }
+        if (!bayStore.tryOccupy(slot, vehicle, arrivalEpochMillis)) {
+            throw new IllegalStateException("Parking space " + bayStore.getDesignation(slot) + " was claimed but is already occupied");
+        }
+        levelPool.recordOccupied(bayStore.getCategory(slot));
+        occupiedSlotSampler.add(slot);
+        availabilityModel.recordOccupied(slot);
+        carParkMetrics.recordParked();
+        return true;
+    }
 
-        return parkingSpaceStream.findFirst();
+    // Clears the vehicle from the slot, returning the ended occupancy (or null if the vehicle was not occupying the slot).
+    private ParkingSpace.Occupancy clearParkingSpace(int slot, Vehicle vehicle) {
+        ParkingSpace.Occupancy endedOccupancy = bayStore.tryClear(slot, vehicle);
+        if (endedOccupancy != null) {
+            parkedVehicleSlots.remove(vehicle.getVehicleId(), slot);
+            occupiedSlotSampler.remove(slot);
+            levelPools[bayStore.getLevel(slot)].recordVacated(bayStore.getCategory(slot));
+            availabilityModel.recordVacated(slot);
+            carParkMetrics.recordLeft();
+            // Hand the space straight to the longest waiting vehicle that needs one, otherwise it goes back in the pool.
+            if (!handOverToWaiter(slot, bayStore.getCategory(slot))) {
+                returnFreeSlot(slot);
+            }
+        }
+        return endedOccupancy;
     }
 
-    private void occupyParkingSpace(ParkingSpace parkingSpace, Vehicle vehicle) {
-        parkingSpace.setArrival(LocalDateTime.now());
-        parkingSpace.setOccupyingVehicle(vehicle);
+    // Takes a vehicle back out of a space it has just been handed, leaving the caller holding the slot.
+    private void vacateParkingSpace(int slot, Vehicle vehicle) {
+        bayStore.tryClear(slot, vehicle);
+        parkedVehicleSlots.remove(vehicle.getVehicleId(), slot);
+        occupiedSlotSampler.remove(slot);
+        levelPools[bayStore.getLevel(slot)].recordVacated(bayStore.getCategory(slot));
+        availabilityModel.recordVacated(slot);
+        // Counted as parked when it was occupied, so counted out again to keep the occupancy metrics balanced.
+        carParkMetrics.recordLeft();
     }
 
-    private void clearParkingSpace(ParkingSpace parkingSpace) {
-        parkingSpace.setArrival(null);
-        parkingSpace.setOccupyingVehicle(null);
+    /* A vehicle waiting for a space. The waiter is claimed exactly once: either by the thread handing it a space, or by
+     * the vehicle giving up waiting - so a vehicle can never be parked after it has given up. */
+    private static final class SpaceWaiter {
+
+        private final Vehicle vehicle;
+
+        private final CompletableFuture<ParkingSpace> parkingSpace = new CompletableFuture<>();
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private SpaceWaiter(Vehicle vehicle) {
+            this.vehicle = vehicle;
+        }
     }
-}
\ No newline at end of file
+}
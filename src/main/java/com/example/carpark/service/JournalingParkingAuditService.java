@@ -0,0 +1,163 @@
+package com.example.carpark.service;
+
+import com.example.carpark.audit.AuditJournal;
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.audit.AuditRollups;
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.util.LongHashSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A ParkingAuditService that persists every parking visit to an AuditJournal on the local filesystem, so the audit
+ * trail (and the day's takings) survive a restart.
+ * <p>
+ * The audits themselves are only kept in the journal, not on the heap, so memory doesn't grow with the number of
+ * visits. ROLLUP mode queries are answered from the rollups (which are rebuilt from the journal on startup, and grow
+ * with the number of minutes of history rather than visits). The full audit trail, date range queries and EXACT mode
+ * queries are answered by reading the journal segments - a date range query only reads the segments holding visits
+ * that left in the range, so takes time in proportion to the visits around the range rather than the whole trail.
+ */
+@Service
+@Qualifier(ParkingAuditService.AUDIT_STORE)
+@ConditionalOnProperty(name = "carPark.audit.journal.enabled", havingValue = "true")
+public class JournalingParkingAuditService implements ParkingAuditService {
+
+    private final AuditRollups auditRollups = new AuditRollups();
+
+    @Value("${carPark.audit.journal.directory}")
+    private Path directory;
+
+    @Value("${carPark.audit.journal.recordsPerSegment}")
+    private int recordsPerSegment;
+
+    @Value("${carPark.audit.journal.syncOnWrite}")
+    private boolean syncOnWrite;
+
+    private AuditJournal auditJournal;
+
+    @PostConstruct
+    void openJournal() throws IOException {
+        auditJournal = AuditJournal.open(directory, recordsPerSegment, syncOnWrite, auditRollups::record);
+    }
+
+    @PreDestroy
+    void closeJournal() {
+        auditJournal.close();
+    }
+
+    @Override
+    public void recordParkingVisit(int parkingSpaceDesignation, String vehicleVrm, LocalDateTime arrived,
+                                   LocalDateTime left, double parkingCost) {
+        recordParkingVisit(new ParkingAudit(parkingSpaceDesignation, vehicleVrm, arrived, left, parkingCost));
+    }
+
+    @Override
+    public void recordParkingVisit(ParkingAudit parkingAudit) {
+        auditJournal.append(parkingAudit);
+        auditRollups.record(parkingAudit);
+    }
+
+    @Override
+    public void recordParkingVisits(List<ParkingAudit> parkingAudits) {
+        auditJournal.appendAll(parkingAudits);
+        for (ParkingAudit parkingAudit : parkingAudits) {
+            auditRollups.record(parkingAudit);
+        }
+    }
+
+    @Override
+    public List<ParkingAudit> getAllParkingAudits() {
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        auditJournal.forEach(parkingAudits::add);
+        return parkingAudits;
+    }
+
+    @Override
+    public List<ParkingAudit> getParkingAuditsForDateRange(LocalDateTime start, LocalDateTime end) {
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        forEachInRange(start, end, parkingAudits::add);
+        // The journal is in the order visits ended - a stable sort keeps that order for vehicles that arrived together.
+        parkingAudits.sort(Comparator.comparing(ParkingAudit::getArrived));
+        return parkingAudits;
+    }
+
+    @Override
+    public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end) {
+        // Charges are totalled in whole pence, so summing many visits doesn't accumulate floating point error.
+        LongAdder totalPenceCollected = new LongAdder();
+        forEachInRange(start, end, parkingAudit -> totalPenceCollected.add(parkingAudit.getParkingChargePence()));
+        return totalPenceCollected.sum() / 100.0;
+    }
+
+    @Override
+    public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return auditRollups.getRevenuePenceForRange(start, end) / 100.0;
+        }
+        LongAdder totalPenceCollected = new LongAdder();
+        forEachLeftInMinutes(start, end, parkingAudit -> totalPenceCollected.add(parkingAudit.getParkingChargePence()));
+        return totalPenceCollected.sum() / 100.0;
+    }
+
+    @Override
+    public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end) {
+        LongHashSet distinctVehicleIds = new LongHashSet();
+        forEachInRange(start, end, parkingAudit -> distinctVehicleIds.add(parkingAudit.getVehicleId()));
+        return distinctVehicleIds.size();
+    }
+
+    @Override
+    public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return (int) auditRollups.estimateDistinctVehiclesForRange(start, end);
+        }
+        LongHashSet distinctVehicleIds = new LongHashSet();
+        forEachLeftInMinutes(start, end, parkingAudit -> distinctVehicleIds.add(parkingAudit.getVehicleId()));
+        return distinctVehicleIds.size();
+    }
+
+    @Override
+    public long getNumberOfVisitsForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return auditRollups.getVisitsForRange(start, end);
+        }
+        LongAdder numVisits = new LongAdder();
+        forEachLeftInMinutes(start, end, parkingAudit -> numVisits.increment());
+        return numVisits.sum();
+    }
+
+    // Passes every journalled visit that left in the whole minutes the range starts and ends in - as the rollups count.
+    private void forEachLeftInMinutes(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        LocalDateTime startOfMinute = AuditRollups.startOfMinute(start);
+        LocalDateTime endOfMinute = AuditRollups.endOfMinute(end);
+        if (!endOfMinute.isBefore(startOfMinute)) {
+            auditJournal.forEachLeftBetween(startOfMinute, endOfMinute, consumer);
+        }
+    }
+
+    // Passes every journalled visit where the vehicle arrived and left between the start and end (inclusive).
+    private void forEachInRange(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        if (end.isBefore(start)) {
+            return;
+        }
+        auditJournal.forEachLeftBetween(start, end, parkingAudit -> {
+            if (!parkingAudit.getArrived().isBefore(start)) {
+                consumer.accept(parkingAudit);
+            }
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.carpark.service;
+
+import com.example.carpark.bay.BayStore;
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.snapshot.ArrivalLog;
+import com.example.carpark.snapshot.OccupancySnapshot;
+import com.example.carpark.time.EpochMillis;
+import com.example.carpark.time.TimeSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically snapshots which vehicles occupy which parking spaces to a file, and restores the last snapshot when the
+ * car park is initialised, so vehicles parked before a restart can still be found (and billed) when they leave.
+ * <p>
+ * Vehicles that arrive between snapshots are written to an arrival log (see ArrivalLog), which is replayed on top of
+ * the last snapshot and truncated each time a snapshot is taken - so the longer carPark.snapshot.intervalSeconds is,
+ * the more arrivals there are to replay. Visits that have ended since are replayed from the audit trail, so they are
+ * not restored.
+ */
+@Log4j2
+@Service
+public class OccupancySnapshotService {
+
+    private ParkingAuditService parkingAuditService;
+
+    private TimeSource timeSource;
+
+    @Value("${carPark.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${carPark.snapshot.file:occupancy.snapshot}")
+    private Path snapshotFile;
+
+    @Value("${carPark.snapshot.intervalSeconds:60}")
+    private long intervalSeconds;
+
+    private BayStore bayStore;
+
+    private ArrivalLog arrivalLog;
+
+    private ScheduledExecutorService snapshotScheduler;
+
+    @Autowired
+    public OccupancySnapshotService(ParkingAuditService parkingAuditService, TimeSource timeSource) {
+        this.parkingAuditService = parkingAuditService;
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * Restores the last snapshot (if there is one) and the arrivals logged since into the supplied bays, then starts
+     * logging arrivals and snapshotting the bays' occupancy periodically. Does nothing if snapshots are disabled.
+     * @param bayStore the (empty) bays of a newly initialised car park.
+     */
+    public void restoreAndSnapshotPeriodically(BayStore bayStore) {
+        if (!enabled) {
+            return;
+        }
+        this.bayStore = bayStore;
+
+        try {
+            OccupancySnapshot snapshot = Files.exists(snapshotFile) ? OccupancySnapshot.read(snapshotFile) : null;
+            // Arrivals since the snapshot come after its occupied spaces, so a space's latest visit is the last one seen.
+            List<OccupancySnapshot.OccupiedSpace> visits = new ArrayList<>();
+            if (snapshot != null) {
+                visits.addAll(snapshot.occupiedSpaces());
+            }
+            int numSnapshotted = visits.size();
+            arrivalLog = ArrivalLog.open(snapshotFile, visits::add);
+            restore(visits, numSnapshotted, snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(this::takeSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Logs a vehicle arriving, so it is restored even if it arrived after the last snapshot. Does nothing if snapshots
+     * are disabled. A vehicle that can't be logged stays parked, and is still restored once a snapshot includes it.
+     * @param designation the designation of the parking space the vehicle now occupies.
+     * @param vehicle the arriving vehicle.
+     * @param arrivalEpochMillis the vehicle's arrival, in milliseconds since the epoch (UTC).
+     */
+    public void recordArrival(int designation, Vehicle vehicle, long arrivalEpochMillis) {
+        if (arrivalLog == null) {
+            return;
+        }
+        try {
+            arrivalLog.append(designation, vehicle, arrivalEpochMillis);
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            log.error("Unable to log the arrival of " + vehicle.getVrm() + " in parking space " + designation, e);
+        }
+    }
+
+    // Snapshots the current occupancy to the snapshot file, without pausing parking or leaving.
+    void takeSnapshot() {
+        if (bayStore == null) {
+            // Snapshots are disabled, or the car park hasn't been initialised - there is nothing to snapshot.
+            return;
+        }
+        try {
+            // Arrivals logged before the rotation are parked before the snapshot reads the bays, so are in it.
+            int generation = arrivalLog.rotate();
+            OccupancySnapshot.of(bayStore, timeSource.now()).write(snapshotFile);
+            arrivalLog.deleteGenerationsBefore(generation);
+        } catch (IOException e) {
+            // Keep the previous snapshot (and the arrivals since it) and try again next time.
+            log.error("Unable to write occupancy snapshot to " + snapshotFile, e);
+        }
+    }
+
+    @PreDestroy
+    void stopSnapshotting() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                // A scheduled snapshot may still be writing the temporary file - the last one mustn't write it as well.
+                if (!snapshotScheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Scheduled occupancy snapshot still running - not taking a final snapshot");
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            takeSnapshot();
+            try {
+                arrivalLog.close();
+            } catch (IOException e) {
+                log.error("Unable to close the arrival log of " + snapshotFile, e);
+            }
+        }
+    }
+
+    private void restore(List<OccupancySnapshot.OccupiedSpace> visits, int numSnapshotted, OccupancySnapshot snapshot) {
+        long startNanos = System.nanoTime();
+        if (visits.isEmpty()) {
+            return;
+        }
+
+        // Replay the audit trail since the earliest visit - visits that have ended since must not be restored.
+        long earliestArrivalEpochMillis = Long.MAX_VALUE;
+        for (OccupancySnapshot.OccupiedSpace visit : visits) {
+            earliestArrivalEpochMillis = Math.min(earliestArrivalEpochMillis, visit.occupancy().arrivalEpochMillis());
+        }
+        // Visits are matched on their arrival to the millisecond (the precision arrivals are held to).
+        Set<Visit> endedVisits = new HashSet<>();
+        for (ParkingAudit parkingAudit : parkingAuditService.getParkingAuditsForDateRange(
+                EpochMillis.toLocalDateTime(earliestArrivalEpochMillis), LocalDateTime.MAX)) {
+            endedVisits.add(new Visit(parkingAudit.getVehicleId(), EpochMillis.of(parkingAudit.getArrived())));
+        }
+
+        /* A vehicle or space can turn up in more than one visit that hasn't ended (if the audit of the visit before it
+         * wasn't kept) - only its latest visit is restored. */
+        Map<Long, OccupancySnapshot.OccupiedSpace> latestVisitOfVehicle = new HashMap<>();
+        for (OccupancySnapshot.OccupiedSpace visit : visits) {
+            ParkingSpace.Occupancy occupancy = visit.occupancy();
+            if (!endedVisits.contains(new Visit(occupancy.vehicle().getVehicleId(), occupancy.arrivalEpochMillis()))) {
+                latestVisitOfVehicle.merge(occupancy.vehicle().getVehicleId(), visit, OccupancySnapshotService::later);
+            }
+        }
+        Map<Integer, OccupancySnapshot.OccupiedSpace> latestVisitOfSpace = new HashMap<>();
+        for (OccupancySnapshot.OccupiedSpace visit : latestVisitOfVehicle.values()) {
+            latestVisitOfSpace.merge(visit.designation(), visit, OccupancySnapshotService::later);
+        }
+
+        int numRestored = restoreVisits(latestVisitOfSpace.values());
+        log.info("Restored " + numRestored + " parked vehicle(s) from the occupancy snapshot" +
+                (snapshot == null ? "" : " taken at " + snapshot.takenAt()) + " and " + (visits.size() - numSnapshotted) +
+                " arrival(s) logged since, in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms");
+    }
+
+    private int restoreVisits(Collection<OccupancySnapshot.OccupiedSpace> visits) {
+        int numRestored = 0;
+        for (OccupancySnapshot.OccupiedSpace visit : visits) {
+            int slot = bayStore.slotOf(visit.designation());
+            if (slot < 0) {
+                log.warn("Parking space " + visit.designation() + " in the occupancy snapshot no longer exists");
+                continue;
+            }
+            bayStore.tryOccupy(slot, visit.occupancy().vehicle(), visit.occupancy().arrivalEpochMillis());
+            numRestored++;
+        }
+        return numRestored;
+    }
+
+    // The later of two visits, or the second if they arrived together (it was seen last).
+    private static OccupancySnapshot.OccupiedSpace later(OccupancySnapshot.OccupiedSpace visit,
+                                                         OccupancySnapshot.OccupiedSpace otherVisit) {
+        return visit.occupancy().arrivalEpochMillis() > otherVisit.occupancy().arrivalEpochMillis() ? visit : otherVisit;
+    }
+
+    // A visit is identified by the vehicle and its arrival.
+    private record Visit(long vehicleId, long arrivalEpochMillis) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.carpark.service;
 
+import com.example.carpark.audit.AuditQueryMode;
 import com.example.carpark.model.ParkingAudit;
 
 import java.time.LocalDateTime;
@@ -7,6 +8,12 @@ import java.util.List;
 
 public interface ParkingAuditService {
 
+    /**
+     * Qualifies the ParkingAuditService that stores the audit trail, for a ParkingAuditService (such as
+     * AsyncParkingAuditService) that sits in front of it.
+     */
+    String AUDIT_STORE = "auditStore";
+
     /**
      * Records a parking visit (vehicle successfully parked then subsequently left) in the car park audit trail.
      * @param parkingSpaceDesignation the designation of the parking space used during the visit.
@@ -24,6 +31,13 @@ public interface ParkingAuditService {
      */
     void recordParkingVisit(ParkingAudit parkingAudit);
 
+    /**
+     * Records a batch of parking visits (e.g. a group of vehicles leaving together) in the car park audit trail, in one
+     * go rather than one visit at a time.
+     * @param parkingAudits the parking audit objects to be added to the car park audit trail.
+     */
+    void recordParkingVisits(List<ParkingAudit> parkingAudits);
+
     /**
      * Returns the entire car park audit trail.
      * @return a list of all parking audits contained in the car park audit trail.
@@ -34,7 +48,8 @@ public interface ParkingAuditService {
      * Returns all parking audits from the car park audit trail that fall between the start and end date times (inclusive).
      * @param start the date time to begin capturing car park audits from (inclusive).
      * @param end the date time to end capturing car park audits from (inclusive).
-     * @return a list of all parking audits where the vehicle entered then left the car park in the provided date range (inclusive).
+     * @return a list of all parking audits where the vehicle entered then left the car park in the provided date range
+     * (inclusive), in order of arrival.
      */
     List<ParkingAudit> getParkingAuditsForDateRange(LocalDateTime start, LocalDateTime end);
 
@@ -47,6 +62,16 @@ public interface ParkingAuditService {
      */
     double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end);
 
+    /**
+     * Returns the total parking charges collected from vehicles that left during the supplied date range, rounded out
+     * to whole minutes (see AuditQueryMode). Both modes return the same total.
+     * @param start the date time to begin capturing collected funds from (truncated to the minute).
+     * @param end the date time to end capturing collected funds from (the whole of this minute is included).
+     * @param mode EXACT to use the raw parking audits, or ROLLUP to use the rollups.
+     * @return the total amount (in pounds) collected from parked vehicles during the supplied date range.
+     */
+    double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode);
+
     /**
      * Returns the total number of vehicles that arrived and subsequently left between the supplied start and end date
      * times (inclusive).
@@ -55,4 +80,25 @@ public interface ParkingAuditService {
      * @return the total number of vehicles that entered then left the car park in the provided date range (inclusive).
      */
     int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Returns the number of distinct vehicles that left during the supplied date range, rounded out to whole minutes
+     * (see AuditQueryMode), either exactly or estimated from the pre-aggregated rollups.
+     * @param start the date time to begin capturing the number of parked vehicles from (truncated to the minute).
+     * @param end the date time to end capturing the number of parked vehicles from (the whole of this minute is
+     * included).
+     * @param mode EXACT to count from the raw parking audits, or ROLLUP to estimate from the rollups.
+     * @return the number of distinct vehicles that visited the car park in the provided date range.
+     */
+    int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode);
+
+    /**
+     * Returns the number of parking visits (including repeat visits by the same vehicle) that ended during the supplied
+     * date range, rounded out to whole minutes (see AuditQueryMode). Both modes return the same number.
+     * @param start the date time to begin counting visits from (truncated to the minute).
+     * @param end the date time to end counting visits from (the whole of this minute is included).
+     * @param mode EXACT to count from the raw parking audits, or ROLLUP to count from the rollups.
+     * @return the number of visits to the car park in the provided date range.
+     */
+    long getNumberOfVisitsForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode);
 }
@@ -1,65 +1,119 @@
 package com.example.carpark.service;
 
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.audit.AuditRollups;
+import com.example.carpark.audit.PartitionedAuditStore;
 import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Service
+@Qualifier(ParkingAuditService.AUDIT_STORE)
+@ConditionalOnProperty(name = "carPark.audit.journal.enabled", havingValue = "false", matchIfMissing = true)
 public class ParkingAuditServiceImpl implements ParkingAuditService {
-    private List<ParkingAudit> carParkAudits;
+
+    /* Audits are partitioned by arrival day and ordered by arrival, so date range queries only touch the overlapping
+     * part of the audit trail. The store is thread safe, as visits are recorded by every exit thread. */
+    private PartitionedAuditStore carParkAudits;
+
+    // Revenue, visit and distinct vehicle totals kept up to date as visits are recorded, for ROLLUP mode queries.
+    private AuditRollups auditRollups;
 
     public ParkingAuditServiceImpl() {
-        carParkAudits = new ArrayList<>();
+        carParkAudits = new PartitionedAuditStore();
+        auditRollups = new AuditRollups();
     }
 
     @Override
     public void recordParkingVisit(int parkingSpaceDesignation, String vehicleVrm, LocalDateTime arrived,
                                    LocalDateTime left, double parkingCost) {
-        carParkAudits.add(new ParkingAudit(parkingSpaceDesignation, vehicleVrm, arrived, left, parkingCost));
+        recordParkingVisit(new ParkingAudit(parkingSpaceDesignation, vehicleVrm, arrived, left, parkingCost));
     }
 
     @Override
     public void recordParkingVisit(ParkingAudit parkingAudit) {
         carParkAudits.add(parkingAudit);
+        auditRollups.record(parkingAudit);
+    }
+
+    @Override
+    public void recordParkingVisits(List<ParkingAudit> parkingAudits) {
+        carParkAudits.addAll(parkingAudits);
+        for (ParkingAudit parkingAudit : parkingAudits) {
+            auditRollups.record(parkingAudit);
+        }
     }
 
     @Override
     public List<ParkingAudit> getAllParkingAudits() {
-        return carParkAudits;
+        return carParkAudits.getAll();
     }
 
 
     @Override
     public List<ParkingAudit> getParkingAuditsForDateRange(LocalDateTime start, LocalDateTime end) {
-        return carParkAudits.stream()
-                .filter(parkingAudit ->
-                        (start.isEqual(parkingAudit.getArrived()) || start.isBefore(parkingAudit.getArrived())) &&
-                        (end.isEqual(parkingAudit.getLeft()) || end.isAfter(parkingAudit.getLeft())))
-                .collect(Collectors.toList());
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        carParkAudits.forEachInRange(start, end, parkingAudits::add);
+        return parkingAudits;
     }
 
     @Override
     public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end) {
-        return carParkAudits.stream()
-                .filter(parkingAudit ->
-                        (start.isEqual(parkingAudit.getArrived()) || start.isBefore(parkingAudit.getArrived())) &&
-                        (end.isEqual(parkingAudit.getLeft()) || end.isAfter(parkingAudit.getLeft())))
-                .mapToDouble(ParkingAudit::getParkingCharge)
-                .sum();
+        // Charges are totalled in whole pence, so summing many visits doesn't accumulate floating point error.
+        LongAdder totalPenceCollected = new LongAdder();
+        carParkAudits.forEachInRange(start, end,
+                parkingAudit -> totalPenceCollected.add(parkingAudit.getParkingChargePence()));
+        return totalPenceCollected.sum() / 100.0;
+    }
+
+    @Override
+    public double getTotalFundsCollectedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return auditRollups.getRevenuePenceForRange(start, end) / 100.0;
+        }
+        LongAdder totalPenceCollected = new LongAdder();
+        forEachLeftInMinutes(start, end, parkingAudit -> totalPenceCollected.add(parkingAudit.getParkingChargePence()));
+        return totalPenceCollected.sum() / 100.0;
     }
 
     @Override
     public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end) {
-        return (int) carParkAudits.stream()
-                .filter(parkingAudit ->
-                        (start.isEqual(parkingAudit.getArrived()) || start.isBefore(parkingAudit.getArrived())) &&
-                        (end.isEqual(parkingAudit.getLeft()) || end.isAfter(parkingAudit.getLeft())))
-                .map(ParkingAudit::getVehicleVrm)
-                .distinct()
-                .count();
+        // Vehicles are counted by id, so the count never touches a VRM string.
+        LongHashSet distinctVehicleIds = new LongHashSet();
+        carParkAudits.forEachInRange(start, end, parkingAudit -> distinctVehicleIds.add(parkingAudit.getVehicleId()));
+        return distinctVehicleIds.size();
+    }
+
+    @Override
+    public int getDistinctNumberOfVehiclesVisitedForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return (int) auditRollups.estimateDistinctVehiclesForRange(start, end);
+        }
+        LongHashSet distinctVehicleIds = new LongHashSet();
+        forEachLeftInMinutes(start, end, parkingAudit -> distinctVehicleIds.add(parkingAudit.getVehicleId()));
+        return distinctVehicleIds.size();
+    }
+
+    @Override
+    public long getNumberOfVisitsForDateRange(LocalDateTime start, LocalDateTime end, AuditQueryMode mode) {
+        if (mode == AuditQueryMode.ROLLUP) {
+            return auditRollups.getVisitsForRange(start, end);
+        }
+        LongAdder numVisits = new LongAdder();
+        forEachLeftInMinutes(start, end, parkingAudit -> numVisits.increment());
+        return numVisits.sum();
+    }
+
+    // Passes every visit that left in the whole minutes the range starts and ends in - the visits the rollups count.
+    private void forEachLeftInMinutes(LocalDateTime start, LocalDateTime end, Consumer<ParkingAudit> consumer) {
+        carParkAudits.forEachLeftInRange(AuditRollups.startOfMinute(start), AuditRollups.endOfMinute(end), consumer);
     }
 }
@@ -1,5 +1,7 @@
 package com.example.carpark.service;
 
+import com.example.carpark.model.VehicleType;
+
 import java.time.LocalDateTime;
 
 public interface PaymentService {
@@ -12,6 +14,25 @@ public interface PaymentService {
      */
     double calculateParkingCost(LocalDateTime arrived, LocalDateTime left);
 
+    /**
+     * Calculates the parking cost (rounded up to the nearest hour) for a supplied parking duration. Works purely on
+     * primitives, so nothing is allocated when billing a vehicle on exit.
+     * @param parkingDurationSeconds the number of seconds spent in the car park (see calculateParkingDurationSecondsRounded).
+     * @return the parking charge amount (in pence).
+     */
+    long calculateParkingCostPence(long parkingDurationSeconds);
+
+    /**
+     * Calculates the parking cost for a stay with the configured tariff (time of day bands, caps, grace period and
+     * vehicle type surcharges/discounts). Without a tariff configured, this is the hourly rate rounded up to the hour.
+     * Works purely on primitives, so nothing is allocated when billing a vehicle on exit.
+     * @param vehicleType the type of vehicle that stayed.
+     * @param arrivedEpochMillis when the vehicle first occupied the parking space (epoch milliseconds).
+     * @param leftEpochMillis when the vehicle left the parking space (epoch milliseconds).
+     * @return the parking charge amount (in pence).
+     */
+    long calculateParkingCostPence(VehicleType vehicleType, long arrivedEpochMillis, long leftEpochMillis);
+
     /**
      * Returns the parking duration rounded to the nearest second for a supplied car park arrival and departure time.
      * @param arrived when the vehicle first occupied the parking space.
@@ -20,5 +41,14 @@ public interface PaymentService {
      */
     long calculateParkingDurationSecondsRounded(LocalDateTime arrived, LocalDateTime left);
 
+    /**
+     * Returns the parking duration rounded to the nearest second for a supplied car park arrival and departure time,
+     * without allocating.
+     * @param arrivedEpochMillis when the vehicle first occupied the parking space (epoch milliseconds).
+     * @param leftEpochMillis when the vehicle left the parking space (epoch milliseconds).
+     * @return the number of seconds spent in the car park (rounded to the nearest second, minimum of one second).
+     */
+    long calculateParkingDurationSecondsRounded(long arrivedEpochMillis, long leftEpochMillis);
+
     // TODO: Possible future extension: this service could be further extended to handle actual payment (cash/card/etc).
 }
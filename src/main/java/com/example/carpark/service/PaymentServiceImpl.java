@@ -1,35 +1,58 @@
 package com.example.carpark.service;
 
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.tariff.TariffEngine;
+import com.example.carpark.time.EpochMillis;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Service
 public class PaymentServiceImpl implements PaymentService {
 
+    private static final long SECONDS_PER_HOUR = 3600;
+
     @Value("${carPark.costPerHour}")
     private double costPerHour;
 
+    // Only present when a tariff is configured (carPark.tariff.enabled), otherwise the flat hourly rate is charged.
+    @Autowired(required = false)
+    private TariffEngine tariffEngine;
+
     @Override
     public double calculateParkingCost(LocalDateTime arrived, LocalDateTime left) {
-        int parkingDurationHours = calculateParkingDurationRoundedToNearestHour(arrived, left);
-        return parkingDurationHours * costPerHour;
+        return calculateParkingCostPence(calculateParkingDurationSecondsRounded(arrived, left)) / 100.0;
+    }
+
+    @Override
+    public long calculateParkingCostPence(long parkingDurationSeconds) {
+        // Charges are calculated in whole pence, so totalling them never drifts the way summing doubles of pounds can.
+        long parkingDurationHours = (parkingDurationSeconds + SECONDS_PER_HOUR - 1) / SECONDS_PER_HOUR;
+        return parkingDurationHours * Math.round(costPerHour * 100);
+    }
+
+    @Override
+    public long calculateParkingCostPence(VehicleType vehicleType, long arrivedEpochMillis, long leftEpochMillis) {
+        if (tariffEngine != null) {
+            return tariffEngine.priceStayPence(vehicleType, arrivedEpochMillis, leftEpochMillis);
+        }
+        return calculateParkingCostPence(calculateParkingDurationSecondsRounded(arrivedEpochMillis, leftEpochMillis));
     }
 
     @Override
     public long calculateParkingDurationSecondsRounded(LocalDateTime arrived, LocalDateTime left) {
-        long parkingDurationSeconds = Duration.between(arrived, left).getSeconds();
+        return calculateParkingDurationSecondsRounded(EpochMillis.of(arrived), EpochMillis.of(left));
+    }
+
+    @Override
+    public long calculateParkingDurationSecondsRounded(long arrivedEpochMillis, long leftEpochMillis) {
+        long parkingDurationSeconds = (leftEpochMillis - arrivedEpochMillis) / 1000;
         // Found during testing (on occasion) parking was less than one second - round this up.
         if (parkingDurationSeconds < 1) {
             return 1;
         }
         return parkingDurationSeconds;
     }
-
-    private int calculateParkingDurationRoundedToNearestHour(LocalDateTime arrived, LocalDateTime left) {
-        long parkingDurationSeconds = calculateParkingDurationSecondsRounded(arrived, left);
-        return (int) Math.ceil((double)parkingDurationSeconds/3600);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package com.example.carpark.simulation;
+
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.service.CarParkService;
+import com.example.carpark.time.EpochMillis;
+import com.example.carpark.time.TimeSource;
+import com.example.carpark.time.VirtualTimeSource;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * A discrete event simulation of vehicles arriving at and leaving the car park. Rather than sleeping between events, the
+ * virtual clock jumps straight to the next one, so the CarParkService is driven at full speed. Everything random is
+ * drawn from a single seeded generator, so the same configuration always gives the same result.
+ * Vehicles that can't be parked on arrival are turned away (there is no queue).
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "run.mode", havingValue = "simulation")
+public class CarParkSimulation {
+
+    private CarParkService carParkService;
+
+    private VirtualTimeSource virtualTimeSource;
+
+    @Value("${carPark.capacity}")
+    private int capacity;
+
+    @Value("${run.simulation.seed:42}")
+    private long seed;
+
+    @Value("${run.simulation.start:2023-04-01T00:00}")
+    private String start;
+
+    @Value("${run.simulation.numVisits:1000000}")
+    private int numVisits;
+
+    // Number of distinct vehicles visiting (each can only be parked once at a time, so must exceed the capacity).
+    @Value("${run.simulation.fleetSize:10000}")
+    private int fleetSize;
+
+    @Value("${run.simulation.evRatio:0.2}")
+    private double evRatio;
+
+    @Value("${run.simulation.motorbikeRatio:0.1}")
+    private double motorbikeRatio;
+
+    @Value("${run.simulation.arrival.distribution:exponential}")
+    private String arrivalDistribution;
+
+    @Value("${run.simulation.arrival.meanMinutes:0.1}")
+    private double arrivalMeanMinutes;
+
+    @Value("${run.simulation.dwell.distribution:lognormal}")
+    private String dwellDistribution;
+
+    @Value("${run.simulation.dwell.meanMinutes:120}")
+    private double dwellMeanMinutes;
+
+    @Value("${run.simulation.dwell.sigma:0.8}")
+    private double dwellSigma;
+
+    @Autowired
+    public CarParkSimulation(CarParkService carParkService, TimeSource timeSource) {
+        if (!(timeSource instanceof VirtualTimeSource)) {
+            throw new IllegalStateException("Simulation requires a virtual clock (carPark.clock: virtual)");
+        }
+        this.carParkService = carParkService;
+        this.virtualTimeSource = (VirtualTimeSource) timeSource;
+    }
+
+    /**
+     * Runs the simulation to completion: numVisits arrivals, and the departure of every vehicle that parked.
+     * @return the outcome of the simulation.
+     */
+    public SimulationReport run() {
+        if (fleetSize <= capacity) {
+            throw new IllegalStateException("Simulated fleet size (" + fleetSize + ") must exceed the car park capacity");
+        }
+        Distribution timeBetweenArrivals = Distribution.of(arrivalDistribution, arrivalMeanMinutes, 0);
+        Distribution dwellTime = Distribution.of(dwellDistribution, dwellMeanMinutes, dwellSigma);
+        SplittableRandom random = new SplittableRandom(seed);
+        Vehicle[] fleet = createFleet(random);
+        boolean[] parked = new boolean[fleet.length];
+
+        LocalDateTime startDateTime = LocalDateTime.parse(start);
+        long startMillis = EpochMillis.of(startDateTime);
+        virtualTimeSource.setTime(startDateTime);
+        long wallStartNanos = System.nanoTime();
+
+        PriorityQueue<SimulationEvent> events = new PriorityQueue<>();
+        long sequence = 0;
+        long arrivals = 0, numParked = 0, rejectedFull = 0, rejectedNoSuitableSpace = 0, departures = 0;
+        long revenuePence = 0;
+        int occupancy = 0, peakOccupancy = 0;
+        double occupancyMillis = 0;
+        long lastEventMillis = startMillis;
+
+        events.add(new SimulationEvent(startMillis + toMillis(timeBetweenArrivals.sample(random)), sequence++, true, -1));
+        SimulationEvent event;
+        while ((event = events.poll()) != null) {
+            occupancyMillis += (double) occupancy * (event.epochMillis() - lastEventMillis);
+            lastEventMillis = event.epochMillis();
+            virtualTimeSource.advanceTo(event.epochMillis());
+
+            if (event.arrival()) {
+                arrivals++;
+                if (arrivals < numVisits) {
+                    events.add(new SimulationEvent(event.epochMillis() + toMillis(timeBetweenArrivals.sample(random)),
+                            sequence++, true, -1));
+                }
+                int vehicleIndex = pickVehicleNotParked(random, parked);
+                // Rejections are routine when the car park is busy, so use the exception free API.
+                ParkingResult parkingResult = carParkService.tryParkVehicle(fleet[vehicleIndex], 0);
+                if (parkingResult == ParkingResult.Rejected.CAR_PARK_FULL) {
+                    rejectedFull++;
+                    continue;
+                } else if (parkingResult == ParkingResult.Rejected.NO_SUITABLE_SPACE) {
+                    rejectedNoSuitableSpace++;
+                    continue;
+                } else if (parkingResult == ParkingResult.Rejected.DOUBLE_PARKED) {
+                    throw new IllegalStateException("Simulated vehicle " + fleet[vehicleIndex].getVrm() + " is already parked");
+                }
+                parked[vehicleIndex] = true;
+                numParked++;
+                peakOccupancy = Math.max(peakOccupancy, ++occupancy);
+                events.add(new SimulationEvent(event.epochMillis() + toMillis(dwellTime.sample(random)), sequence++,
+                        false, vehicleIndex));
+            } else {
+                if (!(carParkService.tryLeaveCarPark(fleet[event.vehicleIndex()]) instanceof LeaveResult.Left left)) {
+                    throw new IllegalStateException("Simulated vehicle " + fleet[event.vehicleIndex()].getVrm() +
+                            " is not parked");
+                }
+                revenuePence += left.parkingCostPence();
+                parked[event.vehicleIndex()] = false;
+                departures++;
+                occupancy--;
+            }
+        }
+
+        long simulatedMillis = lastEventMillis - startMillis;
+        SimulationReport report = new SimulationReport(arrivals, numParked, rejectedFull, rejectedNoSuitableSpace,
+                departures, revenuePence, peakOccupancy, simulatedMillis == 0 ? 0 : occupancyMillis / simulatedMillis,
+                Duration.ofMillis(simulatedMillis), Duration.ofNanos(System.nanoTime() - wallStartNanos));
+        log.info(report.summary());
+        return report;
+    }
+
+    private Vehicle[] createFleet(SplittableRandom random) {
+        Vehicle[] fleet = new Vehicle[fleetSize];
+        for (int i = 0; i < fleetSize; i++) {
+            double vehicleTypeSample = random.nextDouble();
+            VehicleType vehicleType = vehicleTypeSample < evRatio ? VehicleType.EV
+                    : vehicleTypeSample < evRatio + motorbikeRatio ? VehicleType.MOTORBIKE : VehicleType.CAR;
+            fleet[i] = new Vehicle(registration(i), vehicleType);
+        }
+        return fleet;
+    }
+
+    // A random vehicle from the fleet that isn't already parked (there is always one, as the fleet exceeds capacity).
+    private static int pickVehicleNotParked(SplittableRandom random, boolean[] parked) {
+        int vehicleIndex = random.nextInt(parked.length);
+        while (parked[vehicleIndex]) {
+            vehicleIndex = (vehicleIndex + 1) % parked.length;
+        }
+        return vehicleIndex;
+    }
+
+    // A unique UK style registration (two letters, two digits, three letters) for each vehicle in the fleet.
+    private static String registration(int vehicleIndex) {
+        char[] registration = new char[8];
+        int remaining = vehicleIndex;
+        for (int i = 7; i >= 5; i--, remaining /= 26) {
+            registration[i] = (char) ('A' + remaining % 26);
+        }
+        registration[4] = ' ';
+        for (int i = 3; i >= 2; i--, remaining /= 10) {
+            registration[i] = (char) ('0' + remaining % 10);
+        }
+        for (int i = 1; i >= 0; i--, remaining /= 26) {
+            registration[i] = (char) ('A' + remaining % 26);
+        }
+        return new String(registration);
+    }
+
+    private static long toMillis(double minutes) {
+        return Math.max(1, Math.round(minutes * 60_000));
+    }
+}
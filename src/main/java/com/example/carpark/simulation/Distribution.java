@@ -0,0 +1,45 @@
+package com.example.carpark.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * A probability distribution of times (in minutes) between simulated events, e.g. between arrivals or for how long a
+ * vehicle stays. Sampled with the simulation's seeded random number generator, so a simulation is reproducible.
+ */
+public interface Distribution {
+
+    /**
+     * Draws a sample from the distribution.
+     * @param random the random number generator to draw with.
+     * @return the sample (in minutes, never negative).
+     */
+    double sample(SplittableRandom random);
+
+    /**
+     * Creates a distribution by name.
+     * @param type fixed, uniform (between zero and twice the mean), exponential or lognormal.
+     * @param mean the mean of the distribution (in minutes).
+     * @param sigma the standard deviation of the underlying normal distribution (lognormal only).
+     * @return the distribution.
+     * @throws IllegalArgumentException if the type is not known or the mean is not positive.
+     */
+    static Distribution of(String type, double mean, double sigma) {
+        if (mean <= 0) {
+            throw new IllegalArgumentException("Mean of a " + type + " distribution must be positive");
+        }
+        switch (type.toLowerCase()) {
+            case "fixed":
+                return random -> mean;
+            case "uniform":
+                return random -> random.nextDouble(2 * mean);
+            case "exponential":
+                return random -> -mean * Math.log(1 - random.nextDouble());
+            case "lognormal":
+                // Choose the location of the underlying normal so the lognormal has the requested mean.
+                double mu = Math.log(mean) - sigma * sigma / 2;
+                return random -> Math.exp(mu + sigma * random.nextGaussian());
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + type);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.carpark.simulation;
+
+/**
+ * A vehicle arriving at or leaving the car park at a point in simulated time. Events at the same time are ordered by
+ * when they were scheduled, so a simulation always plays out in the same order.
+ * @param epochMillis when the event happens (virtual epoch milliseconds).
+ * @param sequence the order the event was scheduled in.
+ * @param arrival true for an arrival, false for a departure.
+ * @param vehicleIndex the vehicle (index into the simulated fleet).
+ */
+record SimulationEvent(long epochMillis, long sequence, boolean arrival, int vehicleIndex)
+        implements Comparable<SimulationEvent> {
+
+    @Override
+    public int compareTo(SimulationEvent other) {
+        int byTime = Long.compare(epochMillis, other.epochMillis);
+        return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+    }
+}
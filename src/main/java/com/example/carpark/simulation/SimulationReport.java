@@ -0,0 +1,42 @@
+package com.example.carpark.simulation;
+
+import java.time.Duration;
+
+/**
+ * The outcome of a simulation run.
+ * @param arrivals the number of vehicles that arrived at the car park.
+ * @param parked the number of arriving vehicles that were allocated a space.
+ * @param rejectedFull the number of arriving vehicles turned away because the car park was full.
+ * @param rejectedNoSuitableSpace the number of arriving vehicles turned away because there was no suitable space.
+ * @param departures the number of vehicles that left the car park.
+ * @param revenuePence the total charged to departing vehicles (in pence).
+ * @param peakOccupancy the most vehicles parked at once.
+ * @param meanOccupancy the average number of vehicles parked over the simulated time.
+ * @param simulatedTime the time covered by the simulation.
+ * @param wallTime how long the simulation took to run.
+ */
+public record SimulationReport(long arrivals, long parked, long rejectedFull, long rejectedNoSuitableSpace,
+                               long departures, long revenuePence, int peakOccupancy, double meanOccupancy,
+                               Duration simulatedTime, Duration wallTime) {
+
+    /**
+     * Returns the number of arrivals and departures simulated per second of wall time.
+     * @return the simulation speed in events per second.
+     */
+    public double eventsPerSecond() {
+        return (arrivals + departures) / Math.max(wallTime.toNanos() / 1e9, 1e-9);
+    }
+
+    /**
+     * Returns a human readable summary of the simulation run.
+     * @return the summary.
+     */
+    public String summary() {
+        return String.format("Simulated %d arrivals over %s in %d ms (%.0f events/s): %d parked, %d turned away " +
+                        "(%d full, %d no suitable space), %d departed, revenue £%.2f, peak occupancy %d, " +
+                        "mean occupancy %.1f",
+                arrivals, simulatedTime, wallTime.toMillis(), eventsPerSecond(), parked,
+                rejectedFull + rejectedNoSuitableSpace, rejectedFull, rejectedNoSuitableSpace, departures,
+                revenuePence / 100.0, peakOccupancy, meanOccupancy);
+    }
+}
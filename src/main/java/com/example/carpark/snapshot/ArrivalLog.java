@@ -0,0 +1,245 @@
+package com.example.carpark.snapshot;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of the vehicles that have arrived since the last occupancy snapshot, so they can be restored
+ * along with it. Arrivals are written as fixed width, checksummed binary records (like the audit journal's), to a
+ * generation file alongside the snapshot file.
+ * <p>
+ * Before a snapshot is taken the log is rotated onto a new generation, and once the snapshot is safely written the
+ * older generations are deleted - every arrival in them is in the snapshot (a vehicle is logged after it occupies its
+ * space, so anything logged before the rotation is parked before the snapshot starts). If the snapshot can't be
+ * written, the older generations are kept and replayed along with the newer ones.
+ * <p>
+ * Records are written straight to the file (through the page cache) but not forced to disk, so a crash of the process
+ * loses nothing - a crash of the machine can lose the last few arrivals. A torn record at the tail of a generation is
+ * skipped when the log is replayed.
+ */
+@Log4j2
+public class ArrivalLog implements Closeable {
+
+    static final int RECORD_SIZE = 64;
+
+    static final int MAX_VRM_BYTES = 46;
+
+    private static final String GENERATION_SEPARATOR = ".arrivals-";
+
+    /* Record layout (all fields big endian):
+     *  0 - CRC32 of bytes 4 - 63
+     *  4 - parking space designation
+     *  8 - arrival epoch millis (UTC)
+     * 16 - vehicle type ordinal
+     * 17 - VRM length, 18 - 63 VRM (UTF-8, zero padded) */
+    private static final int DESIGNATION_OFFSET = 4;
+
+    private static final int ARRIVAL_OFFSET = 8;
+
+    private static final int VEHICLE_TYPE_OFFSET = 16;
+
+    private static final int VRM_LENGTH_OFFSET = 17;
+
+    private static final int VRM_OFFSET = 18;
+
+    // Each appending thread encodes its records into its own buffer.
+    private static final ThreadLocal<RecordEncoder> ENCODERS = ThreadLocal.withInitial(RecordEncoder::new);
+
+    private final Path snapshotFile;
+
+    // Appends share the read lock, so they only wait for a rotation (which takes the write lock to swap the channel).
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+
+    private int generation;
+
+    private ArrivalLog(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Opens the arrival log kept alongside the supplied snapshot file, replaying every arrival already logged, and
+     * starts a new generation to log further arrivals to.
+     * @param snapshotFile the occupancy snapshot file the arrivals follow on from.
+     * @param replayConsumer receives each arrival already in the log, in the order they were logged.
+     * @return the opened arrival log, ready to be appended to.
+     * @throws IOException if the log could not be read or created.
+     */
+    public static ArrivalLog open(Path snapshotFile, Consumer<OccupancySnapshot.OccupiedSpace> replayConsumer) throws IOException {
+        ArrivalLog arrivalLog = new ArrivalLog(snapshotFile);
+        List<Path> generationPaths = arrivalLog.generationPaths();
+        int numReplayed = 0;
+        for (Path generationPath : generationPaths) {
+            numReplayed += replay(generationPath, replayConsumer);
+        }
+        if (!generationPaths.isEmpty()) {
+            log.info("Replayed " + numReplayed + " arrival(s) from the arrival log of " + snapshotFile);
+        }
+        arrivalLog.generation = generationPaths.isEmpty() ? 0 : arrivalLog.generationOf(generationPaths.get(generationPaths.size() - 1)) + 1;
+        arrivalLog.channel = arrivalLog.openGeneration(arrivalLog.generation);
+        return arrivalLog;
+    }
+
+    /**
+     * Logs a vehicle arriving in a parking space. Call once the vehicle occupies the space.
+     * @param designation the designation of the occupied parking space.
+     * @param vehicle the arriving vehicle.
+     * @param arrivalEpochMillis the arrival, in milliseconds since the epoch (UTC).
+     * @throws UncheckedIOException if the arrival could not be written.
+     */
+    public void append(int designation, Vehicle vehicle, long arrivalEpochMillis) {
+        ByteBuffer record = ENCODERS.get().encode(designation, vehicle, arrivalEpochMillis);
+        lock.readLock().lock();
+        try {
+            // The channel appends each record whole, even when threads append at once.
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a new generation, so arrivals from now on are logged to it. Call just before taking a snapshot.
+     * @return the new generation, for deleteGenerationsBefore once the snapshot has been written.
+     * @throws IOException if the new generation could not be created.
+     */
+    public int rotate() throws IOException {
+        FileChannel oldChannel;
+        int newGeneration;
+        lock.writeLock().lock();
+        try {
+            newGeneration = generation + 1;
+            FileChannel newChannel = openGeneration(newGeneration);
+            oldChannel = channel;
+            channel = newChannel;
+            generation = newGeneration;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        oldChannel.close();
+        return newGeneration;
+    }
+
+    /**
+     * Deletes every generation older than the supplied one. Call once a snapshot taken after rotating onto that
+     * generation has been written.
+     * @param generation the generation returned by rotate.
+     * @throws IOException if a generation could not be deleted.
+     */
+    public void deleteGenerationsBefore(int generation) throws IOException {
+        for (Path generationPath : generationPaths()) {
+            if (generationOf(generationPath) < generation) {
+                Files.delete(generationPath);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private FileChannel openGeneration(int generation) throws IOException {
+        return FileChannel.open(generationPath(generation),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> generationPaths() throws IOException {
+        String prefix = snapshotFile.getFileName() + GENERATION_SEPARATOR;
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path generationPath(int generation) {
+        return snapshotFile.resolveSibling(String.format("%s%s%08d", snapshotFile.getFileName(), GENERATION_SEPARATOR, generation));
+    }
+
+    private int generationOf(Path generationPath) {
+        String fileName = generationPath.getFileName().toString();
+        return Integer.parseInt(fileName.substring(fileName.lastIndexOf(GENERATION_SEPARATOR) + GENERATION_SEPARATOR.length()));
+    }
+
+    private static int replay(Path generationPath, Consumer<OccupancySnapshot.OccupiedSpace> replayConsumer) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(generationPath));
+        VehicleType[] vehicleTypes = VehicleType.values();
+        CRC32 crc32 = new CRC32();
+        int numReplayed = 0;
+        for (int offset = 0; offset + RECORD_SIZE <= records.capacity(); offset += RECORD_SIZE) {
+            if (records.getInt(offset) != checksum(crc32, records, offset)) {
+                log.warn("Skipping torn arrival at the tail of " + generationPath);
+                break;
+            }
+            int vrmLength = records.get(offset + VRM_LENGTH_OFFSET);
+            Vehicle vehicle = new Vehicle(new String(records.array(), offset + VRM_OFFSET, vrmLength, StandardCharsets.UTF_8),
+                    vehicleTypes[records.get(offset + VEHICLE_TYPE_OFFSET)]);
+            replayConsumer.accept(new OccupancySnapshot.OccupiedSpace(records.getInt(offset + DESIGNATION_OFFSET),
+                    new ParkingSpace.Occupancy(vehicle, records.getLong(offset + ARRIVAL_OFFSET))));
+            numReplayed++;
+        }
+        return numReplayed;
+    }
+
+    private static int checksum(CRC32 crc32, ByteBuffer records, int offset) {
+        crc32.reset();
+        crc32.update(records.slice(offset + DESIGNATION_OFFSET, RECORD_SIZE - DESIGNATION_OFFSET));
+        return (int) crc32.getValue();
+    }
+
+    // A thread's record buffer and checksum, reused for every arrival the thread logs.
+    private static final class RecordEncoder {
+
+        private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+        private final CRC32 crc32 = new CRC32();
+
+        private ByteBuffer encode(int designation, Vehicle vehicle, long arrivalEpochMillis) {
+            byte[] vrm = vehicle.getVrm().getBytes(StandardCharsets.UTF_8);
+            if (vrm.length > MAX_VRM_BYTES) {
+                throw new IllegalArgumentException("VRM " + vehicle.getVrm() + " is too long to be logged");
+            }
+            record.clear();
+            record.putInt(DESIGNATION_OFFSET, designation);
+            record.putLong(ARRIVAL_OFFSET, arrivalEpochMillis);
+            record.put(VEHICLE_TYPE_OFFSET, (byte) vehicle.getVehicleType().ordinal());
+            record.put(VRM_LENGTH_OFFSET, (byte) vrm.length);
+            record.put(VRM_OFFSET, vrm);
+            for (int offset = VRM_OFFSET + vrm.length; offset < RECORD_SIZE; offset++) {
+                record.put(offset, (byte) 0);
+            }
+            record.putInt(0, checksum(crc32, record, 0));
+            return record;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.carpark.snapshot;
+
+import com.example.carpark.bay.BayStore;
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.time.EpochMillis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A point in time copy of which vehicles occupy which parking spaces (and when they arrived), along with a compact
+ * binary file format for saving and loading it.
+ * @param takenAt the date time the snapshot was taken.
+ * @param occupiedSpaces the designation and occupancy of every occupied parking space when the snapshot was taken.
+ */
+public record OccupancySnapshot(LocalDateTime takenAt, List<OccupiedSpace> occupiedSpaces) {
+
+    private static final int MAGIC = 0x43505331;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The occupancy of a single parking space.
+     * @param designation the designation of the occupied parking space.
+     * @param occupancy the occupying vehicle and its arrival.
+     */
+    public record OccupiedSpace(int designation, ParkingSpace.Occupancy occupancy) {
+    }
+
+    /**
+     * Takes a snapshot of the supplied bays. Each bay's occupancy is read atomically (as the vehicle and arrival of a
+     * single visit), so the bays are never locked and parking/leaving carry on while the snapshot is taken.
+     * @param bayStore the bays of the car park.
+     * @param takenAt the date time the snapshot is being taken.
+     * @return the snapshot of all occupied parking spaces.
+     */
+    public static OccupancySnapshot of(BayStore bayStore, LocalDateTime takenAt) {
+        List<OccupiedSpace> occupiedSpaces = new ArrayList<>();
+        for (int slot = 0; slot < bayStore.size(); slot++) {
+            ParkingSpace.Occupancy occupancy = bayStore.getOccupancy(slot);
+            if (occupancy != null) {
+                occupiedSpaces.add(new OccupiedSpace(bayStore.getDesignation(slot), occupancy));
+            }
+        }
+        return new OccupancySnapshot(takenAt, occupiedSpaces);
+    }
+
+    /**
+     * Writes the snapshot to a file. The snapshot is written alongside, forced to disk, then moved over the file, so a
+     * crash while writing never leaves a half written (or empty) snapshot behind.
+     * @param file the file to write the snapshot to.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void write(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeDateTime(out, takenAt);
+            out.writeInt(occupiedSpaces.size());
+            for (OccupiedSpace occupiedSpace : occupiedSpaces) {
+                Vehicle vehicle = occupiedSpace.occupancy().vehicle();
+                byte[] vrm = vehicle.getVrm().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(occupiedSpace.designation());
+                out.writeByte(vehicle.getVehicleType().ordinal());
+                writeDateTime(out, occupiedSpace.occupancy().arrival());
+                out.writeShort(vrm.length);
+                out.write(vrm);
+            }
+            out.flush();
+            // On disk before it replaces the last snapshot - the rename alone could reach the disk first.
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot previously written to a file.
+     * @param file the file to read the snapshot from.
+     * @return the snapshot held in the file.
+     * @throws IOException if the snapshot could not be read or is not a valid snapshot file.
+     */
+    public static OccupancySnapshot read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not an occupancy snapshot");
+            }
+            LocalDateTime takenAt = readDateTime(in);
+            int numOccupiedSpaces = in.readInt();
+            List<OccupiedSpace> occupiedSpaces = new ArrayList<>(numOccupiedSpaces);
+            VehicleType[] vehicleTypes = VehicleType.values();
+            for (int i = 0; i < numOccupiedSpaces; i++) {
+                int designation = in.readInt();
+                VehicleType vehicleType = vehicleTypes[in.readUnsignedByte()];
+                LocalDateTime arrival = readDateTime(in);
+                byte[] vrm = new byte[in.readUnsignedShort()];
+                in.readFully(vrm);
+                Vehicle vehicle = new Vehicle(new String(vrm, StandardCharsets.UTF_8), vehicleType);
+                occupiedSpaces.add(new OccupiedSpace(designation, new ParkingSpace.Occupancy(vehicle, EpochMillis.of(arrival))));
+            }
+            return new OccupancySnapshot(takenAt, occupiedSpaces);
+        }
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
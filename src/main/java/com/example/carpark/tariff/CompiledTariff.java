@@ -0,0 +1,181 @@
+package com.example.carpark.tariff;
+
+import com.example.carpark.model.VehicleType;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A TariffDefinition compiled into lookup tables, so pricing a stay is a walk over the band boundaries it crosses
+ * rather than an interpretation of the tariff rules. Immutable, so it can be shared between any number of threads and
+ * swapped out while stays are being priced with it.
+ * Note: times are epoch milliseconds of local date times taken as if they were UTC (as elsewhere in the car park), so
+ * minute of day is simply the epoch minute modulo the minutes in a day.
+ */
+public final class CompiledTariff {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    private final long gracePeriodMillis;
+
+    private final long billingUnitMillis;
+
+    private final int billingUnitMinutes;
+
+    // Band in force at each minute of the day.
+    private final int[] bandAtMinute = new int[MINUTES_PER_DAY];
+
+    /* Minutes from each minute of the day until a different band comes into force (wrapping over midnight). With a
+     * single band this never happens, so it is the minutes until midnight instead - each day is a separate stretch of
+     * the band, so its cap applies per day rather than once for the whole stay. */
+    private final int[] minutesUntilBandChange = new int[MINUTES_PER_DAY];
+
+    private final long[] bandPencePerHour;
+
+    private final long[] bandCapPence;
+
+    // Indexed by VehicleType ordinal.
+    private final long[] surchargePencePerHour = new long[VehicleType.values().length];
+
+    private final int[] discountPercent = new int[VehicleType.values().length];
+
+    private CompiledTariff(TariffDefinition tariffDefinition) {
+        if (tariffDefinition.getGracePeriodMinutes() < 0) {
+            throw new IllegalArgumentException("Tariff grace period cannot be negative");
+        }
+        if (tariffDefinition.getBillingUnitMinutes() < 1) {
+            throw new IllegalArgumentException("Tariff billing unit must be at least one minute");
+        }
+        this.gracePeriodMillis = tariffDefinition.getGracePeriodMinutes() * MILLIS_PER_MINUTE;
+        this.billingUnitMinutes = tariffDefinition.getBillingUnitMinutes();
+        this.billingUnitMillis = billingUnitMinutes * MILLIS_PER_MINUTE;
+
+        List<TariffDefinition.Band> bands = new ArrayList<>(tariffDefinition.getBands());
+        if (bands.isEmpty()) {
+            throw new IllegalArgumentException("Tariff must have at least one band");
+        }
+        int[] bandStartMinute = new int[bands.size()];
+        bands.sort(Comparator.comparingInt(CompiledTariff::startMinuteOfDay));
+        this.bandPencePerHour = new long[bands.size()];
+        this.bandCapPence = new long[bands.size()];
+        for (int band = 0; band < bands.size(); band++) {
+            TariffDefinition.Band definition = bands.get(band);
+            if (definition.getRatePerHour() < 0 || (definition.getCap() != null && definition.getCap() < 0)) {
+                throw new IllegalArgumentException("Tariff band starting " + definition.getStart() + " has a negative charge");
+            }
+            bandStartMinute[band] = startMinuteOfDay(definition);
+            if (band > 0 && bandStartMinute[band] == bandStartMinute[band - 1]) {
+                throw new IllegalArgumentException("Tariff has more than one band starting " + definition.getStart());
+            }
+            bandPencePerHour[band] = toPence(definition.getRatePerHour());
+            bandCapPence[band] = definition.getCap() == null ? Long.MAX_VALUE : toPence(definition.getCap());
+        }
+        compileBandTables(bandStartMinute);
+
+        tariffDefinition.getSurchargePerHour().forEach((vehicleType, surcharge) -> {
+            if (surcharge < 0) {
+                throw new IllegalArgumentException("Tariff surcharge for " + vehicleType + " cannot be negative");
+            }
+            surchargePencePerHour[vehicleType.ordinal()] = toPence(surcharge);
+        });
+        tariffDefinition.getDiscountPercent().forEach((vehicleType, discount) -> {
+            if (discount < 0 || discount > 100) {
+                throw new IllegalArgumentException("Tariff discount for " + vehicleType + " must be between 0 and 100%");
+            }
+            discountPercent[vehicleType.ordinal()] = discount;
+        });
+    }
+
+    /**
+     * Compiles a tariff definition into lookup tables.
+     * @param tariffDefinition the tariff to compile.
+     * @return the compiled tariff.
+     * @throws IllegalArgumentException if the tariff definition is not valid.
+     */
+    public static CompiledTariff compile(TariffDefinition tariffDefinition) {
+        return new CompiledTariff(tariffDefinition);
+    }
+
+    /**
+     * Prices a stay in the car park. Allocates nothing, so it can be used on every exit.
+     * @param vehicleType the type of vehicle that stayed.
+     * @param arrivedEpochMillis when the vehicle first occupied the parking space (epoch milliseconds).
+     * @param leftEpochMillis when the vehicle left the parking space (epoch milliseconds).
+     * @return the parking charge amount (in pence).
+     */
+    public long priceStayPence(VehicleType vehicleType, long arrivedEpochMillis, long leftEpochMillis) {
+        long stayMillis = leftEpochMillis - arrivedEpochMillis;
+        if (stayMillis <= gracePeriodMillis) {
+            return 0;
+        }
+
+        // Round the stay up to whole billing units, then charge each stretch of each band the billed time crosses.
+        long billedMinutes = ((stayMillis + billingUnitMillis - 1) / billingUnitMillis) * billingUnitMinutes;
+        long minute = Math.floorDiv(arrivedEpochMillis, MILLIS_PER_MINUTE);
+        long minutesRemaining = billedMinutes;
+        long charge = 0;
+        while (minutesRemaining > 0) {
+            int minuteOfDay = Math.floorMod(minute, MINUTES_PER_DAY);
+            long stretch = Math.min(minutesUntilBandChange[minuteOfDay], minutesRemaining);
+            charge += chargeForBand(bandAtMinute[minuteOfDay], stretch);
+            minute += stretch;
+            minutesRemaining -= stretch;
+        }
+
+        charge -= charge * discountPercent[vehicleType.ordinal()] / 100;
+        charge += (surchargePencePerHour[vehicleType.ordinal()] * billedMinutes + 59) / 60;
+        return charge;
+    }
+
+    // Charge for one continuous stretch of a band (rounded up to the penny), limited to the band's cap.
+    private long chargeForBand(int band, long minutes) {
+        return Math.min((bandPencePerHour[band] * minutes + 59) / 60, bandCapPence[band]);
+    }
+
+    private void compileBandTables(int[] bandStartMinute) {
+        // Minutes before the first band starts belong to the last band of the (previous) day.
+        int band = bandStartMinute.length - 1;
+        int nextBand = 0;
+        for (int minuteOfDay = 0; minuteOfDay < MINUTES_PER_DAY; minuteOfDay++) {
+            if (nextBand < bandStartMinute.length && bandStartMinute[nextBand] == minuteOfDay) {
+                band = nextBand++;
+            }
+            bandAtMinute[minuteOfDay] = band;
+        }
+        if (bandStartMinute.length == 1) {
+            for (int minuteOfDay = 0; minuteOfDay < MINUTES_PER_DAY; minuteOfDay++) {
+                minutesUntilBandChange[minuteOfDay] = MINUTES_PER_DAY - minuteOfDay;
+            }
+            return;
+        }
+        // Walk backwards over two days, so the run of the band over midnight is counted from either side of it.
+        int minutesUntilChange = 0;
+        for (int i = 2 * MINUTES_PER_DAY - 1; i >= 0; i--) {
+            int minuteOfDay = i % MINUTES_PER_DAY;
+            int nextMinuteOfDay = (i + 1) % MINUTES_PER_DAY;
+            minutesUntilChange = bandAtMinute[minuteOfDay] == bandAtMinute[nextMinuteOfDay] ? minutesUntilChange + 1 : 1;
+            minutesUntilBandChange[minuteOfDay] = minutesUntilChange;
+        }
+    }
+
+    private static int startMinuteOfDay(TariffDefinition.Band band) {
+        if (band.getStart() == null) {
+            throw new IllegalArgumentException("Tariff band has no start time");
+        }
+        try {
+            LocalTime start = LocalTime.parse(band.getStart());
+            return start.getHour() * 60 + start.getMinute();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Tariff band start '" + band.getStart() + "' is not a valid time (HH:mm)", e);
+        }
+    }
+
+    private static long toPence(double pounds) {
+        return Math.round(pounds * 100);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.carpark.tariff;
+
+import com.example.carpark.model.VehicleType;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tariff as configured under carPark.tariff. This is only a description of the tariff - it is compiled into lookup
+ * tables (see CompiledTariff) before any stay is priced with it.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "car-park.tariff")
+public class TariffDefinition {
+
+    // Stays no longer than this are free.
+    private int gracePeriodMinutes;
+
+    // Stays are rounded up to a whole number of billing units (from arrival) before being priced.
+    private int billingUnitMinutes = 60;
+
+    /* Time of day bands, each running from its start time until the start of the next band. The last band of the day
+     * runs over midnight until the first band starts. */
+    private List<Band> bands = new ArrayList<>();
+
+    // Added per hour billed, e.g. for use of an EV charging point.
+    private Map<VehicleType, Double> surchargePerHour = new EnumMap<>(VehicleType.class);
+
+    // Taken off the time of day charge, e.g. for motorbikes.
+    private Map<VehicleType, Integer> discountPercent = new EnumMap<>(VehicleType.class);
+
+    @Getter
+    @Setter
+    public static class Band {
+
+        // Time of day the band starts (HH:mm).
+        private String start;
+
+        private double ratePerHour;
+
+        // Maximum charge for one continuous stretch of the band (e.g. an overnight cap), or null if uncapped.
+        private Double cap;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.carpark.tariff;
+
+import com.example.carpark.model.VehicleType;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prices stays with the current compiled tariff. A new tariff can be loaded at any time: it is compiled before it is
+ * swapped in, so exits being priced at the time carry on with the tariff they started with and are never blocked.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "carPark.tariff.enabled", havingValue = "true")
+public class TariffEngine {
+
+    private final AtomicReference<CompiledTariff> currentTariff = new AtomicReference<>();
+
+    @Autowired
+    public TariffEngine(TariffDefinition tariffDefinition) {
+        loadTariff(tariffDefinition);
+    }
+
+    /**
+     * Compiles and swaps in a new tariff. Stays priced after this returns use the new tariff.
+     * @param tariffDefinition the tariff to load.
+     * @throws IllegalArgumentException if the tariff definition is not valid (the current tariff is kept).
+     */
+    public void loadTariff(TariffDefinition tariffDefinition) {
+        currentTariff.set(CompiledTariff.compile(tariffDefinition));
+        log.info("Loaded tariff with " + tariffDefinition.getBands().size() + " time of day band(s)");
+    }
+
+    /**
+     * Prices a stay in the car park with the current tariff.
+     * @param vehicleType the type of vehicle that stayed.
+     * @param arrivedEpochMillis when the vehicle first occupied the parking space (epoch milliseconds).
+     * @param leftEpochMillis when the vehicle left the parking space (epoch milliseconds).
+     * @return the parking charge amount (in pence).
+     */
+    public long priceStayPence(VehicleType vehicleType, long arrivedEpochMillis, long leftEpochMillis) {
+        return currentTariff.get().priceStayPence(vehicleType, arrivedEpochMillis, leftEpochMillis);
+    }
+}
@@ -1,11 +1,11 @@
 package com.example.carpark.thread;
 
 import com.example.carpark.model.Vehicle;
+import com.example.carpark.queue.MultiClassParkingQueue;
 import lombok.AllArgsConstructor;
 
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.BlockingQueue;
 
 @AllArgsConstructor
 public class AddToParkingQueue implements Runnable {
@@ -14,7 +14,7 @@ public class AddToParkingQueue implements Runnable {
 
     private List<Vehicle> allVehicles;
 
-    private BlockingQueue<Vehicle> parkingQueue;
+    private MultiClassParkingQueue parkingQueue;
 
     @Override
     public void run() {
@@ -0,0 +1,34 @@
+package com.example.carpark.thread;
+
+import com.example.carpark.model.Vehicle;
+import lombok.Getter;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parked vehicle that is due to leave after staying for a while. Held in a DelayQueue, so an exit barrier blocks
+ * until the next vehicle is due rather than polling.
+ */
+public class Departure implements Delayed {
+
+    @Getter
+    private final Vehicle vehicle;
+
+    private final long dueNanos;
+
+    public Departure(Vehicle vehicle, long stayMillis) {
+        this.vehicle = vehicle;
+        this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stayMillis);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+}
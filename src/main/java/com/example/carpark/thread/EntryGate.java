@@ -0,0 +1,59 @@
+package com.example.carpark.thread;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.service.CarParkService;
+import lombok.AllArgsConstructor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * An entry gate with its own queue of arriving vehicles. Each vehicle is parked in turn, then handed on to leave later.
+ * If there isn't a suitable space, the vehicle waits at the gate until one is handed to it. Runs until interrupted.
+ */
+@AllArgsConstructor
+public class EntryGate implements Runnable {
+
+    private CarParkService carParkService;
+
+    private BlockingQueue<Vehicle> arrivals;
+
+    private Consumer<Vehicle> onParked;
+
+    private GateMetrics gateMetrics;
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Vehicle vehicle = arrivals.take();
+                park(vehicle);
+                gateMetrics.recordEntered();
+                onParked.accept(vehicle);
+            }
+        } catch (InterruptedException e) {
+            // Gate closed.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void park(Vehicle vehicle) throws InterruptedException {
+        CompletableFuture<ParkingSpace> parkingSpace = carParkService.parkVehicleWhenSpaceAvailable(vehicle);
+        if (!parkingSpace.isDone()) {
+            gateMetrics.recordEntryWait();
+        }
+        try {
+            // On a virtual thread this unmounts, so a waiting gate doesn't hold on to a carrier thread.
+            parkingSpace.get();
+        } catch (InterruptedException e) {
+            // Give up waiting - the vehicle isn't parked unless a space was handed over before it could be cancelled.
+            parkingSpace.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.carpark.thread;
+
+import com.example.carpark.exception.VehicleNotFoundException;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.service.CarParkService;
+import lombok.AllArgsConstructor;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An exit barrier with its own queue of departing vehicles, each of which leaves the car park (and is charged) in turn
+ * once it is due to leave.
+ * Runs until interrupted.
+ */
+@AllArgsConstructor
+public class ExitBarrier implements Runnable {
+
+    private CarParkService carParkService;
+
+    private BlockingQueue<Departure> departures;
+
+    private GateMetrics gateMetrics;
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Vehicle vehicle = departures.take().getVehicle();
+                try {
+                    carParkService.leaveCarPark(vehicle);
+                } catch (VehicleNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+                gateMetrics.recordExited();
+            }
+        } catch (InterruptedException e) {
+            // Barrier closed.
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.carpark.thread;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts vehicles through the gates, so the rate the entry backlog is being cleared at can be reported as the number of
+ * gates is scaled. Each gate updates the counters without contending with the others.
+ */
+public class GateMetrics {
+
+    private final LongAdder queuedToEnter = new LongAdder();
+
+    private final LongAdder entered = new LongAdder();
+
+    private final LongAdder exited = new LongAdder();
+
+    // Vehicles that found no suitable space and had to wait for one to be freed.
+    private final LongAdder entryWaits = new LongAdder();
+
+    public void recordQueuedToEnter() {
+        queuedToEnter.increment();
+    }
+
+    public void recordEntered() {
+        entered.increment();
+    }
+
+    public void recordExited() {
+        exited.increment();
+    }
+
+    public void recordEntryWait() {
+        entryWaits.increment();
+    }
+
+    public long getEntered() {
+        return entered.sum();
+    }
+
+    public long getExited() {
+        return exited.sum();
+    }
+
+    public long getEntryWaits() {
+        return entryWaits.sum();
+    }
+
+    /**
+     * Returns the number of vehicles queued at an entry gate that haven't been parked yet.
+     * @return the entry backlog.
+     */
+    public long getEntryBacklog() {
+        return queuedToEnter.sum() - entered.sum();
+    }
+}
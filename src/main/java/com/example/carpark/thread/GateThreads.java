@@ -0,0 +1,50 @@
+package com.example.carpark.thread;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the threads gate workers run on. Virtual threads are used where the runtime has them (Java 21+), so thousands
+ * of gates can each block waiting for a vehicle or a bay without tying up a platform thread. The project compiles for
+ * Java 17, so virtual threads are looked up reflectively, falling back to platform threads on older runtimes.
+ */
+@Log4j2
+public final class GateThreads {
+
+    private GateThreads() {
+    }
+
+    /**
+     * Creates a thread factory for gate workers.
+     * @param namePrefix the prefix of each thread's name (followed by a sequence number).
+     * @param preferVirtualThreads true to use virtual threads if the runtime supports them.
+     * @return the thread factory.
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix, boolean preferVirtualThreads) {
+        if (preferVirtualThreads) {
+            ThreadFactory virtualThreadFactory = newVirtualThreadFactory(namePrefix);
+            if (virtualThreadFactory != null) {
+                return virtualThreadFactory;
+            }
+            log.warn("Virtual threads are not available on Java " + Runtime.version().feature() +
+                    ", using platform threads for " + namePrefix + " workers");
+        }
+        AtomicLong nextThread = new AtomicLong();
+        return runnable -> new Thread(runnable, namePrefix + nextThread.getAndIncrement());
+    }
+
+    // Equivalent to Thread.ofVirtual().name(namePrefix, 0).factory(), or null if the runtime has no virtual threads.
+    private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Not on this runtime (or only as a preview feature that hasn't been enabled).
+            return null;
+        }
+    }
+}
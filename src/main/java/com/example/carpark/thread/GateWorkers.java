@@ -0,0 +1,135 @@
+package com.example.carpark.thread;
+
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.service.CarParkService;
+import com.example.carpark.util.CarParkDataGenerator;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Models the car park with a worker per entry gate and per exit barrier, each consuming its own queue. Every vehicle
+ * arrives at once (spread over the entry gates), and the rate the gates clear that backlog is reported as they run,
+ * so the effect of scaling the number of gates can be measured.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "run.mode", havingValue = "gates")
+public class GateWorkers {
+
+    private CarParkService carParkService;
+
+    private CarParkDataGenerator carParkDataGenerator;
+
+    @Value("${run.numVehiclesToModel}")
+    private int numVehiclesToModel;
+
+    @Value("${run.gates.entry:1}")
+    private int numEntryGates;
+
+    @Value("${run.gates.exit:1}")
+    private int numExitBarriers;
+
+    @Value("${run.gates.virtualThreads:true}")
+    private boolean virtualThreads;
+
+    // How long each vehicle stays parked before heading for an exit barrier.
+    @Value("${run.gates.stayMillis:100}")
+    private long stayMillis;
+
+    @Value("${run.gates.reportIntervalSeconds:1}")
+    private long reportIntervalSeconds;
+
+    @Autowired
+    public GateWorkers(CarParkService carParkService, CarParkDataGenerator carParkDataGenerator) {
+        this.carParkService = carParkService;
+        this.carParkDataGenerator = carParkDataGenerator;
+    }
+
+    /**
+     * Runs every vehicle through the gates (parking, staying, then leaving), reporting progress as it goes.
+     * @return the metrics of the run.
+     * @throws InterruptedException if interrupted while waiting for the gates.
+     */
+    public GateMetrics run() throws InterruptedException {
+        GateMetrics gateMetrics = new GateMetrics();
+        List<BlockingQueue<Vehicle>> arrivalQueues = new ArrayList<>(numEntryGates);
+        List<BlockingQueue<Departure>> departureQueues = new ArrayList<>(numExitBarriers);
+        List<Thread> workers = new ArrayList<>(numEntryGates + numExitBarriers);
+
+        ThreadFactory exitThreadFactory = GateThreads.newThreadFactory("exit-barrier-", virtualThreads);
+        for (int i = 0; i < numExitBarriers; i++) {
+            BlockingQueue<Departure> departures = new DelayQueue<>();
+            departureQueues.add(departures);
+            workers.add(exitThreadFactory.newThread(new ExitBarrier(carParkService, departures, gateMetrics)));
+        }
+        ThreadFactory entryThreadFactory = GateThreads.newThreadFactory("entry-gate-", virtualThreads);
+        for (int i = 0; i < numEntryGates; i++) {
+            BlockingQueue<Vehicle> arrivals = new LinkedBlockingQueue<>();
+            arrivalQueues.add(arrivals);
+            // Once parked, a vehicle leaves through any of the exit barriers.
+            workers.add(entryThreadFactory.newThread(new EntryGate(carParkService, arrivals,
+                    vehicle -> departureQueues.get(ThreadLocalRandom.current().nextInt(numExitBarriers))
+                            .add(new Departure(vehicle, stayMillis)),
+                    gateMetrics)));
+        }
+
+        List<Vehicle> vehicles = carParkDataGenerator.generateRandomVehicles(numVehiclesToModel);
+        for (int i = 0; i < vehicles.size(); i++) {
+            arrivalQueues.get(i % numEntryGates).add(vehicles.get(i));
+            gateMetrics.recordQueuedToEnter();
+        }
+
+        log.info("Running " + vehicles.size() + " vehicles through " + numEntryGates + " entry gate(s) and " +
+                numExitBarriers + " exit barrier(s)");
+        long startNanos = System.nanoTime();
+        workers.forEach(Thread::start);
+        try {
+            awaitAllVehiclesExited(vehicles.size(), gateMetrics, workers);
+        } finally {
+            workers.forEach(Thread::interrupt);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        log.info(String.format("%d vehicles through %d entry gate(s) and %d exit barrier(s) in %.2fs: backlog cleared " +
+                        "at %.0f vehicles/s, %d wait(s) for a space", gateMetrics.getExited(), numEntryGates,
+                numExitBarriers, elapsedSeconds, gateMetrics.getEntered() / elapsedSeconds, gateMetrics.getEntryWaits()));
+        return gateMetrics;
+    }
+
+    private void awaitAllVehiclesExited(int numVehicles, GateMetrics gateMetrics, List<Thread> workers)
+            throws InterruptedException {
+        long reportIntervalNanos = TimeUnit.SECONDS.toNanos(reportIntervalSeconds);
+        long nextReportNanos = System.nanoTime() + reportIntervalNanos;
+        long lastEntered = 0;
+        // Check often (so the run is timed accurately), but only report progress every interval.
+        while (gateMetrics.getExited() < numVehicles) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            if (System.nanoTime() - nextReportNanos >= 0) {
+                long entered = gateMetrics.getEntered();
+                log.info("Entry backlog " + gateMetrics.getEntryBacklog() + ", clearing at " +
+                        (entered - lastEntered) / reportIntervalSeconds + " vehicles/s, " +
+                        carParkService.getNumCarsParked() + " parked, " + gateMetrics.getExited() + " exited");
+                lastEntered = entered;
+                nextReportNanos += reportIntervalNanos;
+            }
+            if (!workers.stream().allMatch(Thread::isAlive)) {
+                throw new IllegalStateException("A gate worker has stopped unexpectedly");
+            }
+        }
+    }
+}
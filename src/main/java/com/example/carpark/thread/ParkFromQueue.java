@@ -1,20 +1,18 @@
 package com.example.carpark.thread;
 
-import com.example.carpark.exception.CarParkFullException;
-import com.example.carpark.exception.DoubleParkedException;
-import com.example.carpark.exception.NoSuitableSpacesException;
 import com.example.carpark.model.Vehicle;
+import com.example.carpark.queue.MultiClassParkingQueue;
 import com.example.carpark.service.CarParkService;
 import lombok.AllArgsConstructor;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 
 @AllArgsConstructor
 public class ParkFromQueue implements Runnable {
 
     private CarParkService carParkService;
 
-    private BlockingQueue<Vehicle> parkingQueue;
+    private MultiClassParkingQueue parkingQueue;
 
     @Override
     public void run() {
@@ -26,25 +24,26 @@ public class ParkFromQueue implements Runnable {
         }
 
         while (!parkingQueue.isEmpty()) {
-            boolean parkingSuccessful = true;
-            Vehicle firstWaitingToPark = parkingQueue.peek();
-
-            // Attempt to park the first vehicle waiting in the queue.
-            try {
-                carParkService.parkVehicle(firstWaitingToPark);
-            } catch (DoubleParkedException e) {
-                throw new RuntimeException(e);
-            } catch (CarParkFullException | NoSuitableSpacesException e) {
-                // Vehicle will remain in the queue - try parking it again on the next execution.
-                parkingSuccessful = false;
+            // Take the next vehicle there is a suitable space for - a vehicle waiting for a full category of space
+            // (e.g. an EV waiting for a charging point) doesn't hold up the vehicles behind it.
+            Vehicle nextToPark = parkingQueue.pollParkable(carParkService::isSuitableParkingAvailable);
+
+            if (nextToPark == null) {
+                // No queued vehicle has a suitable space. Rather than polling, the first vehicle of each category waits
+                // in the car park for the next space of its category to be freed (in order of arrival, as a freed space
+                // is handed to the longest waiting vehicle), and dispatching carries on once one of them is parked.
+                CompletableFuture<?>[] parked = parkingQueue.pollHeads().stream()
+                        .map(carParkService::parkVehicleWhenSpaceAvailable)
+                        .toArray(CompletableFuture[]::new);
+                CompletableFuture.anyOf(parked).join();
+                continue;
             }
 
-            // If vehicle has been successfully parked, we can remove it from the queue.
-            if (parkingSuccessful) {
-                parkingQueue.poll();
-            }
+            // Should the space have been taken in the meantime, wait for the next suitable one to be freed. A
+            // DoubleParkedException is rethrown wrapped in a CompletionException.
+            carParkService.parkVehicleWhenSpaceAvailable(nextToPark).join();
 
-            // Sleep for 1 second before attempting to park the vehicle at the head of the queue.
+            // Sleep for 1 second before parking the next vehicle.
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) {
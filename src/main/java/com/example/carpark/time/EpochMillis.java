@@ -0,0 +1,33 @@
+package com.example.carpark.time;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Converts between date times and epoch milliseconds. Date times in the car park have no time zone, so they are
+ * converted as if they were UTC - which keeps the conversion a little arithmetic rather than a time zone lookup.
+ */
+public final class EpochMillis {
+
+    private EpochMillis() {
+    }
+
+    /**
+     * Converts a date time to epoch milliseconds (truncating anything finer than a millisecond).
+     * @param dateTime the date time to convert.
+     * @return the epoch milliseconds.
+     */
+    public static long of(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+    }
+
+    /**
+     * Converts epoch milliseconds to a date time.
+     * @param epochMillis the epoch milliseconds to convert.
+     * @return the date time.
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
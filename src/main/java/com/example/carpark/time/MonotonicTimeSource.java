@@ -0,0 +1,36 @@
+package com.example.carpark.time;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tells the time by reading the system clock once at startup, then adding the time elapsed on the monotonic clock
+ * (System.nanoTime). Reading the epoch milliseconds is a single nanoTime call with no time zone lookup or allocation,
+ * and time never goes backwards, so a stay can never have a negative duration.
+ * Note: as the time zone offset is only looked up at startup, the time does not move with daylight saving changes.
+ */
+@Component
+@ConditionalOnProperty(name = "carPark.clock", havingValue = "monotonic")
+public class MonotonicTimeSource implements TimeSource {
+
+    private final long startNanos;
+
+    private final long startEpochMillis;
+
+    public MonotonicTimeSource() {
+        this.startNanos = System.nanoTime();
+        this.startEpochMillis = EpochMillis.of(LocalDateTime.now());
+    }
+
+    @Override
+    public LocalDateTime now() {
+        return EpochMillis.toLocalDateTime(currentEpochMillis());
+    }
+
+    @Override
+    public long currentEpochMillis() {
+        return startEpochMillis + (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
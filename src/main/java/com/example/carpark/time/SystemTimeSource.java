@@ -0,0 +1,25 @@
+package com.example.carpark.time;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tells the time with the system (wall) clock in the default time zone. Every read looks up the time zone offset, and
+ * the time can jump (backwards or forwards) if the system clock is adjusted.
+ */
+@Component
+@ConditionalOnProperty(name = "carPark.clock", havingValue = "system", matchIfMissing = true)
+public class SystemTimeSource implements TimeSource {
+
+    @Override
+    public LocalDateTime now() {
+        return LocalDateTime.now();
+    }
+
+    @Override
+    public long currentEpochMillis() {
+        return EpochMillis.of(now());
+    }
+}
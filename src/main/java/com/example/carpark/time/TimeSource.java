@@ -0,0 +1,23 @@
+package com.example.carpark.time;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where the car park gets the current time from, so arrivals and departures can be timed by the wall clock or by a
+ * virtual clock (e.g. in a simulation running faster than real time). Selected with carPark.clock.
+ */
+public interface TimeSource {
+
+    /**
+     * Returns the current date time.
+     * @return the current date time.
+     */
+    LocalDateTime now();
+
+    /**
+     * Returns the current time in epoch milliseconds (of the current date time taken as if it was UTC, as with every
+     * epoch time in the car park).
+     * @return the current time in epoch milliseconds.
+     */
+    long currentEpochMillis();
+}
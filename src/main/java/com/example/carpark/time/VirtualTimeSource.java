@@ -0,0 +1,55 @@
+package com.example.carpark.time;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when it is told to, so a simulation can jump straight from one event to the next instead of
+ * waiting for the wall clock to catch up.
+ */
+@Component
+@ConditionalOnProperty(name = "carPark.clock", havingValue = "virtual")
+public class VirtualTimeSource implements TimeSource {
+
+    private final AtomicLong epochMillis = new AtomicLong();
+
+    @Override
+    public LocalDateTime now() {
+        return EpochMillis.toLocalDateTime(epochMillis.get());
+    }
+
+    @Override
+    public long currentEpochMillis() {
+        return epochMillis.get();
+    }
+
+    /**
+     * Sets the clock, which may be earlier than the current time (e.g. when starting a new simulation).
+     * @param dateTime the new current date time.
+     */
+    public void setTime(LocalDateTime dateTime) {
+        epochMillis.set(EpochMillis.of(dateTime));
+    }
+
+    /**
+     * Moves the clock forward to the given time (or leaves it where it is if it's already later).
+     * @param targetEpochMillis the time to move to in epoch milliseconds.
+     */
+    public void advanceTo(long targetEpochMillis) {
+        epochMillis.accumulateAndGet(targetEpochMillis, Math::max);
+    }
+
+    /**
+     * Moves the clock forward.
+     * @param millis the number of milliseconds to move forward by.
+     */
+    public void advanceBy(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Time can't go backwards");
+        }
+        epochMillis.addAndGet(millis);
+    }
+}
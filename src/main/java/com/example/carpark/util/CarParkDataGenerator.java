@@ -2,7 +2,9 @@ package com.example.carpark.util;
 
 import com.example.carpark.model.ParkingSpace;
 import com.example.carpark.model.Vehicle;
+import jakarta.annotation.PostConstruct;
 import org.instancio.Instancio;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -15,11 +17,37 @@ public class CarParkDataGenerator {
 
     private Random random = new Random();
 
+    // Set to generate the same car park every run (e.g. for a reproducible simulation).
+    @Value("${carPark.generatorSeed:#{null}}")
+    private Long seed;
+
+    @PostConstruct
+    void seedRandom() {
+        if (seed != null) {
+            random = new Random(seed);
+        }
+    }
+
     public List<ParkingSpace> generateParkingSpaces(int capacity) {
+        return generateParkingSpaces(capacity, 1, 1);
+    }
+
+    /* Spaces are spread as evenly as possible over the levels (any remainder going to the lowest levels), then split into
+     * lettered zones within each level. Designations run upwards from the ground floor, so the lowest designations are
+     * always on the lowest level. */
+    public List<ParkingSpace> generateParkingSpaces(int capacity, int levels, int zonesPerLevel) {
+        if (levels < 1 || zonesPerLevel < 1 || zonesPerLevel > 26) {
+            throw new IllegalArgumentException("A car park requires at least one level and between 1 and 26 zones per level");
+        }
         List<ParkingSpace> parkingSpaces = Collections.synchronizedList(new ArrayList<>());
+        int designation = 1;
 
-        for (int i=1; i<=capacity; i++) {
-            parkingSpaces.add(new ParkingSpace(i, random.nextBoolean()));
+        for (int level=0; level<levels; level++) {
+            int levelCapacity = capacity / levels + (level < capacity % levels ? 1 : 0);
+            for (int i=0; i<levelCapacity; i++) {
+                String zone = String.valueOf((char) ('A' + (i * zonesPerLevel / levelCapacity)));
+                parkingSpaces.add(new ParkingSpace(designation++, random.nextBoolean(), level, zone));
+            }
         }
 
         return parkingSpaces;
@@ -0,0 +1,218 @@
+package com.example.carpark.util;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values (e.g. VRMs) added to it, using a small fixed
+ * amount of memory however many values are added. Sketches of the same precision can be merged, giving the estimate
+ * for the union of their values.
+ * A sketch starts in a sparse form (only the registers that have been set are stored), so the many sketches covering
+ * quiet periods stay small, and switches to a dense register array once it fills up.
+ * Not thread safe - callers must synchronise access to a shared sketch.
+ */
+public class HyperLogLog {
+
+    private static final int RANK_BITS = 6;
+
+    private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+    private final int precision;
+
+    private final int numRegisters;
+
+    /* Sparse entries are encoded as (register index << RANK_BITS | rank), kept sorted by register index so a register
+     * is found with a binary search. Replaced by the dense registers once full. */
+    private int[] sparseEntries = new int[4];
+
+    private int numSparseEntries;
+
+    private byte[] registers;
+
+    /**
+     * Creates an empty sketch.
+     * @param precision the number of hash bits used to pick a register (4 - 18). The sketch uses 2^precision registers,
+     * with a standard error of about 1.04 / sqrt(2^precision).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.numRegisters = 1 << precision;
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value to be added.
+     */
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Adds a value that has already been hashed (with a well mixed 64 bit hash) to the sketch.
+     * @param hash the 64 bit hash of the value to be added.
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // The rank is the position of the first set bit in the remaining hash bits (a guard bit caps the rank).
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        updateRegister(index, rank);
+    }
+
+    /**
+     * Merges another sketch of the same precision into this one.
+     * @param other the sketch to be merged into this sketch.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of different precision");
+        }
+        if (other.registers != null) {
+            // Merging a dense sketch sets most registers, so switch over first rather than growing the sparse entries.
+            if (registers == null) {
+                convertToDense();
+            }
+            for (int index = 0; index < numRegisters; index++) {
+                if (other.registers[index] != 0) {
+                    updateRegister(index, other.registers[index]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.numSparseEntries; i++) {
+                updateRegister(other.sparseEntries[i] >>> RANK_BITS, other.sparseEntries[i] & RANK_MASK);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values added to the sketch.
+     * @return the estimated number of distinct values.
+     */
+    public long estimate() {
+        double sum = 0;
+        int numEmptyRegisters = numRegisters;
+        if (registers != null) {
+            numEmptyRegisters = 0;
+            for (byte rank : registers) {
+                sum += 1.0 / (1L << rank);
+                if (rank == 0) {
+                    numEmptyRegisters++;
+                }
+            }
+        } else {
+            for (int i = 0; i < numSparseEntries; i++) {
+                sum += 1.0 / (1L << (sparseEntries[i] & RANK_MASK));
+            }
+            numEmptyRegisters -= numSparseEntries;
+            sum += numEmptyRegisters;
+        }
+
+        double estimate = alpha() * numRegisters * numRegisters / sum;
+        // Small range correction - linear counting is far more accurate while many registers are still empty.
+        if (estimate <= 2.5 * numRegisters && numEmptyRegisters > 0) {
+            estimate = numRegisters * Math.log((double) numRegisters / numEmptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Hashes a value to a well mixed 64 bit hash (FNV-1a, followed by a MurmurHash3 finaliser).
+     * @param value the value to be hashed.
+     * @return the 64 bit hash of the value.
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash(hash);
+    }
+
+    /**
+     * Hashes a value to a well mixed 64 bit hash (a MurmurHash3 finaliser), e.g. a vehicle id.
+     * @param value the value to be hashed.
+     * @return the 64 bit hash of the value.
+     */
+    public static long hash(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void updateRegister(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = findSparseEntry(index);
+        if (position >= 0) {
+            if (rank > (sparseEntries[position] & RANK_MASK)) {
+                sparseEntries[position] = index << RANK_BITS | rank;
+            }
+            return;
+        }
+
+        // Once the sparse form would use more memory than the dense registers, switch over.
+        if (numSparseEntries == numRegisters / Integer.BYTES) {
+            convertToDense();
+            updateRegister(index, rank);
+            return;
+        }
+        if (numSparseEntries == sparseEntries.length) {
+            sparseEntries = Arrays.copyOf(sparseEntries, sparseEntries.length * 2);
+        }
+        int insertAt = -(position + 1);
+        System.arraycopy(sparseEntries, insertAt, sparseEntries, insertAt + 1, numSparseEntries - insertAt);
+        sparseEntries[insertAt] = index << RANK_BITS | rank;
+        numSparseEntries++;
+    }
+
+    // Returns the position of the register's sparse entry, or (-(insertion point) - 1) if it has none.
+    private int findSparseEntry(int index) {
+        int low = 0;
+        int high = numSparseEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparseEntries[mid] >>> RANK_BITS;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void convertToDense() {
+        registers = new byte[numRegisters];
+        for (int i = 0; i < numSparseEntries; i++) {
+            registers[sparseEntries[i] >>> RANK_BITS] = (byte) (sparseEntries[i] & RANK_MASK);
+        }
+        sparseEntries = null;
+        numSparseEntries = 0;
+    }
+
+    private double alpha() {
+        switch (numRegisters) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / numRegisters);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.carpark.util;
+
+/**
+ * A set of longs (e.g. vehicle ids) held in a primitive open addressing table, so adding a value never boxes it.
+ * Not thread safe.
+ */
+public class LongHashSet {
+
+    // 0 marks an empty position, so whether 0 itself is in the set is held separately.
+    private long[] values;
+
+    private boolean containsZero;
+
+    private int size;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of values expected to be added.
+     */
+    public LongHashSet(int expectedSize) {
+        this.values = new long[Integer.highestOneBit(Math.max(expectedSize, 8) * 2) * 2];
+    }
+
+    /**
+     * Adds a value to the set.
+     * @param value the value to be added.
+     * @return true if the value was added, false if it was already in the set.
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = values.length - 1;
+        int position = (int) HyperLogLog.hash(value) & mask;
+        while (values[position] != 0) {
+            if (values[position] == value) {
+                return false;
+            }
+            position = (position + 1) & mask;
+        }
+        values[position] = value;
+        if (++size * 2 > values.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldValues = values;
+        values = new long[oldValues.length * 2];
+        int mask = values.length - 1;
+        for (long value : oldValues) {
+            if (value != 0) {
+                int position = (int) HyperLogLog.hash(value) & mask;
+                while (values[position] != 0) {
+                    position = (position + 1) & mask;
+                }
+                values[position] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.carpark.vrm;
+
+/**
+ * Hands out a canonical id for each VRM, so vehicles can be indexed, audited and counted by a long rather than a
+ * String. Current format UK registrations are their own id (see VrmCodec), so need no table at all; any other VRM is
+ * given an id from a shared intern table. Two VRMs have the same id exactly when they are equal.
+ * Note: interned ids are only stable for the life of the process - persist the VRM, not the id.
+ */
+public final class VehicleRegistry {
+
+    public static final long NO_VEHICLE_ID = 0;
+
+    // Set on interned ids, which VrmCodec never sets on a code.
+    private static final long INTERNED = 1L << 62;
+
+    private static final VrmInterner NON_STANDARD_VRMS = new VrmInterner();
+
+    private VehicleRegistry() {
+    }
+
+    /**
+     * Returns the canonical id of a VRM.
+     * @param vrm the VRM.
+     * @return the id of the VRM (never NO_VEHICLE_ID).
+     */
+    public static long idOf(String vrm) {
+        long code = VrmCodec.encode(vrm);
+        return code != VrmCodec.NOT_ENCODABLE ? code : INTERNED | NON_STANDARD_VRMS.intern(vrm);
+    }
+
+    /**
+     * Returns the canonical id of a VRM if it has one, without giving a non-standard VRM an id. Use this to look up
+     * vehicles (e.g. one leaving), so VRMs that are never parked don't grow the intern table.
+     * @param vrm the VRM.
+     * @return the id of the VRM, or NO_VEHICLE_ID if it is a non-standard VRM that hasn't been given an id.
+     */
+    public static long findIdOf(String vrm) {
+        long code = VrmCodec.encode(vrm);
+        if (code != VrmCodec.NOT_ENCODABLE) {
+            return code;
+        }
+        int id = NON_STANDARD_VRMS.find(vrm);
+        return id != 0 ? INTERNED | id : NO_VEHICLE_ID;
+    }
+
+    /**
+     * Returns the VRM of a canonical id.
+     * @param vehicleId the id of the VRM (as returned by idOf).
+     * @return the VRM.
+     */
+    public static String vrmOf(long vehicleId) {
+        return (vehicleId & INTERNED) != 0 ? NON_STANDARD_VRMS.vrmOf((int) vehicleId) : VrmCodec.decode(vehicleId);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.carpark.vrm;
+
+/**
+ * Packs current format UK registrations - two letters, two digits, then three letters (e.g. "AB12 CDE") - into a long,
+ * so they can be held, hashed and compared as a primitive. Letters take 5 bits and digits 4, along with a flag for the
+ * space and one for lower case letters, so decoding gives back exactly the registration that was encoded. Anything
+ * else (older formats, personalised plates, mixed case) is not encodable.
+ */
+public final class VrmCodec {
+
+    public static final long NOT_ENCODABLE = 0;
+
+    // Set on every code, so no code is ever NOT_ENCODABLE.
+    private static final long ENCODED = 1L << 40;
+
+    private static final long SPACED = 1L << 34;
+
+    private static final long LOWER_CASE = 1L << 33;
+
+    // The characters (ignoring the space) take the lowest 33 bits, the first character in the highest of them.
+    private static final long CHARACTERS = LOWER_CASE - 1;
+
+    private static final int LETTER_BITS = 5;
+
+    private static final int DIGIT_BITS = 4;
+
+    private static final int UPPER = 1;
+
+    private static final int LOWER = 2;
+
+    // Whether each character (ignoring the space) is a letter or a digit.
+    private static final boolean[] IS_LETTER = {true, true, false, false, true, true, true};
+
+    private VrmCodec() {
+    }
+
+    /**
+     * Encodes a registration.
+     * @param vrm the registration.
+     * @return the code of the registration, or NOT_ENCODABLE if it isn't a current format registration.
+     */
+    public static long encode(CharSequence vrm) {
+        int length = vrm.length();
+        boolean spaced = length == IS_LETTER.length + 1;
+        if (length != IS_LETTER.length && !(spaced && vrm.charAt(4) == ' ')) {
+            return NOT_ENCODABLE;
+        }
+        long characters = 0;
+        int letterCase = 0;
+        for (int i = 0, c = 0; i < length; i++) {
+            char ch = vrm.charAt(i);
+            if (spaced && i == 4) {
+                continue;
+            }
+            if (IS_LETTER[c++]) {
+                int letter;
+                if (ch >= 'A' && ch <= 'Z') {
+                    letter = ch - 'A';
+                    letterCase |= UPPER;
+                } else if (ch >= 'a' && ch <= 'z') {
+                    letter = ch - 'a';
+                    letterCase |= LOWER;
+                } else {
+                    return NOT_ENCODABLE;
+                }
+                characters = characters << LETTER_BITS | letter;
+            } else {
+                if (ch < '0' || ch > '9') {
+                    return NOT_ENCODABLE;
+                }
+                characters = characters << DIGIT_BITS | (ch - '0');
+            }
+        }
+        if (letterCase == (UPPER | LOWER)) {
+            return NOT_ENCODABLE;
+        }
+        return ENCODED | (spaced ? SPACED : 0) | (letterCase == LOWER ? LOWER_CASE : 0) | characters;
+    }
+
+    /**
+     * Decodes a registration.
+     * @param code the code of the registration (as returned by encode).
+     * @return the registration.
+     */
+    public static String decode(long code) {
+        if (!isEncoded(code)) {
+            throw new IllegalArgumentException(code + " is not an encoded registration");
+        }
+        boolean spaced = (code & SPACED) != 0;
+        char firstLetter = (code & LOWER_CASE) != 0 ? 'a' : 'A';
+        char[] vrm = new char[spaced ? IS_LETTER.length + 1 : IS_LETTER.length];
+        long characters = code;
+        for (int i = vrm.length - 1, c = IS_LETTER.length - 1; i >= 0; i--) {
+            if (spaced && i == 4) {
+                vrm[i] = ' ';
+                continue;
+            }
+            if (IS_LETTER[c--]) {
+                vrm[i] = (char) (firstLetter + (characters & ((1 << LETTER_BITS) - 1)));
+                characters >>>= LETTER_BITS;
+            } else {
+                vrm[i] = (char) ('0' + (characters & ((1 << DIGIT_BITS) - 1)));
+                characters >>>= DIGIT_BITS;
+            }
+        }
+        return new String(vrm);
+    }
+
+    public static boolean isEncoded(long code) {
+        return (code & ENCODED) != 0 && (code & ~(ENCODED | SPACED | LOWER_CASE | CHARACTERS)) == 0;
+    }
+}
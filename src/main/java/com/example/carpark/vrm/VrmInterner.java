@@ -0,0 +1,143 @@
+package com.example.carpark.vrm;
+
+import java.util.Arrays;
+
+/**
+ * Numbers each distinct VRM, for registrations VrmCodec can't encode. Ids are permanent (audits hold on to them), so
+ * this grows with the number of distinct non-standard VRMs seen. Ids are never 0 or negative.
+ * <p>
+ * VRMs are spread over stripes (by hash), each an open addressing table of ids backed by primitive arrays. Finding a VRM
+ * that already has an id takes no lock at all - only numbering a new VRM locks its stripe.
+ */
+public class VrmInterner {
+
+    private static final int STRIPE_BITS = 4;
+
+    private static final int STRIPE_MASK = (1 << STRIPE_BITS) - 1;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    public VrmInterner() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns the id of a VRM, numbering it if it hasn't been seen before.
+     * @param vrm the VRM.
+     * @return the id of the VRM.
+     */
+    public int intern(String vrm) {
+        int hash = spread(vrm.hashCode());
+        int stripe = hash & STRIPE_MASK;
+        return stripes[stripe].intern(vrm, hash >>> STRIPE_BITS) << STRIPE_BITS | stripe;
+    }
+
+    /**
+     * Returns the id of a VRM, without numbering it if it hasn't been seen before.
+     * @param vrm the VRM.
+     * @return the id of the VRM, or 0 if it hasn't been numbered (or is being numbered at the same time).
+     */
+    public int find(String vrm) {
+        int hash = spread(vrm.hashCode());
+        int stripe = hash & STRIPE_MASK;
+        int id = stripes[stripe].find(vrm, hash >>> STRIPE_BITS);
+        return id != 0 ? id << STRIPE_BITS | stripe : 0;
+    }
+
+    /**
+     * Returns the VRM of an id.
+     * @param id the id of the VRM (as returned by intern).
+     * @return the VRM.
+     */
+    public String vrmOf(int id) {
+        return stripes[id & STRIPE_MASK].vrmOf(id >>> STRIPE_BITS);
+    }
+
+    private static int spread(int hashCode) {
+        return (hashCode ^ (hashCode >>> 16)) * 0x9E3779B9;
+    }
+
+    /* Ids within a stripe start at 1, so no id (local id shifted above the stripe bits) is ever 0. The table is kept at
+     * most half full. Entries are never removed, so a lookup without the lock can only miss a VRM being numbered at the
+     * same time - it then looks again holding the lock. */
+    private static final class Stripe {
+
+        // Indexed by local id. Replaced by a larger copy when full, and the copy published before the ids in it.
+        private volatile String[] vrms = new String[64];
+
+        // Local ids, at the position given by the hash of their VRM (or the next empty position after). 0 is empty.
+        private volatile int[] table = new int[128];
+
+        private int nextId = 1;
+
+        int intern(String vrm, int hash) {
+            int id = find(vrm, hash);
+            return id != 0 ? id : internLocked(vrm, hash);
+        }
+
+        String vrmOf(int id) {
+            return vrms[id];
+        }
+
+        private synchronized int internLocked(String vrm, int hash) {
+            int[] currentTable = table;
+            String[] currentVrms = vrms;
+            int mask = currentTable.length - 1;
+            int position = hash & mask;
+            for (int id = currentTable[position]; id != 0; id = currentTable[position]) {
+                if (currentVrms[id].equals(vrm)) {
+                    return id;
+                }
+                position = (position + 1) & mask;
+            }
+
+            int id = nextId++;
+            if (id == currentVrms.length) {
+                currentVrms = Arrays.copyOf(currentVrms, currentVrms.length * 2);
+            }
+            currentVrms[id] = vrm;
+            vrms = currentVrms;
+            currentTable[position] = id;
+            if (id * 2 > currentTable.length) {
+                table = rehash(currentTable, currentVrms, currentTable.length * 2);
+            }
+            return id;
+        }
+
+        // A racing lookup may see an id before its VRM, so a null VRM is treated as a miss.
+        int find(String vrm, int hash) {
+            int[] currentTable = table;
+            String[] currentVrms = vrms;
+            int mask = currentTable.length - 1;
+            int position = hash & mask;
+            for (int probes = 0; probes < currentTable.length; probes++) {
+                int id = currentTable[position];
+                if (id == 0 || id >= currentVrms.length) {
+                    return 0;
+                }
+                if (vrm.equals(currentVrms[id])) {
+                    return id;
+                }
+                position = (position + 1) & mask;
+            }
+            return 0;
+        }
+
+        private static int[] rehash(int[] table, String[] vrms, int newLength) {
+            int[] newTable = new int[newLength];
+            int mask = newLength - 1;
+            for (int id : table) {
+                if (id != 0) {
+                    int position = (spread(vrms[id].hashCode()) >>> STRIPE_BITS) & mask;
+                    while (newTable[position] != 0) {
+                        position = (position + 1) & mask;
+                    }
+                    newTable[position] = id;
+                }
+            }
+            return newTable;
+        }
+    }
+}
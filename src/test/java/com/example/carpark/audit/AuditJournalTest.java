@@ -0,0 +1,197 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.vrm.VehicleRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AuditJournalTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void replaysAppendedRecordsAfterReopening() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(3);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            parkingAudits.forEach(auditJournal::append);
+        }
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        openJournal(replayedParkingAudits).close();
+
+        assertThat(replayedParkingAudits, equalTo(parkingAudits));
+    }
+
+    @Test
+    void rollsOntoNewSegmentsWhenFull() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(RECORDS_PER_SEGMENT * 2 + 1);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            parkingAudits.forEach(auditJournal::append);
+        }
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        openJournal(replayedParkingAudits).close();
+
+        assertThat(listSegments().size(), equalTo(3));
+        assertThat(replayedParkingAudits, equalTo(parkingAudits));
+    }
+
+    @Test
+    void appendsBatchAcrossSegments() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(RECORDS_PER_SEGMENT + 2);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.append(parkingAudits.get(0));
+            auditJournal.appendAll(parkingAudits.subList(1, parkingAudits.size()));
+        }
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        openJournal(replayedParkingAudits).close();
+
+        assertThat(listSegments().size(), equalTo(2));
+        assertThat(replayedParkingAudits, equalTo(parkingAudits));
+    }
+
+    @Test
+    void readsBackEveryAppendedRecordFromTheSegments() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(RECORDS_PER_SEGMENT * 2 + 1);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.appendAll(parkingAudits.subList(0, 3));
+            List<ParkingAudit> readParkingAudits = new ArrayList<>();
+            auditJournal.forEach(readParkingAudits::add);
+            assertThat(readParkingAudits, equalTo(parkingAudits.subList(0, 3)));
+
+            auditJournal.appendAll(parkingAudits.subList(3, parkingAudits.size()));
+            readParkingAudits.clear();
+            auditJournal.forEach(readParkingAudits::add);
+            assertThat(readParkingAudits, equalTo(parkingAudits));
+        }
+    }
+
+    @Test
+    void refusesWholeBatchIfNewSegmentCantBeMapped() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(RECORDS_PER_SEGMENT + 2);
+        Path blockedSegment = journalDirectory.resolve("audit-00000001.journal");
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.append(parkingAudits.get(0));
+            // A directory where the second segment should go, so it can't be mapped.
+            Files.createDirectory(blockedSegment);
+            assertThrows(UncheckedIOException.class,
+                    () -> auditJournal.appendAll(parkingAudits.subList(1, parkingAudits.size())));
+        }
+        Files.delete(blockedSegment);
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        openJournal(replayedParkingAudits).close();
+
+        // None of the batch was appended - not even the records that would have fitted in the first segment.
+        assertThat(replayedParkingAudits, equalTo(parkingAudits.subList(0, 1)));
+    }
+
+    @Test
+    void truncatesTornRecordAtTail() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(3);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            parkingAudits.forEach(auditJournal::append);
+        }
+
+        // Simulate a crash part way through writing the last record.
+        try (FileChannel fileChannel = FileChannel.open(listSegments().get(0), StandardOpenOption.WRITE)) {
+            fileChannel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), AuditJournal.RECORD_SIZE * 2L + 10);
+        }
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        ParkingAudit parkingAuditAfterRestart = createParkingAudits(4).get(3);
+        try (AuditJournal auditJournal = openJournal(replayedParkingAudits)) {
+            assertThat(replayedParkingAudits, equalTo(parkingAudits.subList(0, 2)));
+            // The next record takes the place of the torn one.
+            auditJournal.append(parkingAuditAfterRestart);
+        }
+
+        replayedParkingAudits.clear();
+        openJournal(replayedParkingAudits).close();
+        assertThat(replayedParkingAudits, equalTo(List.of(parkingAudits.get(0), parkingAudits.get(1), parkingAuditAfterRestart)));
+    }
+
+    @Test
+    void readsBackOnlyTheVisitsThatLeftInRange() throws IOException {
+        List<ParkingAudit> parkingAudits = createParkingAudits(RECORDS_PER_SEGMENT * 3);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.appendAll(parkingAudits.subList(0, RECORDS_PER_SEGMENT * 2));
+        }
+
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.appendAll(parkingAudits.subList(RECORDS_PER_SEGMENT * 2, parkingAudits.size()));
+            List<ParkingAudit> readParkingAudits = new ArrayList<>();
+            // From the last visit in the first segment, to the first visit in the last segment.
+            auditJournal.forEachLeftBetween(parkingAudits.get(RECORDS_PER_SEGMENT - 1).getLeft(),
+                    parkingAudits.get(RECORDS_PER_SEGMENT * 2).getLeft(), readParkingAudits::add);
+            assertThat(readParkingAudits, equalTo(parkingAudits.subList(RECORDS_PER_SEGMENT - 1, RECORDS_PER_SEGMENT * 2 + 1)));
+        }
+    }
+
+    @Test
+    void replaysChargesToThePenny() throws IOException {
+        // More pence than a double holds exactly.
+        ParkingAudit parkingAudit = new ParkingAudit(1, VehicleRegistry.idOf("aa51 aaa"),
+                LocalDateTime.of(2022, Month.APRIL, 1, 9, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 1, 10, 0, 0), (1L << 53) + 1);
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            auditJournal.append(parkingAudit);
+        }
+
+        List<ParkingAudit> replayedParkingAudits = new ArrayList<>();
+        openJournal(replayedParkingAudits).close();
+
+        assertThat(replayedParkingAudits.get(0).getParkingChargePence(), equalTo((1L << 53) + 1));
+    }
+
+    @Test
+    void cantJournalVrmLongerThanRecordAllows() throws IOException {
+        try (AuditJournal auditJournal = openJournal(new ArrayList<>())) {
+            ParkingAudit parkingAudit = new ParkingAudit(1, "a vrm that is far too long to fit",
+                    LocalDateTime.of(2022, Month.APRIL, 1, 9, 0, 0),
+                    LocalDateTime.of(2022, Month.APRIL, 1, 10, 0, 0), 2.00);
+            assertThrows(IllegalArgumentException.class, () -> auditJournal.append(parkingAudit));
+        }
+    }
+
+    private AuditJournal openJournal(List<ParkingAudit> replayedParkingAudits) throws IOException {
+        return AuditJournal.open(journalDirectory, RECORDS_PER_SEGMENT, true, replayedParkingAudits::add);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(journalDirectory)) {
+            return paths.sorted().toList();
+        }
+    }
+
+    private static List<ParkingAudit> createParkingAudits(int numParkingAudits) {
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        LocalDateTime arrived = LocalDateTime.of(2022, Month.APRIL, 1, 9, 0, 0, 123456789);
+        for (int i = 0; i < numParkingAudits; i++) {
+            parkingAudits.add(new ParkingAudit(i + 1, "aa51 aa" + i, arrived.plusMinutes(i),
+                    arrived.plusMinutes(i).plusHours(1).plusSeconds(7), 2.00 * (i + 1)));
+        }
+        return parkingAudits;
+    }
+}
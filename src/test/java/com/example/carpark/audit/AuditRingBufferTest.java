@@ -0,0 +1,98 @@
+package com.example.carpark.audit;
+
+import com.example.carpark.model.ParkingAudit;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuditRingBufferTest {
+
+    private static final LocalDateTime ARRIVED = LocalDateTime.of(2023, 4, 1, 9, 0);
+
+    @Test
+    void drainsInOrderAndRefusesWhenFull() {
+        AuditRingBuffer ringBuffer = new AuditRingBuffer(3);
+        assertThat(ringBuffer.capacity(), equalTo(4));
+
+        List<ParkingAudit> parkingAudits = createParkingAudits(0, 5);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer(parkingAudits.get(i)));
+        }
+        assertFalse(ringBuffer.offer(parkingAudits.get(4)));
+        assertThat(ringBuffer.size(), equalTo(4));
+
+        List<ParkingAudit> batch = new ArrayList<>();
+        assertThat(ringBuffer.drainTo(batch, 2), equalTo(2));
+        // Draining makes room, and the buffer wraps round.
+        assertTrue(ringBuffer.offer(parkingAudits.get(4)));
+        assertThat(ringBuffer.drainTo(batch, 10), equalTo(3));
+        assertThat(batch, equalTo(parkingAudits));
+        assertThat(ringBuffer.size(), equalTo(0));
+    }
+
+    @Test
+    void refusesAuditsOnceClosedButStillDrains() {
+        AuditRingBuffer ringBuffer = new AuditRingBuffer(4);
+        List<ParkingAudit> parkingAudits = createParkingAudits(0, 2);
+        assertTrue(ringBuffer.offer(parkingAudits.get(0)));
+
+        ringBuffer.close();
+        assertTrue(ringBuffer.isClosed());
+        assertFalse(ringBuffer.offer(parkingAudits.get(1)));
+        assertThat(ringBuffer.getProducerSequence(), equalTo(1L));
+
+        List<ParkingAudit> batch = new ArrayList<>();
+        assertThat(ringBuffer.drainTo(batch, 10), equalTo(1));
+        assertThat(batch, equalTo(parkingAudits.subList(0, 1)));
+    }
+
+    @Test
+    void noAuditIsLostOrDuplicatedWithManyProducers() throws InterruptedException {
+        int numProducers = 8;
+        int auditsPerProducer = 10_000;
+        AuditRingBuffer ringBuffer = new AuditRingBuffer(64);
+        ExecutorService executorService = Executors.newFixedThreadPool(numProducers);
+        CountDownLatch producersDone = new CountDownLatch(numProducers);
+        for (int producer = 0; producer < numProducers; producer++) {
+            List<ParkingAudit> parkingAudits = createParkingAudits(producer * auditsPerProducer, auditsPerProducer);
+            executorService.submit(() -> {
+                for (ParkingAudit parkingAudit : parkingAudits) {
+                    while (!ringBuffer.offer(parkingAudit)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                producersDone.countDown();
+            });
+        }
+
+        List<ParkingAudit> drained = new ArrayList<>();
+        while (drained.size() < numProducers * auditsPerProducer) {
+            ringBuffer.drainTo(drained, 16);
+        }
+        assertTrue(producersDone.await(10, TimeUnit.SECONDS));
+        executorService.shutdown();
+
+        assertThat(new HashSet<>(drained).size(), equalTo(numProducers * auditsPerProducer));
+        assertThat(ringBuffer.size(), equalTo(0));
+    }
+
+    private List<ParkingAudit> createParkingAudits(int firstDesignation, int numParkingAudits) {
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        for (int i = firstDesignation; i < firstDesignation + numParkingAudits; i++) {
+            parkingAudits.add(new ParkingAudit(i, "VRM" + i, ARRIVED, ARRIVED.plusHours(1), 2.0));
+        }
+        return parkingAudits;
+    }
+}
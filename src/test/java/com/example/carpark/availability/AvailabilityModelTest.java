@@ -0,0 +1,115 @@
+package com.example.carpark.availability;
+
+import com.example.carpark.bay.ObjectBayStore;
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AvailabilityModelTest {
+
+    private static final long ARRIVAL = 1_650_000_000_000L;
+
+    private final AvailabilityModel availabilityModel = new AvailabilityModel();
+
+    private ObjectBayStore bayStore;
+
+    @BeforeEach
+    void setUp() {
+        // Two levels, each with zones A and B of two standard spaces and zone C of one EV space.
+        List<ParkingSpace> parkingSpaces = new ArrayList<>();
+        int designation = 1;
+        for (int level = 0; level < 2; level++) {
+            for (String zone : List.of("A", "A", "B", "B")) {
+                parkingSpaces.add(new ParkingSpace(designation++, false, level, zone));
+            }
+            parkingSpaces.add(new ParkingSpace(designation++, true, level, "C"));
+        }
+        bayStore = new ObjectBayStore(parkingSpaces);
+        // One of the standard spaces on level 1 is already occupied (e.g. restored after a restart).
+        bayStore.tryOccupy(5, new Vehicle("aa51 aaa", VehicleType.CAR), ARRIVAL);
+        // Notify when standard spaces on a level or in a zone run out, or are down to the last one.
+        ReflectionTestUtils.setField(availabilityModel, "thresholds", new int[]{1, 0});
+        availabilityModel.initialise(bayStore);
+    }
+
+    @AfterEach
+    void tearDown() {
+        availabilityModel.stop();
+    }
+
+    @Test
+    void countsFreeSpacesByCategoryLevelAndZone() {
+        assertThat(availabilityModel.getFreeSpaces(ParkingSpaceCategory.STANDARD), equalTo(7));
+        assertThat(availabilityModel.getFreeSpaces(ParkingSpaceCategory.EV_CHARGING), equalTo(2));
+        assertThat(availabilityModel.getFreeSpaces(1, ParkingSpaceCategory.STANDARD), equalTo(3));
+        assertThat(availabilityModel.getFreeSpaces(1, "A", ParkingSpaceCategory.STANDARD), equalTo(1));
+        assertThat(availabilityModel.getFreeSpaces(1, "C", ParkingSpaceCategory.EV_CHARGING), equalTo(1));
+        assertThat(availabilityModel.getAreas().size(), equalTo(9));
+
+        availabilityModel.recordOccupied(0);
+        availabilityModel.recordOccupied(4);
+        availabilityModel.recordVacated(5);
+        assertThat(availabilityModel.getFreeSpaces(ParkingSpaceCategory.STANDARD), equalTo(7));
+        assertThat(availabilityModel.getFreeSpaces(ParkingSpaceCategory.EV_CHARGING), equalTo(1));
+        assertThat(availabilityModel.getFreeSpaces(AvailabilityArea.level(0), ParkingSpaceCategory.STANDARD), equalTo(3));
+        assertThat(availabilityModel.getFreeSpaces(0, "A", ParkingSpaceCategory.STANDARD), equalTo(1));
+        assertThat(availabilityModel.getFreeSpaces(1, "A", ParkingSpaceCategory.STANDARD), equalTo(2));
+
+        assertThrows(IllegalArgumentException.class, () -> availabilityModel.getFreeSpaces(2, ParkingSpaceCategory.STANDARD));
+        assertThrows(IllegalArgumentException.class, () -> availabilityModel.getFreeSpaces(0, "D", ParkingSpaceCategory.STANDARD));
+    }
+
+    @Test
+    void notifiesOnlyWhenThresholdsAreCrossed() throws InterruptedException {
+        BlockingQueue<AvailabilityChange> changes = new LinkedBlockingQueue<>();
+        availabilityModel.subscribe(changes::add);
+
+        // Zone 0A goes from two free spaces to one, and then none.
+        availabilityModel.recordOccupied(0);
+        assertThat(changes.poll(5, TimeUnit.SECONDS),
+                equalTo(new AvailabilityChange(AvailabilityArea.zone(0, "A"), ParkingSpaceCategory.STANDARD, 1)));
+        availabilityModel.recordOccupied(1);
+        assertThat(changes.poll(5, TimeUnit.SECONDS),
+                equalTo(new AvailabilityChange(AvailabilityArea.zone(0, "A"), ParkingSpaceCategory.STANDARD, 0)));
+
+        // Level 0 still has two free standard spaces (in zone B), so it hasn't crossed a threshold.
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+
+        availabilityModel.recordVacated(1);
+        assertThat(changes.poll(5, TimeUnit.SECONDS),
+                equalTo(new AvailabilityChange(AvailabilityArea.zone(0, "A"), ParkingSpaceCategory.STANDARD, 1)));
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void notifiesWhenTheCarParkCrossesAThresholdThatNoLevelHas() throws InterruptedException {
+        // Every level and zone is already at or below 5 free standard spaces - only the car park (7 free) is above.
+        ReflectionTestUtils.setField(availabilityModel, "thresholds", new int[]{5});
+        availabilityModel.initialise(bayStore);
+        BlockingQueue<AvailabilityChange> changes = new LinkedBlockingQueue<>();
+        availabilityModel.subscribe(changes::add);
+
+        availabilityModel.recordOccupied(0);
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+        availabilityModel.recordOccupied(6);
+        assertThat(changes.poll(5, TimeUnit.SECONDS),
+                equalTo(new AvailabilityChange(AvailabilityArea.CAR_PARK, ParkingSpaceCategory.STANDARD, 5)));
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
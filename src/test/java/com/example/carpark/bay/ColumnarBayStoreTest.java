@@ -0,0 +1,72 @@
+package com.example.carpark.bay;
+
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarBayStoreTest {
+
+    private static final long ARRIVAL = 1_650_000_000_000L;
+
+    private final ColumnarBayStore bayStore = new ColumnarBayStore(List.of(
+            new ParkingSpace(1, false, 0, "A"),
+            new ParkingSpace(2, true, 0, "B"),
+            new ParkingSpace(5, false, 1, "A")));
+
+    @Test
+    void shouldHoldTheLayoutOfEachBay() {
+        assertThat(bayStore.size(), equalTo(3));
+        assertThat(bayStore.slotOf(5), equalTo(2));
+        assertThat(bayStore.slotOf(3), lessThan(0));
+        assertThat(bayStore.getCategory(1), equalTo(ParkingSpaceCategory.EV_CHARGING));
+        assertThat(bayStore.getLevel(2), equalTo(1));
+
+        ParkingSpace parkingSpace = bayStore.getParkingSpace(1);
+        assertThat(parkingSpace.getDesignation(), equalTo(2));
+        assertTrue(parkingSpace.isEvChargingPoint());
+        assertThat(parkingSpace.getZone(), equalTo("B"));
+        assertNull(parkingSpace.getOccupancy());
+    }
+
+    @Test
+    void shouldOccupyAndClearBays() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+
+        assertTrue(bayStore.tryOccupy(0, myVehicle, ARRIVAL));
+        assertFalse(bayStore.tryOccupy(0, new Vehicle("bb51 bbb", VehicleType.CAR), ARRIVAL));
+        assertThat(bayStore.getOccupancy(0), equalTo(new ParkingSpace.Occupancy(myVehicle, ARRIVAL)));
+        assertThat(bayStore.getParkingSpace(0).getOccupyingVehicle(), equalTo(myVehicle));
+
+        // Only the occupying vehicle (the same VRM and type) can clear the bay.
+        assertNull(bayStore.tryClear(0, new Vehicle("aa51 aaa", VehicleType.EV)));
+        assertNull(bayStore.tryClear(1, myVehicle));
+        assertThat(bayStore.tryClear(0, myVehicle), equalTo(new ParkingSpace.Occupancy(myVehicle, ARRIVAL)));
+        assertNull(bayStore.getOccupyingVehicle(0));
+
+        // The same vehicle coming back is a new visit.
+        assertTrue(bayStore.tryOccupy(0, myVehicle, ARRIVAL + 60_000));
+        assertThat(bayStore.getOccupancy(0).arrivalEpochMillis(), equalTo(ARRIVAL + 60_000));
+    }
+
+    @Test
+    void shouldCopyOccupancyWhenBuilt() {
+        ParkingSpace occupiedSpace = new ParkingSpace(1, false);
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        occupiedSpace.tryOccupy(myVehicle, ARRIVAL);
+
+        ColumnarBayStore occupiedBayStore = new ColumnarBayStore(List.of(occupiedSpace));
+
+        assertThat(occupiedBayStore.getOccupancy(0), equalTo(occupiedSpace.getOccupancy()));
+    }
+}
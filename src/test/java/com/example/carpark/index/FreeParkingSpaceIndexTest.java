@@ -0,0 +1,56 @@
+package com.example.carpark.index;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FreeParkingSpaceIndexTest {
+
+    @Test
+    void shouldClaimLowestFreeSlotsFirst() {
+        FreeParkingSpaceIndex freeParkingSpaceIndex = new FreeParkingSpaceIndex(200);
+        // Slots either side of the 64 slot word boundaries.
+        for (int slot : new int[] {150, 3, 64, 199, 63}) {
+            freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, slot);
+        }
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.EV_CHARGING, 10);
+
+        int[] slots = new int[5];
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlot(ParkingSpaceCategory.STANDARD), equalTo(3));
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlots(ParkingSpaceCategory.STANDARD, slots, 1, 10), equalTo(4));
+        assertThat(slots, equalTo(new int[] {0, 63, 64, 150, 199}));
+        assertFalse(freeParkingSpaceIndex.hasFreeSlot(ParkingSpaceCategory.STANDARD));
+        assertTrue(freeParkingSpaceIndex.hasFreeSlot(ParkingSpaceCategory.EV_CHARGING));
+    }
+
+    @Test
+    void shouldFindSlotFreedBelowThoseAlreadyClaimed() {
+        FreeParkingSpaceIndex freeParkingSpaceIndex = new FreeParkingSpaceIndex(200);
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, 150);
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlot(ParkingSpaceCategory.STANDARD), equalTo(150));
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlot(ParkingSpaceCategory.STANDARD),
+                equalTo(FreeParkingSpaceIndex.NO_FREE_SLOT));
+
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, 5);
+        assertTrue(freeParkingSpaceIndex.hasFreeSlot(ParkingSpaceCategory.STANDARD));
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlot(ParkingSpaceCategory.STANDARD), equalTo(5));
+    }
+
+    @Test
+    void shouldIndexOnlyARangeOfSlots() {
+        // e.g. a level holding slots 1000 to 1099 of a larger car park.
+        FreeParkingSpaceIndex freeParkingSpaceIndex = new FreeParkingSpaceIndex(1000, 100);
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, 1099);
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, 1000);
+        freeParkingSpaceIndex.markFree(ParkingSpaceCategory.STANDARD, 1064);
+
+        int[] slots = new int[3];
+        assertThat(freeParkingSpaceIndex.claimLowestFreeSlots(ParkingSpaceCategory.STANDARD, slots, 0, 3), equalTo(3));
+        assertThat(slots, equalTo(new int[] {1000, 1064, 1099}));
+        assertFalse(freeParkingSpaceIndex.hasFreeSlot(ParkingSpaceCategory.STANDARD));
+    }
+}
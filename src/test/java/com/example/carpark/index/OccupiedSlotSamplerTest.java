@@ -0,0 +1,81 @@
+package com.example.carpark.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OccupiedSlotSamplerTest {
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Test
+    void removingShouldMoveTheLastSlotIntoTheGap() {
+        OccupiedSlotSampler occupiedSlotSampler = new OccupiedSlotSampler(10);
+        occupiedSlotSampler.add(3);
+        occupiedSlotSampler.add(5);
+        occupiedSlotSampler.add(7);
+
+        occupiedSlotSampler.remove(3);
+        // Removing a slot that isn't occupied changes nothing.
+        occupiedSlotSampler.remove(3);
+
+        assertThat(occupiedSlotSampler.size(), equalTo(2));
+        assertThat(Arrays.stream(occupiedSlotSampler.sample(10, random)).boxed().toArray(),
+                arrayContainingInAnyOrder(5, 7));
+    }
+
+    @Test
+    void shouldSampleNothingWhenEmpty() {
+        OccupiedSlotSampler occupiedSlotSampler = new OccupiedSlotSampler(10);
+
+        assertThat(occupiedSlotSampler.sample(random), equalTo(OccupiedSlotSampler.NO_OCCUPIED_SLOT));
+        assertThat(occupiedSlotSampler.sample(3, random).length, equalTo(0));
+    }
+
+    @Test
+    void shouldSampleUniformly() {
+        // Spread over several stripes, so sampling has to pick the stripe in proportion to its size.
+        OccupiedSlotSampler occupiedSlotSampler = new OccupiedSlotSampler(10, 4);
+        for (int slot = 0; slot < 10; slot++) {
+            occupiedSlotSampler.add(slot);
+        }
+        occupiedSlotSampler.remove(0);
+        occupiedSlotSampler.remove(4);
+
+        int numSamples = 80_000;
+        int[] timesSampled = new int[10];
+        for (int i = 0; i < numSamples; i++) {
+            timesSampled[occupiedSlotSampler.sample(random)]++;
+        }
+        assertThat(timesSampled[0] + timesSampled[4], equalTo(0));
+        for (int slot : new int[] {1, 2, 3, 5, 6, 7, 8, 9}) {
+            assertThat((double) timesSampled[slot] / numSamples, closeTo(1.0 / 8, 0.01));
+        }
+    }
+
+    @Test
+    void cantSampleNegativeNumberOfSlots() {
+        OccupiedSlotSampler occupiedSlotSampler = new OccupiedSlotSampler(10);
+
+        assertThrows(IllegalArgumentException.class, () -> occupiedSlotSampler.sample(-1, random));
+    }
+
+    @Test
+    void batchShouldBeDistinct() {
+        OccupiedSlotSampler occupiedSlotSampler = new OccupiedSlotSampler(100);
+        for (int slot = 0; slot < 100; slot++) {
+            occupiedSlotSampler.add(slot);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(Arrays.stream(occupiedSlotSampler.sample(20, random)).distinct().count(), equalTo(20L));
+        }
+    }
+}
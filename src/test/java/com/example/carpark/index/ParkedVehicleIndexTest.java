@@ -0,0 +1,45 @@
+package com.example.carpark.index;
+
+import com.example.carpark.vrm.VehicleRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParkedVehicleIndexTest {
+
+    @Test
+    void shouldOnlyRecordAVehicleInOneSlot() {
+        ParkedVehicleIndex parkedVehicleIndex = new ParkedVehicleIndex(10);
+        long vehicleId = VehicleRegistry.idOf("aa51 aaa");
+
+        assertThat(parkedVehicleIndex.putIfAbsent(vehicleId, 3), equalTo(ParkedVehicleIndex.NO_SLOT));
+        assertThat(parkedVehicleIndex.putIfAbsent(vehicleId, 4), equalTo(3));
+        assertThat(parkedVehicleIndex.get(vehicleId), equalTo(3));
+
+        // Only removed from the slot it is recorded in.
+        assertFalse(parkedVehicleIndex.remove(vehicleId, 4));
+        assertTrue(parkedVehicleIndex.remove(vehicleId, 3));
+        assertFalse(parkedVehicleIndex.containsKey(vehicleId));
+    }
+
+    @Test
+    void shouldFindEveryVehicleAfterOthersAreRemoved() {
+        // Far more vehicles than expected, so the tables have to grow.
+        ParkedVehicleIndex parkedVehicleIndex = new ParkedVehicleIndex(10);
+        for (int slot = 0; slot < 20_000; slot++) {
+            parkedVehicleIndex.putIfAbsent(VehicleRegistry.idOf("vrm" + slot), slot);
+        }
+        // Removing every other vehicle leaves gaps the remaining vehicles must still be found across.
+        for (int slot = 0; slot < 20_000; slot += 2) {
+            parkedVehicleIndex.remove(VehicleRegistry.idOf("vrm" + slot), slot);
+        }
+
+        for (int slot = 0; slot < 20_000; slot++) {
+            assertThat(parkedVehicleIndex.get(VehicleRegistry.idOf("vrm" + slot)),
+                    equalTo(slot % 2 == 0 ? ParkedVehicleIndex.NO_SLOT : slot));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.carpark.logging;
+
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParkingEventMessageTest {
+
+    private final Vehicle vehicle = new Vehicle("ab51 abc", VehicleType.CAR);
+
+    @Test
+    void shouldFormatOnlyTheFieldsSet() {
+        assertThat(ParkingEventMessage.of("parked", vehicle).bay(500).getFormattedMessage(),
+                equalTo("event=parked vrm=\"ab51 abc\" vehicleType=CAR bay=500"));
+        assertThat(ParkingEventMessage.of("left", vehicle).bay(500).stayMillis(3_600_000L).chargePence(200)
+                        .getFormattedMessage(),
+                equalTo("event=left vrm=\"ab51 abc\" vehicleType=CAR bay=500 stayMillis=3600000 chargePence=200"));
+        assertThat(ParkingEventMessage.of("parkRejected", vehicle).reason(ParkingResult.Rejected.DOUBLE_PARKED)
+                        .getFormattedMessage(),
+                equalTo("event=parkRejected vrm=\"ab51 abc\" vehicleType=CAR reason=DOUBLE_PARKED"));
+    }
+
+    @Test
+    void shouldEmptyTheReusedMessageForTheNextEvent() {
+        ParkingEventMessage left = ParkingEventMessage.of("left", vehicle).bay(1).stayMillis(0).chargePence(0);
+        // A free visit (charged nothing, for no time) still has its stay and charge logged.
+        assertThat(left.getFormattedMessage(),
+                equalTo("event=left vrm=\"ab51 abc\" vehicleType=CAR bay=1 stayMillis=0 chargePence=0"));
+        ParkingEventMessage leaveRejected = ParkingEventMessage.of("leaveRejected", vehicle)
+                .reason(LeaveResult.Rejected.VEHICLE_NOT_FOUND);
+        assertThat(leaveRejected.memento().getFormattedMessage(),
+                equalTo("event=leaveRejected vrm=\"ab51 abc\" vehicleType=CAR reason=VEHICLE_NOT_FOUND"));
+    }
+}
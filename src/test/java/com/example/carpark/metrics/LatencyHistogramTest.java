@@ -0,0 +1,37 @@
+package com.example.carpark.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    @Test
+    void emptyHistogramShouldReportZero() {
+        assertThat(latencyHistogram.getCount(), equalTo(0L));
+        assertThat(latencyHistogram.getMeanNanos(), equalTo(0L));
+        assertThat(latencyHistogram.getPercentileNanos(0.99), equalTo(0L));
+    }
+
+    @Test
+    void percentilesShouldBeWithinAQuarterOfTheLatency() {
+        // 1 to 1000 microseconds.
+        for (int i = 1; i <= 1000; i++) {
+            latencyHistogram.record(i * 1000L);
+        }
+
+        assertThat(latencyHistogram.getCount(), equalTo(1000L));
+        assertThat(latencyHistogram.getMeanNanos(), equalTo(500_500L));
+        assertThat(latencyHistogram.getMaxNanos(), equalTo(1_000_000L));
+        assertThat(latencyHistogram.getPercentileNanos(0.5), greaterThanOrEqualTo(500_000L));
+        assertThat(latencyHistogram.getPercentileNanos(0.5), lessThanOrEqualTo(625_000L));
+        assertThat(latencyHistogram.getPercentileNanos(0.99), greaterThanOrEqualTo(990_000L));
+        // Never more than the slowest latency recorded.
+        assertThat(latencyHistogram.getPercentileNanos(1), equalTo(1_000_000L));
+    }
+}
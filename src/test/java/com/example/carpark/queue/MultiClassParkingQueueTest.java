@@ -0,0 +1,109 @@
+package com.example.carpark.queue;
+
+import com.example.carpark.model.ParkingSpaceCategory;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MultiClassParkingQueueTest {
+
+    private static final Predicate<Vehicle> ANY_CAN_PARK = vehicle -> true;
+
+    private static final Predicate<Vehicle> ONLY_NON_EVS_CAN_PARK = vehicle -> vehicle.getVehicleType() != VehicleType.EV;
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private final Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+
+    private final Vehicle myEvTwo = new Vehicle("ev52 eev", VehicleType.EV);
+
+    private final Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+
+    private final Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.MOTORBIKE);
+
+    private final Vehicle myVehicleThree = new Vehicle("cc51 ccc", VehicleType.CAR);
+
+    @Test
+    void vehicleWaitingForAFullCategoryShouldNotBlockOthers() {
+        MultiClassParkingQueue parkingQueue = new MultiClassParkingQueue(Map.of(), 0, nanoClock::get);
+        parkingQueue.offer(myEv);
+        parkingQueue.offer(myVehicle);
+
+        assertThat(parkingQueue.pollParkable(ONLY_NON_EVS_CAN_PARK), equalTo(myVehicle));
+        assertThat(parkingQueue.pollParkable(ONLY_NON_EVS_CAN_PARK), nullValue());
+        assertThat(parkingQueue.size(ParkingSpaceCategory.EV_CHARGING), equalTo(1));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myEv));
+        assertThat(parkingQueue.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void vehiclesShouldParkInOrderWithinACategory() {
+        MultiClassParkingQueue parkingQueue = new MultiClassParkingQueue(Map.of(), 0, nanoClock::get);
+        parkingQueue.offer(myVehicle);
+        parkingQueue.offer(myEv);
+        parkingQueue.offer(myVehicleTwo);
+        parkingQueue.offer(myVehicleThree);
+
+        // Cars and motorbikes share the standard spaces, so queue together.
+        assertThat(parkingQueue.pollParkable(ONLY_NON_EVS_CAN_PARK), equalTo(myVehicle));
+        assertThat(parkingQueue.pollParkable(ONLY_NON_EVS_CAN_PARK), equalTo(myVehicleTwo));
+        assertThat(parkingQueue.pollParkable(ONLY_NON_EVS_CAN_PARK), equalTo(myVehicleThree));
+    }
+
+    @Test
+    void categoriesShouldTakeTurnsByWeight() {
+        MultiClassParkingQueue parkingQueue = new MultiClassParkingQueue(
+                Map.of(ParkingSpaceCategory.STANDARD, 2, ParkingSpaceCategory.EV_CHARGING, 1), 0, nanoClock::get);
+        parkingQueue.offer(myEv);
+        parkingQueue.offer(myEvTwo);
+        parkingQueue.offer(myVehicle);
+        parkingQueue.offer(myVehicleTwo);
+        parkingQueue.offer(myVehicleThree);
+
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicle));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicleTwo));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myEv));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicleThree));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myEvTwo));
+    }
+
+    @Test
+    void longWaitingVehicleShouldGoFirst() {
+        MultiClassParkingQueue parkingQueue = new MultiClassParkingQueue(
+                Map.of(ParkingSpaceCategory.STANDARD, 10, ParkingSpaceCategory.EV_CHARGING, 1), 1000, nanoClock::get);
+        for (Vehicle vehicle : new Vehicle[] {myVehicle, myVehicleTwo, myEv, myVehicleThree}) {
+            parkingQueue.offer(vehicle);
+            nanoClock.incrementAndGet();
+        }
+
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicle));
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        // Every vehicle has now waited a second - the longest waiting goes first, despite the standard spaces' weight.
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicleTwo));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myEv));
+        assertThat(parkingQueue.pollParkable(ANY_CAN_PARK), equalTo(myVehicleThree));
+    }
+
+    @Test
+    void pollHeadsShouldTakeTheFirstVehicleOfEachCategory() {
+        MultiClassParkingQueue parkingQueue = new MultiClassParkingQueue(Map.of(), 0, nanoClock::get);
+        parkingQueue.offer(myEv);
+        parkingQueue.offer(myVehicle);
+        parkingQueue.offer(myVehicleTwo);
+
+        assertThat(parkingQueue.pollHeads(), equalTo(List.of(myVehicle, myEv)));
+        assertThat(parkingQueue.pollHeads(), equalTo(List.of(myVehicleTwo)));
+        assertThat(parkingQueue.pollHeads(), equalTo(List.of()));
+        assertThat(parkingQueue.isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.carpark.service;
+
+import com.example.carpark.audit.AuditBackpressure;
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.model.ParkingAudit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AsyncParkingAuditServiceTest {
+
+    private static final LocalDateTime ARRIVED = LocalDateTime.of(2023, 4, 1, 9, 0);
+
+    @Test
+    void queriesSeeEveryVisitRecordedBeforeThem() {
+        AsyncParkingAuditService asyncParkingAuditService = startAsyncParkingAuditService(new ParkingAuditServiceImpl(),
+                AuditBackpressure.BLOCK, 4);
+        for (int i = 0; i < 100; i++) {
+            asyncParkingAuditService.recordParkingVisit(createParkingAudit(i));
+        }
+
+        assertThat(asyncParkingAuditService.getNumberOfVisitsForDateRange(ARRIVED, ARRIVED.plusHours(1), AuditQueryMode.EXACT),
+                equalTo(100L));
+        assertThat(asyncParkingAuditService.getQueueDepth(), equalTo(0));
+        asyncParkingAuditService.close();
+    }
+
+    @Test
+    void queriesWaitForTheBatchBeingWritten() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch auditStoreReleased = new CountDownLatch(1);
+        AsyncParkingAuditService asyncParkingAuditService = startAsyncParkingAuditService(blockingAuditStore(auditStoreReleased),
+                AuditBackpressure.BLOCK, 4);
+        asyncParkingAuditService.recordParkingVisit(createParkingAudit(0));
+
+        // The audit writer has taken the visit from the buffer, but hasn't written it yet.
+        CompletableFuture<Integer> numParkingAudits = CompletableFuture.supplyAsync(
+                () -> asyncParkingAuditService.getAllParkingAudits().size());
+        assertThrows(TimeoutException.class, () -> numParkingAudits.get(200, TimeUnit.MILLISECONDS));
+        assertThat(asyncParkingAuditService.getNumWritten(), equalTo(0L));
+
+        auditStoreReleased.countDown();
+        assertThat(numParkingAudits.get(5, TimeUnit.SECONDS), equalTo(1));
+        assertThat(asyncParkingAuditService.getNumWritten(), equalTo(1L));
+        asyncParkingAuditService.close();
+    }
+
+    @Test
+    void dropsVisitsWhenFullAndFlushesTheRestOnClose() throws InterruptedException {
+        CountDownLatch auditStoreReleased = new CountDownLatch(1);
+        ParkingAuditServiceImpl auditStore = blockingAuditStore(auditStoreReleased);
+        AsyncParkingAuditService asyncParkingAuditService = startAsyncParkingAuditService(auditStore, AuditBackpressure.DROP, 4);
+
+        // The audit writer holds at most one batch (of up to 4) while blocked, and the buffer holds another 4.
+        for (int i = 0; i < 20; i++) {
+            asyncParkingAuditService.recordParkingVisit(createParkingAudit(i));
+        }
+        long numDropped = asyncParkingAuditService.getNumDropped();
+        assertThat(numDropped >= 8, equalTo(true));
+
+        auditStoreReleased.countDown();
+        asyncParkingAuditService.close();
+        assertThat((long) auditStore.getAllParkingAudits().size(), equalTo(20 - numDropped));
+    }
+
+    @Test
+    void countsVisitsTheAuditStoreFailsToWriteAsDropped() {
+        ParkingAuditServiceImpl failingAuditStore = new ParkingAuditServiceImpl() {
+            @Override
+            public void recordParkingVisits(List<ParkingAudit> parkingAudits) {
+                throw new IllegalStateException("Audit store unavailable");
+            }
+        };
+        AsyncParkingAuditService asyncParkingAuditService = startAsyncParkingAuditService(failingAuditStore,
+                AuditBackpressure.BLOCK, 4);
+        for (int i = 0; i < 10; i++) {
+            asyncParkingAuditService.recordParkingVisit(createParkingAudit(i));
+        }
+
+        asyncParkingAuditService.flush();
+        assertThat(asyncParkingAuditService.getNumDropped(), equalTo(10L));
+        assertThat(asyncParkingAuditService.getNumWritten(), equalTo(0L));
+        asyncParkingAuditService.close();
+    }
+
+    @Test
+    void visitsRecordedAfterCloseAreWrittenDirectly() {
+        ParkingAuditServiceImpl auditStore = new ParkingAuditServiceImpl();
+        AsyncParkingAuditService asyncParkingAuditService = startAsyncParkingAuditService(auditStore,
+                AuditBackpressure.BLOCK, 4);
+        asyncParkingAuditService.recordParkingVisit(createParkingAudit(0));
+        asyncParkingAuditService.close();
+
+        asyncParkingAuditService.recordParkingVisit(createParkingAudit(1));
+        assertThat(auditStore.getAllParkingAudits().size(), equalTo(2));
+    }
+
+    // An audit store that holds the audit writer up until released (e.g. so the buffer fills).
+    private ParkingAuditServiceImpl blockingAuditStore(CountDownLatch auditStoreReleased) {
+        return new ParkingAuditServiceImpl() {
+            @Override
+            public void recordParkingVisits(List<ParkingAudit> parkingAudits) {
+                try {
+                    auditStoreReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.recordParkingVisits(parkingAudits);
+            }
+        };
+    }
+
+    private AsyncParkingAuditService startAsyncParkingAuditService(ParkingAuditService auditStore,
+                                                                   AuditBackpressure backpressure, int bufferSize) {
+        AsyncParkingAuditService asyncParkingAuditService = new AsyncParkingAuditService(auditStore);
+        ReflectionTestUtils.setField(asyncParkingAuditService, "bufferSize", bufferSize);
+        ReflectionTestUtils.setField(asyncParkingAuditService, "batchSize", 4);
+        ReflectionTestUtils.setField(asyncParkingAuditService, "backpressure", backpressure);
+        asyncParkingAuditService.startAuditWriter();
+        return asyncParkingAuditService;
+    }
+
+    private ParkingAudit createParkingAudit(int designation) {
+        return new ParkingAudit(designation, "VRM" + designation, ARRIVED, ARRIVED.plusHours(1), 2.0);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.carpark.service;
+
+import com.example.carpark.exception.CarParkFullException;
+import com.example.carpark.exception.DoubleParkedException;
+import com.example.carpark.exception.NoSuitableSpacesException;
+import com.example.carpark.exception.VehicleNotFoundException;
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.time.SystemTimeSource;
+import com.example.carpark.util.CarParkDataGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/* Stress tests that hammer a single car park from many "entry gate" threads at once, to prove that spaces are never
+ * allocated twice and vehicles are never double parked under contention. */
+public class CarParkServiceConcurrencyTest {
+
+    @Mock
+    private CarParkDataGenerator carParkDataGenerator;
+
+    @Mock
+    private PaymentServiceImpl paymentService;
+
+    @Mock
+    private ParkingAuditService parkingAuditService;
+
+    @Mock
+    private OccupancySnapshotService occupancySnapshotService;
+
+    @Spy
+    private SystemTimeSource timeSource = new SystemTimeSource();
+
+    @InjectMocks
+    private CarParkServiceImpl carParkService;
+
+    private static final int CAR_PARK_CAPACITY = 200;
+
+    private static final int NUM_THREADS = 16;
+
+    private static final int VEHICLES_PER_THREAD = 50;
+
+    @BeforeEach
+    void init() {
+        // Half EV and half "normal" spaces.
+        List<ParkingSpace> emptyCarPark = new ArrayList<>();
+        for (int i = 1; i <= CAR_PARK_CAPACITY; i++) {
+            emptyCarPark.add(new ParkingSpace(i, i % 2 == 0));
+        }
+
+        MockitoAnnotations.openMocks(this);
+
+        ReflectionTestUtils.setField(carParkService, "capacity", CAR_PARK_CAPACITY);
+        ReflectionTestUtils.setField(carParkService, "levels", 1);
+
+        when(carParkDataGenerator.generateParkingSpaces(CAR_PARK_CAPACITY, 1, 1)).thenReturn(emptyCarPark);
+
+        carParkService.initialiseCarPark();
+    }
+
+    @Test
+    void spacesAreNeverAllocatedTwiceUnderContention() throws Exception {
+        // Many more vehicles than spaces, all trying to park at once.
+        Map<ParkingSpace, Vehicle> allocatedSpaces = Collections.synchronizedMap(new IdentityHashMap<>());
+        AtomicInteger numDoubleAllocations = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < VEHICLES_PER_THREAD; i++) {
+                VehicleType vehicleType = i % 2 == 0 ? VehicleType.EV : VehicleType.CAR;
+                Vehicle vehicle = new Vehicle("t" + thread + " v" + i, vehicleType);
+                try {
+                    ParkingSpace parkingSpace = carParkService.parkVehicle(vehicle);
+                    if (allocatedSpaces.put(parkingSpace, vehicle) != null) {
+                        numDoubleAllocations.incrementAndGet();
+                    }
+                } catch (CarParkFullException | NoSuitableSpacesException e) {
+                    // Expected once the car park fills up.
+                }
+            }
+            return null;
+        });
+
+        assertThat(numDoubleAllocations.get(), equalTo(0));
+        assertThat(allocatedSpaces.size(), equalTo(CAR_PARK_CAPACITY));
+        assertThat(carParkService.getNumCarsParked(), equalTo(CAR_PARK_CAPACITY));
+        assertTrue(carParkService.isCarParkFull());
+        // Every space must still be occupied by the vehicle it was allocated to.
+        allocatedSpaces.forEach((parkingSpace, vehicle) ->
+                assertThat(parkingSpace.getOccupyingVehicle(), equalTo(vehicle)));
+    }
+
+    @Test
+    void sameVehicleCanOnlyBeParkedOnceUnderContention() throws Exception {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        AtomicInteger numParked = new AtomicInteger();
+        AtomicInteger numDoubleParked = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            try {
+                carParkService.parkVehicle(myVehicle);
+                numParked.incrementAndGet();
+            } catch (DoubleParkedException e) {
+                numDoubleParked.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertThat(numParked.get(), equalTo(1));
+        assertThat(numDoubleParked.get(), equalTo(NUM_THREADS - 1));
+        assertThat(carParkService.getNumCarsParked(), equalTo(1));
+    }
+
+    @Test
+    void parkingAndLeavingConcurrentlyLeavesCarParkConsistent() throws Exception {
+        Map<Vehicle, Boolean> parkedVehicles = new ConcurrentHashMap<>();
+
+        // Each thread repeatedly parks its own vehicles and has them leave again.
+        runConcurrently(thread -> {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < VEHICLES_PER_THREAD; i++) {
+                    Vehicle vehicle = new Vehicle("t" + thread + " v" + i, i % 3 == 0 ? VehicleType.EV : VehicleType.CAR);
+                    try {
+                        carParkService.parkVehicle(vehicle);
+                        parkedVehicles.put(vehicle, true);
+                    } catch (CarParkFullException | NoSuitableSpacesException e) {
+                        // Expected while the car park is busy.
+                    }
+                }
+                for (int i = 0; i < VEHICLES_PER_THREAD; i++) {
+                    Vehicle vehicle = new Vehicle("t" + thread + " v" + i, i % 3 == 0 ? VehicleType.EV : VehicleType.CAR);
+                    if (parkedVehicles.remove(vehicle) != null) {
+                        carParkService.leaveCarPark(vehicle);
+                    }
+                }
+            }
+            return null;
+        });
+
+        // Everyone has left, so the car park should be empty with every space free again.
+        assertThat(carParkService.getNumCarsParked(), equalTo(0));
+        assertNull(carParkService.getRandomlyParkedVehicle());
+        for (int i = 0; i < CAR_PARK_CAPACITY; i++) {
+            Vehicle vehicle = new Vehicle("refill v" + i, i % 2 == 0 ? VehicleType.CAR : VehicleType.EV);
+            assertThat(carParkService.parkVehicle(vehicle).getOccupyingVehicle(), equalTo(vehicle));
+        }
+        assertTrue(carParkService.isCarParkFull());
+    }
+
+    @FunctionalInterface
+    private interface GateTask {
+        Void run(int thread) throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException;
+    }
+
+    // Runs the task on NUM_THREADS threads, released at the same moment to maximise contention.
+    private void runConcurrently(GateTask task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_THREADS);
+        CountDownLatch startingGun = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < NUM_THREADS; thread++) {
+            int threadNum = thread;
+            futures.add(executorService.submit(() -> {
+                startingGun.await();
+                return task.run(threadNum);
+            }));
+        }
+
+        startingGun.countDown();
+        for (Future<Void> future : futures) {
+            // Rethrows any unexpected exception from the worker threads.
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+    }
+}
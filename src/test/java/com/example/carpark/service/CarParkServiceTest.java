@@ -2,11 +2,16 @@ package com.example.carpark.service;
 
 import com.example.carpark.exception.CarParkFullException;
 import com.example.carpark.exception.NoSuitableSpacesException;
+import com.example.carpark.metrics.CarParkMetrics;
+import com.example.carpark.model.LeaveResult;
+import com.example.carpark.model.ParkingResult;
 import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.ParkingSpaceCategory;
 import com.example.carpark.model.Vehicle;
 import com.example.carpark.model.VehicleType;
 import com.example.carpark.exception.DoubleParkedException;
 import com.example.carpark.exception.VehicleNotFoundException;
+import com.example.carpark.time.SystemTimeSource;
 import com.example.carpark.util.CarParkDataGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,15 +19,24 @@ import org.junit.jupiter.api.TestInstance;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -37,12 +51,18 @@ public class CarParkServiceTest {
     @Mock
     private ParkingAuditService parkingAuditService;
 
+    @Mock
+    private OccupancySnapshotService occupancySnapshotService;
+
+    @Spy
+    private SystemTimeSource timeSource = new SystemTimeSource();
+
     @InjectMocks
     private CarParkServiceImpl carParkService;
 
     private static final int CAR_PARK_CAPACITY = 3;
 
-    private static final double HOURLY_RATE = 2.0;
+    private static final long HOURLY_RATE_PENCE = 200;
 
     @BeforeEach
     void init() {
@@ -55,9 +75,10 @@ public class CarParkServiceTest {
         MockitoAnnotations.openMocks(this);
 
         ReflectionTestUtils.setField(carParkService, "capacity", CAR_PARK_CAPACITY);
+        ReflectionTestUtils.setField(carParkService, "levels", 1);
 
-        when(carParkDataGenerator.generateParkingSpaces(CAR_PARK_CAPACITY)).thenReturn(emptyCarPark);
-        when(paymentService.calculateParkingCost(any(), any())).thenReturn(HOURLY_RATE);
+        when(carParkDataGenerator.generateParkingSpaces(CAR_PARK_CAPACITY, 1, 1)).thenReturn(emptyCarPark);
+        when(paymentService.calculateParkingCostPence(any(), anyLong(), anyLong())).thenReturn(HOURLY_RATE_PENCE);
 
         // Refresh car park back to three empty spaces before each test.
         carParkService.initialiseCarPark();
@@ -143,6 +164,41 @@ public class CarParkServiceTest {
         assertThat(carParkService.getNumCarsParked(), equalTo(0));
     }
 
+    @Test
+    void canParkAgainAfterLeaving() throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        carParkService.leaveCarPark(myVehicle);
+
+        // Vehicle has left, so it should no longer be treated as double parked.
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        assertThat(carParkService.getNumCarsParked(), equalTo(1));
+    }
+
+    @Test
+    void recordsOccupancyAndRejectionsInMetrics() throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException {
+        CarParkMetrics carParkMetrics = (CarParkMetrics) ReflectionTestUtils.getField(carParkService, "carParkMetrics");
+        long numParked = carParkMetrics.getNumParked();
+        long numLeft = carParkMetrics.getNumLeft();
+        long numDoubleParked = carParkMetrics.getNumRejected(ParkingResult.Rejected.DOUBLE_PARKED);
+        long numCharged = carParkMetrics.getNumCharged();
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        assertThat(carParkService.tryParkVehicle(myVehicle, 0), equalTo(ParkingResult.Rejected.DOUBLE_PARKED));
+        assertThat(carParkMetrics.getNumOccupiedSpaces(ParkingSpaceCategory.STANDARD), equalTo(1));
+        assertThat(carParkMetrics.getNumFreeSpaces(ParkingSpaceCategory.STANDARD), equalTo(1));
+        assertThat(carParkMetrics.getNumFreeSpaces(ParkingSpaceCategory.EV_CHARGING), equalTo(1));
+
+        carParkService.leaveCarPark(myVehicle);
+        assertThat(carParkMetrics.getNumParked() - numParked, equalTo(1L));
+        assertThat(carParkMetrics.getNumLeft() - numLeft, equalTo(1L));
+        assertThat(carParkMetrics.getNumCharged() - numCharged, equalTo(1L));
+        assertThat(carParkMetrics.getNumRejected(ParkingResult.Rejected.DOUBLE_PARKED) - numDoubleParked, equalTo(1L));
+        assertThat(carParkMetrics.getNumOccupiedSpaces(ParkingSpaceCategory.STANDARD), equalTo(0));
+    }
+
     @Test
     void cantLeaveIfNeverParked() {
         Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
@@ -150,6 +206,29 @@ public class CarParkServiceTest {
         assertThrows(VehicleNotFoundException.class, () -> carParkService.leaveCarPark(myVehicle));
     }
 
+    @Test
+    void spillsOverToNextLevelWhenEntryLevelIsFull() throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
+        // Car park with two levels - one "normal" and one EV space on each.
+        List<ParkingSpace> multiLevelCarPark = new ArrayList<>();
+        multiLevelCarPark.add(new ParkingSpace(1, false, 0, "A"));
+        multiLevelCarPark.add(new ParkingSpace(2, true, 0, "A"));
+        multiLevelCarPark.add(new ParkingSpace(3, false, 1, "A"));
+        multiLevelCarPark.add(new ParkingSpace(4, true, 1, "A"));
+        ReflectionTestUtils.setField(carParkService, "capacity", 4);
+        ReflectionTestUtils.setField(carParkService, "levels", 2);
+        when(carParkDataGenerator.generateParkingSpaces(4, 2, 1)).thenReturn(multiLevelCarPark);
+        carParkService.initialiseCarPark();
+
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+
+        // First vehicle parks on the level it entered, the second spills over to the other level.
+        assertThat(carParkService.parkVehicle(myVehicle, 1).getDesignation(), equalTo(3));
+        assertThat(carParkService.parkVehicle(myVehicleTwo, 1).getDesignation(), equalTo(1));
+        assertThat(carParkService.getNumCarsParked(), equalTo(2));
+        assertFalse(carParkService.isSuitableParkingAvailable(new Vehicle("cc51 ccc", VehicleType.CAR)));
+    }
+
     @Test
     void canReturnARandomlyParkedVehicle() throws CarParkFullException, DoubleParkedException, NoSuitableSpacesException {
         Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
@@ -166,4 +245,151 @@ public class CarParkServiceTest {
         assertNotNull(randomlyParkedVehicle);
         assertTrue(parkedVehicles.contains(randomlyParkedVehicle));
     }
+
+    @Test
+    void waitingVehicleIsHandedTheNextFreedSpace() throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+        Vehicle myVehicleThree = new Vehicle("cc51 ccc", VehicleType.CAR);
+
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        assertNotNull(carParkService.parkVehicle(myVehicleTwo));
+
+        // No suitable space, so the third vehicle waits.
+        CompletableFuture<ParkingSpace> parkingSpace = carParkService.parkVehicleWhenSpaceAvailable(myVehicleThree);
+        assertFalse(parkingSpace.isDone());
+
+        // The first vehicle leaves - its space goes straight to the waiting vehicle rather than back in the pool.
+        carParkService.leaveCarPark(myVehicle);
+        assertTrue(parkingSpace.isDone());
+        assertThat(parkingSpace.join().getDesignation(), equalTo(1));
+        assertThat(carParkService.getNumCarsParked(), equalTo(2));
+        assertFalse(carParkService.isSuitableParkingAvailable(myVehicle));
+    }
+
+    @Test
+    void waitingVehiclesAreParkedInOrderOfArrival() throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myEvTwo = new Vehicle("ev52 eev", VehicleType.EV);
+        Vehicle myEvThree = new Vehicle("ev53 eev", VehicleType.EV);
+
+        assertNotNull(carParkService.parkVehicle(myEv));
+        CompletableFuture<ParkingSpace> firstWaiting = carParkService.parkVehicleWhenSpaceAvailable(myEvTwo);
+        CompletableFuture<ParkingSpace> secondWaiting = carParkService.parkVehicleWhenSpaceAvailable(myEvThree);
+
+        carParkService.leaveCarPark(myEv);
+        assertTrue(firstWaiting.isDone());
+        assertFalse(secondWaiting.isDone());
+
+        carParkService.leaveCarPark(myEvTwo);
+        assertTrue(secondWaiting.isDone());
+    }
+
+    @Test
+    void timedParkingGivesUpWhenNoSpaceIsFreed() throws DoubleParkedException, VehicleNotFoundException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myEvTwo = new Vehicle("ev52 eev", VehicleType.EV);
+
+        assertNotNull(carParkService.parkVehicle(myEv));
+        assertThrows(TimeoutException.class, () -> carParkService.parkVehicle(myEvTwo, 10, TimeUnit.MILLISECONDS));
+
+        // The vehicle that gave up waiting must not be handed the freed space.
+        carParkService.leaveCarPark(myEv);
+        assertThat(carParkService.getNumCarsParked(), equalTo(0));
+        assertTrue(carParkService.isSuitableParkingAvailable(myEvTwo));
+    }
+
+    @Test
+    void vehiclesThatGiveUpWaitingLeaveTheQueue() throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
+        assertNotNull(carParkService.parkVehicle(new Vehicle("ev51 eev", VehicleType.EV)));
+
+        // While the EV space stays taken, vehicles that time out or cancel must not pile up in the queue.
+        for (int i = 0; i < 100; i++) {
+            Vehicle myEv = new Vehicle("ev" + i + " xxx", VehicleType.EV);
+            assertThrows(TimeoutException.class, () -> carParkService.parkVehicle(myEv, 1, TimeUnit.MILLISECONDS));
+            carParkService.parkVehicleWhenSpaceAvailable(new Vehicle("ev" + i + " yyy", VehicleType.EV)).cancel(false);
+        }
+        @SuppressWarnings("unchecked")
+        Map<ParkingSpaceCategory, Queue<?>> spaceWaiters =
+                (Map<ParkingSpaceCategory, Queue<?>>) ReflectionTestUtils.getField(carParkService, "spaceWaiters");
+        assertTrue(spaceWaiters.get(ParkingSpaceCategory.EV_CHARGING).isEmpty());
+    }
+
+    @Test
+    void tryParkVehicleShouldReturnRejectionsRatherThanThrow() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+        Vehicle myVehicleThree = new Vehicle("cc51 ccc", VehicleType.CAR);
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+
+        assertTrue(carParkService.tryParkVehicle(myVehicle, 0) instanceof ParkingResult.Parked);
+        assertThat(carParkService.tryParkVehicle(myVehicle, 0), equalTo(ParkingResult.Rejected.DOUBLE_PARKED));
+        assertTrue(carParkService.tryParkVehicle(myVehicleTwo, 0) instanceof ParkingResult.Parked);
+        assertThat(carParkService.tryParkVehicle(myVehicleThree, 0), equalTo(ParkingResult.Rejected.NO_SUITABLE_SPACE));
+        assertTrue(carParkService.tryParkVehicle(myEv, 0) instanceof ParkingResult.Parked);
+        assertThat(carParkService.tryParkVehicle(myVehicleThree, 0), equalTo(ParkingResult.Rejected.CAR_PARK_FULL));
+    }
+
+    @Test
+    void tryLeaveCarParkShouldReturnTheChargeOrRejection() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+
+        assertThat(carParkService.tryLeaveCarPark(myVehicle), equalTo(LeaveResult.Rejected.VEHICLE_NOT_FOUND));
+        assertTrue(carParkService.tryParkVehicle(myVehicle, 0) instanceof ParkingResult.Parked);
+        assertThat(carParkService.tryLeaveCarPark(myVehicle), equalTo(new LeaveResult.Left(HOURLY_RATE_PENCE)));
+    }
+
+    @Test
+    void canReturnDistinctRandomlyParkedVehicles() throws CarParkFullException, DoubleParkedException, NoSuitableSpacesException, VehicleNotFoundException {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+
+        assertTrue(carParkService.getRandomlyParkedVehicles(2).isEmpty());
+        assertNotNull(carParkService.parkVehicle(myEv));
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        assertNotNull(carParkService.parkVehicle(myVehicleTwo));
+        carParkService.leaveCarPark(myVehicle);
+
+        List<Vehicle> randomlyParkedVehicles = carParkService.getRandomlyParkedVehicles(2);
+        assertThat(randomlyParkedVehicles.size(), equalTo(2));
+        assertTrue(randomlyParkedVehicles.containsAll(List.of(myEv, myVehicleTwo)));
+        // Asking for more vehicles than are parked returns every parked vehicle.
+        assertThat(carParkService.getRandomlyParkedVehicles(5).size(), equalTo(2));
+    }
+
+    @Test
+    void canParkBatchOfVehicles() throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myEvTwo = new Vehicle("ev52 eev", VehicleType.EV);
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+        Vehicle myVehicleThree = new Vehicle("cc51 ccc", VehicleType.CAR);
+
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        List<ParkingResult> parkingResults = carParkService.parkVehicles(List.of(myVehicle, myEv, myEvTwo, myVehicleTwo, myVehicleThree));
+
+        assertThat(parkingResults.get(0), equalTo(ParkingResult.Rejected.DOUBLE_PARKED));
+        assertThat(((ParkingResult.Parked) parkingResults.get(1)).parkingSpace().getDesignation(), equalTo(2));
+        assertThat(parkingResults.get(2), equalTo(ParkingResult.Rejected.NO_SUITABLE_SPACE));
+        assertThat(((ParkingResult.Parked) parkingResults.get(3)).parkingSpace().getDesignation(), equalTo(3));
+        assertThat(parkingResults.get(4), equalTo(ParkingResult.Rejected.CAR_PARK_FULL));
+        assertTrue(carParkService.isCarParkFull());
+    }
+
+    @Test
+    void canLeaveAsBatchWithOneAudit() throws DoubleParkedException, CarParkFullException, NoSuitableSpacesException {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myVehicleTwo = new Vehicle("bb51 bbb", VehicleType.CAR);
+
+        assertNotNull(carParkService.parkVehicle(myEv));
+        assertNotNull(carParkService.parkVehicle(myVehicle));
+        List<LeaveResult> leaveResults = carParkService.leaveCarPark(List.of(myEv, myVehicleTwo, myVehicle));
+
+        assertThat(leaveResults, equalTo(List.of(new LeaveResult.Left(HOURLY_RATE_PENCE), LeaveResult.Rejected.VEHICLE_NOT_FOUND,
+                new LeaveResult.Left(HOURLY_RATE_PENCE))));
+        assertThat(carParkService.getNumCarsParked(), equalTo(0));
+        verify(parkingAuditService).recordParkingVisits(argThat(parkingAudits -> parkingAudits.size() == 2));
+    }
 }
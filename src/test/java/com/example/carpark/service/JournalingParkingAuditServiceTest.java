@@ -0,0 +1,70 @@
+package com.example.carpark.service;
+
+import com.example.carpark.audit.AuditQueryMode;
+import com.example.carpark.model.ParkingAudit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class JournalingParkingAuditServiceTest {
+
+    private static final LocalDateTime ARRIVED = LocalDateTime.of(2023, 4, 1, 9, 0);
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void answersQueriesFromTheJournalAsTheInMemoryStoreWould() throws IOException {
+        // Visits recorded in the order they ended, so the latest arrivals come first.
+        List<ParkingAudit> parkingAudits = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            LocalDateTime arrived = ARRIVED.plusMinutes(30 * (10 - i));
+            parkingAudits.add(new ParkingAudit(i + 1, "VRM" + i % 5, arrived, arrived.plusMinutes(45), 1.5 * (i + 1)));
+        }
+        ParkingAuditServiceImpl inMemoryParkingAuditService = new ParkingAuditServiceImpl();
+        inMemoryParkingAuditService.recordParkingVisits(parkingAudits);
+        JournalingParkingAuditService journalingParkingAuditService = openJournalingParkingAuditService();
+        journalingParkingAuditService.recordParkingVisit(parkingAudits.get(0));
+        journalingParkingAuditService.recordParkingVisits(parkingAudits.subList(1, parkingAudits.size()));
+
+        LocalDateTime start = ARRIVED.plusHours(1);
+        LocalDateTime end = ARRIVED.plusHours(4);
+        assertThat(journalingParkingAuditService.getAllParkingAudits(), equalTo(parkingAudits));
+        assertThat(journalingParkingAuditService.getParkingAuditsForDateRange(start, end),
+                equalTo(inMemoryParkingAuditService.getParkingAuditsForDateRange(start, end)));
+        for (AuditQueryMode mode : AuditQueryMode.values()) {
+            assertThat(journalingParkingAuditService.getTotalFundsCollectedForDateRange(start, end, mode),
+                    equalTo(inMemoryParkingAuditService.getTotalFundsCollectedForDateRange(start, end, mode)));
+            assertThat(journalingParkingAuditService.getDistinctNumberOfVehiclesVisitedForDateRange(start, end, mode),
+                    equalTo(inMemoryParkingAuditService.getDistinctNumberOfVehiclesVisitedForDateRange(start, end, mode)));
+            assertThat(journalingParkingAuditService.getNumberOfVisitsForDateRange(start, end, mode),
+                    equalTo(inMemoryParkingAuditService.getNumberOfVisitsForDateRange(start, end, mode)));
+        }
+        journalingParkingAuditService.closeJournal();
+
+        // The rollups are rebuilt from the journal on restart.
+        JournalingParkingAuditService restartedParkingAuditService = openJournalingParkingAuditService();
+        assertThat(restartedParkingAuditService.getAllParkingAudits(), equalTo(parkingAudits));
+        assertThat(restartedParkingAuditService.getTotalFundsCollectedForDateRange(start, end, AuditQueryMode.ROLLUP),
+                equalTo(inMemoryParkingAuditService.getTotalFundsCollectedForDateRange(start, end, AuditQueryMode.ROLLUP)));
+        restartedParkingAuditService.closeJournal();
+    }
+
+    private JournalingParkingAuditService openJournalingParkingAuditService() throws IOException {
+        JournalingParkingAuditService journalingParkingAuditService = new JournalingParkingAuditService();
+        ReflectionTestUtils.setField(journalingParkingAuditService, "directory", journalDirectory);
+        ReflectionTestUtils.setField(journalingParkingAuditService, "recordsPerSegment", 4);
+        ReflectionTestUtils.setField(journalingParkingAuditService, "syncOnWrite", true);
+        journalingParkingAuditService.openJournal();
+        return journalingParkingAuditService;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.carpark.service;
+
+import com.example.carpark.bay.BayStore;
+import com.example.carpark.bay.ColumnarBayStore;
+import com.example.carpark.bay.ObjectBayStore;
+import com.example.carpark.model.ParkingAudit;
+import com.example.carpark.model.ParkingSpace;
+import com.example.carpark.model.Vehicle;
+import com.example.carpark.model.VehicleType;
+import com.example.carpark.time.EpochMillis;
+import com.example.carpark.time.SystemTimeSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class OccupancySnapshotServiceTest {
+
+    @Mock
+    private ParkingAuditService parkingAuditService;
+
+    @TempDir
+    Path snapshotDirectory;
+
+    private static final LocalDateTime ARRIVAL = LocalDateTime.of(2022, Month.APRIL, 1, 9, 0, 0, 500);
+
+    @BeforeEach
+    void init() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void restoresParkedVehiclesFromLastSnapshot() {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        List<ParkingSpace> carPark = createCarPark();
+        carPark.get(1).tryOccupy(myEv, EpochMillis.of(ARRIVAL));
+        carPark.get(2).tryOccupy(myVehicle, EpochMillis.of(ARRIVAL.plusMinutes(5)));
+
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(carPark));
+        occupancySnapshotService.takeSnapshot();
+
+        // Restore the snapshot into a brand new (empty) car park.
+        List<ParkingSpace> restoredCarPark = createCarPark();
+        createSnapshotService().restoreAndSnapshotPeriodically(new ObjectBayStore(restoredCarPark));
+
+        assertNull(restoredCarPark.get(0).getOccupancy());
+        assertThat(restoredCarPark.get(1).getOccupancy(), equalTo(carPark.get(1).getOccupancy()));
+        assertThat(restoredCarPark.get(2).getOccupancy(), equalTo(carPark.get(2).getOccupancy()));
+    }
+
+    @Test
+    void restoresParkedVehiclesIntoColumnarBays() {
+        Vehicle myEv = new Vehicle("ev51 eev", VehicleType.EV);
+        List<ParkingSpace> carPark = createCarPark();
+        carPark.get(1).tryOccupy(myEv, EpochMillis.of(ARRIVAL));
+
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(carPark));
+        occupancySnapshotService.takeSnapshot();
+
+        BayStore restoredCarPark = new ColumnarBayStore(createCarPark());
+        createSnapshotService().restoreAndSnapshotPeriodically(restoredCarPark);
+
+        assertNull(restoredCarPark.getOccupancy(0));
+        assertThat(restoredCarPark.getOccupancy(1), equalTo(carPark.get(1).getOccupancy()));
+        assertNull(restoredCarPark.getOccupancy(2));
+    }
+
+    @Test
+    void doesNotRestoreVehiclesThatLeftAfterSnapshot() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        List<ParkingSpace> carPark = createCarPark();
+        carPark.get(0).tryOccupy(myVehicle, EpochMillis.of(ARRIVAL));
+
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(carPark));
+        occupancySnapshotService.takeSnapshot();
+
+        // The vehicle left after the snapshot was taken, so its visit is in the audit trail.
+        when(parkingAuditService.getParkingAuditsForDateRange(any(), any())).thenReturn(List.of(
+                new ParkingAudit(1, myVehicle.getVrm(), ARRIVAL, LocalDateTime.now().plusMinutes(1), 2.00)));
+
+        List<ParkingSpace> restoredCarPark = createCarPark();
+        createSnapshotService().restoreAndSnapshotPeriodically(new ObjectBayStore(restoredCarPark));
+
+        assertNull(restoredCarPark.get(0).getOccupancy());
+    }
+
+    @Test
+    void restoresVehiclesThatArrivedAfterLastSnapshot() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        Vehicle myOtherVehicle = new Vehicle("bb51 bbb", VehicleType.CAR);
+        List<ParkingSpace> carPark = createCarPark();
+
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(carPark));
+        carPark.get(0).tryOccupy(myVehicle, EpochMillis.of(ARRIVAL));
+        occupancySnapshotService.recordArrival(1, myVehicle, EpochMillis.of(ARRIVAL));
+        occupancySnapshotService.takeSnapshot();
+        // Arrives after the last snapshot, so is only in the arrival log.
+        carPark.get(2).tryOccupy(myOtherVehicle, EpochMillis.of(ARRIVAL.plusMinutes(5)));
+        occupancySnapshotService.recordArrival(3, myOtherVehicle, EpochMillis.of(ARRIVAL.plusMinutes(5)));
+
+        List<ParkingSpace> restoredCarPark = createCarPark();
+        createSnapshotService().restoreAndSnapshotPeriodically(new ObjectBayStore(restoredCarPark));
+
+        assertThat(restoredCarPark.get(0).getOccupancy(), equalTo(carPark.get(0).getOccupancy()));
+        assertNull(restoredCarPark.get(1).getOccupancy());
+        assertThat(restoredCarPark.get(2).getOccupancy(), equalTo(carPark.get(2).getOccupancy()));
+    }
+
+    @Test
+    void doesNotRestoreVehiclesThatArrivedAndLeftAfterLastSnapshot() {
+        Vehicle myVehicle = new Vehicle("aa51 aaa", VehicleType.CAR);
+        List<ParkingSpace> carPark = createCarPark();
+
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(carPark));
+        occupancySnapshotService.takeSnapshot();
+        occupancySnapshotService.recordArrival(1, myVehicle, EpochMillis.of(ARRIVAL));
+
+        // The vehicle left before the next snapshot, so its visit is in the audit trail.
+        when(parkingAuditService.getParkingAuditsForDateRange(any(), any())).thenReturn(List.of(
+                new ParkingAudit(1, myVehicle.getVrm(), ARRIVAL, ARRIVAL.plusHours(1), 2.00)));
+
+        List<ParkingSpace> restoredCarPark = createCarPark();
+        createSnapshotService().restoreAndSnapshotPeriodically(new ObjectBayStore(restoredCarPark));
+
+        assertNull(restoredCarPark.get(0).getOccupancy());
+    }
+
+    @Test
+    void takesNoSnapshotWhenDisabled() {
+        OccupancySnapshotService occupancySnapshotService = createSnapshotService();
+        ReflectionTestUtils.setField(occupancySnapshotService, "enabled", false);
+        occupancySnapshotService.restoreAndSnapshotPeriodically(new ObjectBayStore(createCarPark()));
+
+        occupancySnapshotService.takeSnapshot();
+        assertFalse(Files.exists(snapshotDirectory.resolve("occupancy.snapshot")));
+    }
+
+    private OccupancySnapshotService createSnapshotService() {
+        OccupancySnapshotService occupancySnapshotService = new OccupancySnapshotService(parkingAuditService, new SystemTimeSource());
+        ReflectionTestUtils.setField(occupancySnapshotService, "enabled", true);
+        ReflectionTestUtils.setField(occupancySnapshotService, "snapshotFile", snapshotDirectory.resolve("occupancy.snapshot"));
+        ReflectionTestUtils.setField(occupancySnapshotService, "intervalSeconds", 3600L);
+        return occupancySnapshotService;
+    }
+
+    private static List<ParkingSpace> createCarPark() {
+        List<ParkingSpace> carPark = new ArrayList<>();
+        carPark.add(new ParkingSpace(1, false));
+        carPark.add(new ParkingSpace(2, true));
+        carPark.add(new ParkingSpace(3, false));
+        return carPark;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.carpark.service;
 
+import com.example.carpark.audit.AuditQueryMode;
 import com.example.carpark.model.ParkingAudit;
 import org.instancio.Instancio;
 import org.junit.jupiter.api.Test;
@@ -7,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.List;
+import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -25,6 +27,19 @@ public class ParkingAuditServiceTest {
         assertThat(parkingAudits.get(0), equalTo(parkingAuditToRecord));
     }
 
+    @Test
+    void canRecordAndRetrieveBatchOfCarParkVisits() {
+        LocalDateTime arrived = LocalDateTime.of(2023, Month.APRIL, 1, 18, 0);
+        ParkingAudit parkingAuditToRecordOne = new ParkingAudit(1, "aa51 aaa", arrived, arrived.plusHours(3), 6.0);
+        ParkingAudit parkingAuditToRecordTwo = new ParkingAudit(2, "bb51 bbb", arrived, arrived.plusHours(3), 6.0);
+        parkingAuditService.recordParkingVisits(List.of(parkingAuditToRecordOne, parkingAuditToRecordTwo));
+
+        assertThat(parkingAuditService.getAllParkingAudits(), equalTo(List.of(parkingAuditToRecordOne, parkingAuditToRecordTwo)));
+        assertThat(parkingAuditService.getParkingAuditsForDateRange(arrived, arrived.plusHours(3)).size(), equalTo(2));
+        assertThat(parkingAuditService.getTotalFundsCollectedForDateRange(arrived, arrived.plusHours(3), AuditQueryMode.ROLLUP),
+                equalTo(12.0));
+    }
+
     @Test
     void canRecordAndRetrieveMultipleCarParkVisit() {
         ParkingAudit parkingAuditToRecordOne = Instancio.create(ParkingAudit.class);
@@ -103,6 +118,91 @@ public class ParkingAuditServiceTest {
         assertThat(parkingAuditService.getDistinctNumberOfVehiclesVisitedForDateRange(auditStart, auditEnd), equalTo(2));
     }
 
+    @Test
+    void dateRangeIsInclusiveAndIncludesVisitsSpanningMidnight() {
+        // 01/04/2022 11PM - 02/04/2022 1AM. Arrives exactly on the start of the audit search bounds.
+        ParkingAudit overnightParkingAudit = new ParkingAudit(1, "aa51 aaa",
+                LocalDateTime.of(2022, Month.APRIL, 1, 23, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 2, 1, 0, 0), 4.00);
+        // 02/04/2022 9AM - 10AM. Leaves exactly on the end of the audit search bounds.
+        ParkingAudit morningParkingAudit = new ParkingAudit(2, "bb51 bbb",
+                LocalDateTime.of(2022, Month.APRIL, 2, 9, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 2, 10, 0, 0), 2.00);
+        // 02/04/2022 9:30AM - 10:30AM. Leaves after the end of the audit search bounds.
+        ParkingAudit lateParkingAudit = new ParkingAudit(3, "cc51 ccc",
+                LocalDateTime.of(2022, Month.APRIL, 2, 9, 30, 0),
+                LocalDateTime.of(2022, Month.APRIL, 2, 10, 30, 0), 2.00);
+
+        // Record out of arrival order.
+        parkingAuditService.recordParkingVisit(morningParkingAudit);
+        parkingAuditService.recordParkingVisit(lateParkingAudit);
+        parkingAuditService.recordParkingVisit(overnightParkingAudit);
+
+        // Audit search bounds: 01/04/2022 11PM - 02/04/2022 10AM.
+        LocalDateTime auditStart = LocalDateTime.of(2022, Month.APRIL, 1, 23, 0, 0);
+        LocalDateTime auditEnd = LocalDateTime.of(2022, Month.APRIL, 2, 10, 0, 0);
+        List<ParkingAudit> parkingAudits = parkingAuditService.getParkingAuditsForDateRange(auditStart, auditEnd);
+
+        assertThat(parkingAudits, equalTo(List.of(overnightParkingAudit, morningParkingAudit)));
+        assertThat(parkingAuditService.getTotalFundsCollectedForDateRange(auditStart, auditEnd), equalTo(6.00));
+    }
+
+    @Test
+    void rollupQueriesMatchExactQueriesForWholeDays() {
+        // 01/04/2022 9AM - 10:30AM. 4.00 payment collected.
+        ParkingAudit parkingAuditToRecordOne = new ParkingAudit(1, "aa51 aaa",
+                LocalDateTime.of(2022, Month.APRIL, 1, 9, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 1, 10, 30, 40), 4.00);
+        // 03/04/2022 10AM - 10:30AM. 2.00 payment collected.
+        ParkingAudit parkingAuditToRecordTwo = new ParkingAudit(3, "bb51 bbb",
+                LocalDateTime.of(2022, Month.APRIL, 3, 10, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 3, 10, 30, 0), 2.00);
+        // 03/04/2022 11AM - 1PM. Repeat visit, 4.00 payment collected.
+        ParkingAudit parkingAuditToRecordThree = new ParkingAudit(2, "aa51 aaa",
+                LocalDateTime.of(2022, Month.APRIL, 3, 11, 0, 0),
+                LocalDateTime.of(2022, Month.APRIL, 3, 13, 0, 0), 4.00);
+
+        parkingAuditService.recordParkingVisit(parkingAuditToRecordOne);
+        parkingAuditService.recordParkingVisit(parkingAuditToRecordTwo);
+        parkingAuditService.recordParkingVisit(parkingAuditToRecordThree);
+
+        // Audit search bounds: 01/04/2022 midnight - 03/04/2022 23:59.
+        LocalDateTime auditStart = LocalDateTime.of(2022, Month.APRIL, 1, 0, 0, 0);
+        LocalDateTime auditEnd = LocalDateTime.of(2022, Month.APRIL, 3, 23, 59, 0);
+
+        for (AuditQueryMode mode : AuditQueryMode.values()) {
+            assertThat(parkingAuditService.getTotalFundsCollectedForDateRange(auditStart, auditEnd, mode), equalTo(10.00));
+            assertThat(parkingAuditService.getDistinctNumberOfVehiclesVisitedForDateRange(auditStart, auditEnd, mode), equalTo(2));
+            assertThat(parkingAuditService.getNumberOfVisitsForDateRange(auditStart, auditEnd, mode), equalTo(3L));
+        }
+
+        // Rollups are by the minute the vehicle left: 03/04/2022 10:30AM - 12:59PM only includes the second visit.
+        LocalDateTime partialStart = LocalDateTime.of(2022, Month.APRIL, 3, 10, 30, 0);
+        LocalDateTime partialEnd = LocalDateTime.of(2022, Month.APRIL, 3, 12, 59, 0);
+        assertThat(parkingAuditService.getTotalFundsCollectedForDateRange(partialStart, partialEnd, AuditQueryMode.ROLLUP), equalTo(2.00));
+    }
+
+    @Test
+    void exactAndRollupQueriesAgreeOnRevenueAndVisits() {
+        Random random = new Random(42);
+        LocalDateTime firstLeft = LocalDateTime.of(2023, Month.APRIL, 1, 0, 0, 0);
+        for (int i = 0; i < 1000; i++) {
+            LocalDateTime left = firstLeft.plusSeconds(i * 90L + random.nextInt(90)).plusNanos(random.nextInt(1_000_000_000));
+            parkingAuditService.recordParkingVisit(new ParkingAudit(i + 1, "aa51 a" + random.nextInt(100),
+                    left.minusMinutes(random.nextInt(600)), left, random.nextInt(1000) / 100.0));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            // Ranges that start and end part way through a minute, from a few seconds up to the whole day.
+            LocalDateTime start = firstLeft.plusSeconds(random.nextInt(90_000)).plusNanos(random.nextInt(1_000_000_000));
+            LocalDateTime end = start.plusSeconds(random.nextInt(i % 10 == 0 ? 90_000 : 3600));
+            assertThat(parkingAuditService.getTotalFundsCollectedForDateRange(start, end, AuditQueryMode.EXACT),
+                    equalTo(parkingAuditService.getTotalFundsCollectedForDateRange(start, end, AuditQueryMode.ROLLUP)));
+            assertThat(parkingAuditService.getNumberOfVisitsForDateRange(start, end, AuditQueryMode.EXACT),
+                    equalTo(parkingAuditService.getNumberOfVisitsForDateRange(start, end, AuditQueryMode.ROLLUP)));
+        }
+    }
+
     // TODO: (If time allowed) Add edge cases tests for all date range functions.
     // TODO: (If time allowed) Check distinct clause is working for getDistinctNumberOfVehiclesVisitedForDateRange.
 }
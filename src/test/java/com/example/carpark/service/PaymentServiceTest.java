@@ -6,6 +6,7 @@ import org.junit.jupiter.api.TestInstance;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -67,7 +68,31 @@ public class PaymentServiceTest {
         assertThat(parkingCost, equalTo(COST_PER_HOUR * 3));
     }
 
+    @Test
+    void lessThanOneSecondShouldBeHourlyRate() {
+        LocalDateTime arrived = LocalDateTime.now();
+        LocalDateTime left = arrived.plusNanos(500_000_000);
 
-    /* TODO: (If time allowed) Add more test cases where parking duration <1 minute and <1 second (not real world
-     * scenarios but have been witnessed during testing with current Thread sleep values. */
-}
\ No newline at end of file
+        assertThat(paymentService.calculateParkingDurationSecondsRounded(arrived, left), equalTo(1L));
+        assertThat(paymentService.calculateParkingCost(arrived, left), equalTo(COST_PER_HOUR));
+    }
+
+    @Test
+    void epochMillisDurationShouldMatchDateTimeDuration() {
+        LocalDateTime arrived = LocalDateTime.of(2023, 4, 1, 23, 30, 0, 250_000_000);
+        LocalDateTime left = arrived.plusMinutes(95).plusNanos(900_000_000);
+        long arrivedEpochMillis = arrived.toEpochSecond(ZoneOffset.UTC) * 1000 + 250;
+        long leftEpochMillis = left.toEpochSecond(ZoneOffset.UTC) * 1000 + 150;
+
+        assertThat(paymentService.calculateParkingDurationSecondsRounded(arrivedEpochMillis, leftEpochMillis),
+                equalTo(paymentService.calculateParkingDurationSecondsRounded(arrived, left)));
+    }
+
+    @Test
+    void costInPenceShouldBeRoundedUpToTheHour() {
+        assertThat(paymentService.calculateParkingCostPence(1), equalTo(200L));
+        assertThat(paymentService.calculateParkingCostPence(3600), equalTo(200L));
+        assertThat(paymentService.calculateParkingCostPence(3601), equalTo(400L));
+        assertThat(paymentService.calculateParkingCostPence(7261), equalTo(600L));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.carpark.simulation;
+
+import com.example.carpark.service.CarParkServiceImpl;
+import com.example.carpark.service.OccupancySnapshotService;
+import com.example.carpark.service.ParkingAuditServiceImpl;
+import com.example.carpark.service.PaymentServiceImpl;
+import com.example.carpark.time.SystemTimeSource;
+import com.example.carpark.time.VirtualTimeSource;
+import com.example.carpark.util.CarParkDataGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CarParkSimulationTest {
+
+    private static final int CAPACITY = 200;
+
+    @Test
+    void sameSeedShouldGiveSameResult() {
+        SimulationReport first = createSimulation(7).run();
+        SimulationReport second = createSimulation(7).run();
+
+        assertThat(second.arrivals(), equalTo(first.arrivals()));
+        assertThat(second.parked(), equalTo(first.parked()));
+        assertThat(second.revenuePence(), equalTo(first.revenuePence()));
+        assertThat(second.simulatedTime(), equalTo(first.simulatedTime()));
+        assertThat(second.meanOccupancy(), equalTo(first.meanOccupancy()));
+    }
+
+    @Test
+    void everyArrivalShouldBeParkedOrTurnedAwayAndEveryParkedVehicleShouldLeave() {
+        SimulationReport report = createSimulation(11).run();
+
+        assertThat(report.arrivals(), equalTo(20_000L));
+        assertThat(report.parked() + report.rejectedFull() + report.rejectedNoSuitableSpace(), equalTo(report.arrivals()));
+        assertThat(report.departures(), equalTo(report.parked()));
+        assertThat(report.peakOccupancy(), lessThanOrEqualTo(CAPACITY));
+        assertThat(report.revenuePence(), greaterThan(0L));
+    }
+
+    @Test
+    void simulationShouldRequireVirtualClock() {
+        assertThrows(IllegalStateException.class, () -> new CarParkSimulation(null, new SystemTimeSource()));
+    }
+
+    private static CarParkSimulation createSimulation(long seed) {
+        VirtualTimeSource virtualTimeSource = new VirtualTimeSource();
+
+        CarParkDataGenerator carParkDataGenerator = new CarParkDataGenerator();
+        ReflectionTestUtils.setField(carParkDataGenerator, "seed", seed);
+        ReflectionTestUtils.invokeMethod(carParkDataGenerator, "seedRandom");
+        PaymentServiceImpl paymentService = new PaymentServiceImpl();
+        ReflectionTestUtils.setField(paymentService, "costPerHour", 2.00);
+        ParkingAuditServiceImpl parkingAuditService = new ParkingAuditServiceImpl();
+        CarParkServiceImpl carParkService = new CarParkServiceImpl(carParkDataGenerator, parkingAuditService,
+                paymentService, new OccupancySnapshotService(parkingAuditService, virtualTimeSource), virtualTimeSource);
+        ReflectionTestUtils.setField(carParkService, "capacity", CAPACITY);
+        ReflectionTestUtils.invokeMethod(carParkService, "initialiseCarPark");
+
+        CarParkSimulation simulation = new CarParkSimulation(carParkService, virtualTimeSource);
+        ReflectionTestUtils.setField(simulation, "capacity", CAPACITY);
+        ReflectionTestUtils.setField(simulation, "seed", seed);
+        ReflectionTestUtils.setField(simulation, "start", "2023-04-01T00:00");
+        ReflectionTestUtils.setField(simulation, "numVisits", 20_000);
+        ReflectionTestUtils.setField(simulation, "fleetSize", 2_000);
+        ReflectionTestUtils.setField(simulation, "evRatio", 0.4);
+        ReflectionTestUtils.setField(simulation, "motorbikeRatio", 0.1);
+        ReflectionTestUtils.setField(simulation, "arrivalDistribution", "exponential");
+        ReflectionTestUtils.setField(simulation, "arrivalMeanMinutes", 1.0);
+        ReflectionTestUtils.setField(simulation, "dwellDistribution", "lognormal");
+        ReflectionTestUtils.setField(simulation, "dwellMeanMinutes", 180.0);
+        ReflectionTestUtils.setField(simulation, "dwellSigma", 0.8);
+        return simulation;
+    }
+}
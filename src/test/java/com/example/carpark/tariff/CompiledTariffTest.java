@@ -0,0 +1,107 @@
+package com.example.carpark.tariff;
+
+import com.example.carpark.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompiledTariffTest {
+
+    private static final LocalDateTime MIDDAY = LocalDateTime.of(2023, 4, 3, 12, 0);
+
+    @Test
+    void singleBandShouldChargeHourlyRateRoundedUpToTheHour() {
+        CompiledTariff tariff = CompiledTariff.compile(tariff(band("00:00", 2.00, null)));
+
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusMinutes(20)), equalTo(200L));
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusMinutes(61)), equalTo(400L));
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusDays(3)), equalTo(72 * 200L));
+    }
+
+    @Test
+    void stayShouldBeChargedForEachBandItCrosses() {
+        CompiledTariff tariff = CompiledTariff.compile(tariff(band("07:00", 3.00, null), band("19:00", 1.00, null)));
+
+        // 18:00 - 21:00: one day time hour, two evening hours.
+        LocalDateTime arrived = MIDDAY.withHour(18);
+        assertThat(price(tariff, VehicleType.CAR, arrived, arrived.plusHours(3)), equalTo(300L + 2 * 100L));
+        // 06:30 - 07:30: half an hour of each band.
+        arrived = MIDDAY.withHour(6).withMinute(30);
+        assertThat(price(tariff, VehicleType.CAR, arrived, arrived.plusHours(1)), equalTo(50L + 150L));
+    }
+
+    @Test
+    void overnightCapShouldApplyToEachNightSeparately() {
+        CompiledTariff tariff = CompiledTariff.compile(tariff(band("07:00", 3.00, null), band("19:00", 2.00, 5.00)));
+
+        // 19:00 - 07:00 overnight (over midnight) is 12 hours at £2, capped to £5.
+        LocalDateTime arrived = MIDDAY.withHour(19);
+        assertThat(price(tariff, VehicleType.CAR, arrived, arrived.plusHours(12)), equalTo(500L));
+        // Two nights and the day between them.
+        assertThat(price(tariff, VehicleType.CAR, arrived, arrived.plusHours(36)), equalTo(500L + 12 * 300L + 500L));
+    }
+
+    @Test
+    void singleBandCapShouldApplyToEachDaySeparately() {
+        CompiledTariff tariff = CompiledTariff.compile(tariff(band("00:00", 2.00, 10.00)));
+
+        // Midday to midday three days later: half a day, two whole days and another half a day, each capped to £10.
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusHours(4)), equalTo(800L));
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusDays(3)), equalTo(4 * 1000L));
+    }
+
+    @Test
+    void gracePeriodShouldBeFree() {
+        TariffDefinition definition = tariff(band("00:00", 2.00, null));
+        definition.setGracePeriodMinutes(10);
+        CompiledTariff tariff = CompiledTariff.compile(definition);
+
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusMinutes(10)), equalTo(0L));
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusMinutes(11)), equalTo(200L));
+    }
+
+    @Test
+    void vehicleTypeShouldAttractSurchargeOrDiscount() {
+        TariffDefinition definition = tariff(band("00:00", 2.00, null));
+        definition.getSurchargePerHour().put(VehicleType.EV, 0.50);
+        definition.getDiscountPercent().put(VehicleType.MOTORBIKE, 50);
+        CompiledTariff tariff = CompiledTariff.compile(definition);
+
+        assertThat(price(tariff, VehicleType.EV, MIDDAY, MIDDAY.plusMinutes(90)), equalTo(400L + 100L));
+        assertThat(price(tariff, VehicleType.MOTORBIKE, MIDDAY, MIDDAY.plusMinutes(90)), equalTo(200L));
+        assertThat(price(tariff, VehicleType.CAR, MIDDAY, MIDDAY.plusMinutes(90)), equalTo(400L));
+    }
+
+    @Test
+    void invalidTariffShouldNotCompile() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledTariff.compile(tariff()));
+        assertThrows(IllegalArgumentException.class, () -> CompiledTariff.compile(tariff(band("25:00", 2.00, null))));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledTariff.compile(tariff(band("07:00", 2.00, null), band("07:00", 1.00, null))));
+    }
+
+    private static long price(CompiledTariff tariff, VehicleType vehicleType, LocalDateTime arrived, LocalDateTime left) {
+        return tariff.priceStayPence(vehicleType, arrived.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                left.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    private static TariffDefinition tariff(TariffDefinition.Band... bands) {
+        TariffDefinition definition = new TariffDefinition();
+        definition.getBands().addAll(List.of(bands));
+        return definition;
+    }
+
+    private static TariffDefinition.Band band(String start, double ratePerHour, Double cap) {
+        TariffDefinition.Band band = new TariffDefinition.Band();
+        band.setStart(start);
+        band.setRatePerHour(ratePerHour);
+        band.setCap(cap);
+        return band;
+    }
+}
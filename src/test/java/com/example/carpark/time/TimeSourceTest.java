@@ -0,0 +1,47 @@
+package com.example.carpark.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+public class TimeSourceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 4, 1, 23, 59, 59, 999_000_000);
+
+    @Test
+    void epochMillisShouldRoundTrip() {
+        assertThat(EpochMillis.toLocalDateTime(EpochMillis.of(START)), equalTo(START));
+        assertThat(EpochMillis.toLocalDateTime(EpochMillis.of(START) + 1), equalTo(START.plusNanos(1_000_000)));
+        // Anything finer than a millisecond is truncated.
+        assertThat(EpochMillis.of(START.plusNanos(999_999)), equalTo(EpochMillis.of(START)));
+    }
+
+    @Test
+    void virtualTimeShouldOnlyMoveWhenAdvanced() {
+        VirtualTimeSource virtualTimeSource = new VirtualTimeSource();
+        virtualTimeSource.setTime(START);
+        assertThat(virtualTimeSource.now(), equalTo(START));
+
+        virtualTimeSource.advanceBy(1);
+        assertThat(virtualTimeSource.now(), equalTo(START.plusNanos(1_000_000)));
+
+        // Advancing to an earlier time leaves the clock where it is.
+        virtualTimeSource.advanceTo(EpochMillis.of(START));
+        assertThat(virtualTimeSource.currentEpochMillis(), equalTo(EpochMillis.of(START) + 1));
+    }
+
+    @Test
+    void monotonicTimeShouldNeverGoBackwards() {
+        MonotonicTimeSource monotonicTimeSource = new MonotonicTimeSource();
+        long previousEpochMillis = monotonicTimeSource.currentEpochMillis();
+        for (int i = 0; i < 100_000; i++) {
+            long epochMillis = monotonicTimeSource.currentEpochMillis();
+            assertThat(epochMillis, greaterThanOrEqualTo(previousEpochMillis));
+            previousEpochMillis = epochMillis;
+        }
+    }
+}
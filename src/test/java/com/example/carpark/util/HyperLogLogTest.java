@@ -0,0 +1,75 @@
+package com.example.carpark.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    @Test
+    void smallCountsAreExact() {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+        hyperLogLog.add("aa51 aaa");
+        hyperLogLog.add("bb51 bbb");
+        hyperLogLog.add("aa51 aaa");
+
+        assertThat(hyperLogLog.estimate(), equalTo(2L));
+    }
+
+    @Test
+    void largeCountsAreWithinExpectedError() {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 100000; i++) {
+            hyperLogLog.add("vrm " + i);
+            // Repeat visits should not change the estimate.
+            hyperLogLog.add("vrm " + i);
+        }
+
+        // Standard error at this precision is ~1.6%, allow for three standard errors.
+        assertThat((double) hyperLogLog.estimate(), closeTo(100000, 5000));
+    }
+
+    @Test
+    void mergedSketchesEstimateTheUnion() {
+        HyperLogLog first = new HyperLogLog(PRECISION);
+        HyperLogLog second = new HyperLogLog(PRECISION);
+        HyperLogLog all = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 20000; i++) {
+            // Overlapping halves: 0 - 11999 and 8000 - 19999.
+            (i < 12000 ? first : second).add("vrm " + i);
+            if (i >= 8000 && i < 12000) {
+                second.add("vrm " + i);
+            }
+            all.add("vrm " + i);
+        }
+
+        first.merge(second);
+        assertThat(first.estimate(), equalTo(all.estimate()));
+    }
+
+    @Test
+    void sparseSketchesMergeWithSparseAndDenseSketches() {
+        HyperLogLog quiet = new HyperLogLog(PRECISION);
+        HyperLogLog alsoQuiet = new HyperLogLog(PRECISION);
+        HyperLogLog busy = new HyperLogLog(PRECISION);
+        HyperLogLog all = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 20000; i++) {
+            if (i < 150) {
+                (i < 100 ? quiet : alsoQuiet).add("vrm " + i);
+            } else {
+                busy.add("vrm " + i);
+            }
+            all.add("vrm " + i);
+        }
+
+        // Both still sparse, then the sparse result merged with a dense sketch.
+        quiet.merge(alsoQuiet);
+        assertThat(quiet.estimate(), equalTo(150L));
+        quiet.merge(busy);
+        assertThat(quiet.estimate(), equalTo(all.estimate()));
+    }
+}
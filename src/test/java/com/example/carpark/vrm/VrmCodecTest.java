@@ -0,0 +1,55 @@
+package com.example.carpark.vrm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VrmCodecTest {
+
+    @Test
+    void shouldDecodeExactlyWhatWasEncoded() {
+        for (String vrm : new String[]{"AB12 CDE", "AB12CDE", "aa51 aaa", "zz99zzz", "AA00 AAA"}) {
+            long code = VrmCodec.encode(vrm);
+
+            assertTrue(VrmCodec.isEncoded(code));
+            assertThat(VrmCodec.decode(code), equalTo(vrm));
+        }
+        // The same letters with a different case or spacing are different registrations.
+        assertThat(VrmCodec.encode("AB12 CDE"), not(equalTo(VrmCodec.encode("ab12 cde"))));
+        assertThat(VrmCodec.encode("AB12 CDE"), not(equalTo(VrmCodec.encode("AB12CDE"))));
+    }
+
+    @Test
+    void shouldNotEncodeOtherFormats() {
+        for (String vrm : new String[]{"A123 BCD", "ABC 123D", "Ab12 CDE", "AB12-CDE", "AB12 CD", "VRM1", ""}) {
+            assertThat(VrmCodec.encode(vrm), equalTo(VrmCodec.NOT_ENCODABLE));
+        }
+        assertFalse(VrmCodec.isEncoded(VrmCodec.NOT_ENCODABLE));
+    }
+
+    @Test
+    void registryShouldGiveEqualVrmsTheSameId() {
+        long standardId = VehicleRegistry.idOf("AB12 CDE");
+        long nonStandardId = VehicleRegistry.idOf("PERSONAL 1");
+
+        assertThat(VehicleRegistry.idOf(new String("AB12 CDE")), equalTo(standardId));
+        assertThat(VehicleRegistry.idOf(new String("PERSONAL 1")), equalTo(nonStandardId));
+        assertThat(VehicleRegistry.idOf("PERSONAL 2"), not(equalTo(nonStandardId)));
+        assertThat(VehicleRegistry.vrmOf(standardId), equalTo("AB12 CDE"));
+        assertThat(VehicleRegistry.vrmOf(nonStandardId), equalTo("PERSONAL 1"));
+    }
+
+    @Test
+    void findingAnIdShouldNotGiveANonStandardVrmOne() {
+        assertThat(VehicleRegistry.findIdOf("AB12 CDE"), equalTo(VehicleRegistry.idOf("AB12 CDE")));
+        assertThat(VehicleRegistry.findIdOf("NEVER PARKED"), equalTo(VehicleRegistry.NO_VEHICLE_ID));
+        assertThat(VehicleRegistry.findIdOf("NEVER PARKED"), equalTo(VehicleRegistry.NO_VEHICLE_ID));
+
+        long id = VehicleRegistry.idOf("NOW PARKED");
+        assertThat(VehicleRegistry.findIdOf("NOW PARKED"), equalTo(id));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.carpark.vrm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+
+public class VrmInternerTest {
+
+    private final VrmInterner vrmInterner = new VrmInterner();
+
+    @Test
+    void shouldGiveEachDistinctVrmItsOwnId() {
+        int id = vrmInterner.intern("aa51 aaa");
+
+        assertThat(id, greaterThan(0));
+        assertThat(vrmInterner.intern(new String("aa51 aaa")), equalTo(id));
+        assertThat(vrmInterner.intern("bb51 bbb"), not(equalTo(id)));
+        assertThat(vrmInterner.vrmOf(id), equalTo("aa51 aaa"));
+    }
+
+    @Test
+    void shouldKeepIdsAsTheTableGrows() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(vrmInterner.intern("vrm" + i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(vrmInterner.vrmOf(ids.get(i)), equalTo("vrm" + i));
+            assertThat(vrmInterner.intern("vrm" + i), equalTo(ids.get(i)));
+        }
+    }
+}